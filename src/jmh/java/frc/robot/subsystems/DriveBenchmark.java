@@ -0,0 +1,133 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.DriveConstants;
+import frc.utils.SwerveUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link SwerveDrive#drive(double, double, double, boolean, boolean)} itself, on a drive built
+ * from fake module, gyro, odometry and camera IO so no hardware is needed. The drive still starts the
+ * HAL and its telemetry, so the benchmark JVM is given the desktop natives the tests use.
+ */
+@State(Scope.Thread)
+public class DriveBenchmark {
+    private static final int SAMPLE_COUNT = 1024;
+
+    /** A module that holds whatever it was last commanded, like one that tracks its setpoint instantly. */
+    static class FakeModule implements ModuleIO {
+        double angle = 0.0;
+        double speed = 0.0;
+
+        @Override
+        public double getDrivePositionMeters() {
+            return 0.0;
+        }
+
+        @Override
+        public double getDriveVelocityMetersPerSecond() {
+            return speed;
+        }
+
+        @Override
+        public double getAngleRadians() {
+            return angle;
+        }
+
+        @Override
+        public void setDesiredState(double speedMetersPerSecond, double angleRadians) {
+            speed = speedMetersPerSecond;
+            angle = angleRadians;
+        }
+    }
+
+    private final double[] moduleX = new double[4];
+    private final double[] moduleY = new double[4];
+    private final double[] moduleSpeeds = new double[4];
+    private final double[] moduleAngles = new double[4];
+
+    private final double[] xInputs = new double[SAMPLE_COUNT];
+    private final double[] yInputs = new double[SAMPLE_COUNT];
+    private final double[] rotInputs = new double[SAMPLE_COUNT];
+    private int index = 0;
+
+    private SwerveDrive drive;
+
+    @Setup
+    public void setup() {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+        ModuleIO[] modules = {new FakeModule(), new FakeModule(), new FakeModule(), new FakeModule()};
+        drive = new SwerveDrive(modules, new GyroIO() {}, inputs -> inputs.sampleCount = 0, new VisionIO() {});
+
+        for (int i = 0; i < moduleX.length; i++) {
+            moduleX[i] = DriveConstants.kModuleLocations[i].getX();
+            moduleY[i] = DriveConstants.kModuleLocations[i].getY();
+        }
+
+        // A joystick sweep that includes direction reversals, so every rate-limit branch is exercised
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            double phase = 2 * Math.PI * i / SAMPLE_COUNT;
+            xInputs[i] = Math.cos(3 * phase);
+            yInputs[i] = Math.sin(2 * phase);
+            rotInputs[i] = 0.5 * Math.sin(5 * phase);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (SAMPLE_COUNT - 1);
+        return index;
+    }
+
+    /** The full rate-limited, field-relative teleop path that runs every loop. */
+    @Benchmark
+    public void driveFieldRelativeRateLimited() {
+        int i = next();
+        drive.drive(xInputs[i], yInputs[i], rotInputs[i], true, true);
+    }
+
+    /** Field-relative driving without the setpoint generator. */
+    @Benchmark
+    public void driveFieldRelative() {
+        int i = next();
+        drive.drive(xInputs[i], yInputs[i], rotInputs[i], true, false);
+    }
+
+    /** Inverse kinematics and desaturation through the allocation-free helpers. */
+    @Benchmark
+    public void kinematicsPrimitive(Blackhole blackhole) {
+        int i = next();
+        SwerveUtils.toModuleStates(
+                xInputs[i] * DriveConstants.kMaxSpeedMetersPerSecond,
+                yInputs[i] * DriveConstants.kMaxSpeedMetersPerSecond,
+                rotInputs[i] * DriveConstants.kMaxAngularSpeed,
+                moduleX,
+                moduleY,
+                moduleSpeeds,
+                moduleAngles);
+        SwerveUtils.desaturateWheelSpeeds(moduleSpeeds, DriveConstants.kMaxSpeedMetersPerSecond);
+        blackhole.consume(moduleSpeeds);
+        blackhole.consume(moduleAngles);
+    }
+
+    /** Inverse kinematics and desaturation through WPILib, for comparison against the primitive path. */
+    @Benchmark
+    public SwerveModuleState[] kinematicsWpilib() {
+        int i = next();
+        SwerveModuleState[] states = DriveConstants.kDriveKinematics.toSwerveModuleStates(new ChassisSpeeds(
+                xInputs[i] * DriveConstants.kMaxSpeedMetersPerSecond,
+                yInputs[i] * DriveConstants.kMaxSpeedMetersPerSecond,
+                rotInputs[i] * DriveConstants.kMaxAngularSpeed));
+        SwerveDriveKinematics.desaturateWheelSpeeds(states, DriveConstants.kMaxSpeedMetersPerSecond);
+        return states;
+    }
+}
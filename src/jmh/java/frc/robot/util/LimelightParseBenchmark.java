@@ -0,0 +1,52 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import frc.robot.util.LimelightHelpers.LimelightResults;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks parsing of the Limelight JSON results dump, comparing the ObjectMapper path against
+ * {@link LimelightResultsParser}. The sample is a typical AprilTag pipeline frame with two fiducials in
+ * view. The gc profiler is enabled in build.gradle, so gc.alloc.rate.norm reports bytes per parse.
+ */
+@State(Scope.Thread)
+public class LimelightParseBenchmark {
+    static final String SAMPLE_JSON =
+            """
+            {"Results":{"Classifier":[],"Detector":[],"Fiducial":[\
+            {"fID":4,"fam":"36H11C","pts":[],"skew":[],\
+            "t6c_ts":[0.41,-0.12,-2.83,1.2,-8.4,0.7],"t6r_fs":[1.52,5.48,0.26,0.4,-0.9,2.1],\
+            "t6r_ts":[0.39,-0.31,-2.91,0.8,-7.9,0.3],"t6t_cs":[-0.22,0.17,2.86,-1.1,7.6,-0.5],\
+            "t6t_rs":[2.95,0.21,1.19,-0.6,8.1,-0.2],"ta":0.0118,"tx":-4.37,"txp":139.2,"ty":3.64,"typ":101.7},\
+            {"fID":3,"fam":"36H11C","pts":[],"skew":[],\
+            "t6c_ts":[-0.18,-0.11,-2.95,0.9,-6.2,1.4],"t6r_fs":[1.55,5.51,0.25,0.5,-1.1,2.3],\
+            "t6r_ts":[-0.21,-0.29,-3.02,0.7,-6.0,1.1],"t6t_cs":[0.36,0.15,2.93,-0.8,5.9,-1.2],\
+            "t6t_rs":[3.04,-0.35,1.17,-0.4,6.3,-0.9],"ta":0.0097,"tx":6.91,"txp":188.4,"ty":3.52,"typ":102.3}],\
+            "Retro":[],"botpose":[-6.74,-2.71,0.26,0.45,-1.02,2.21],\
+            "botpose_wpiblue":[1.53,5.49,0.26,0.45,-1.02,2.21],\
+            "botpose_wpired":[15.01,2.71,0.26,0.45,-1.02,-177.79],\
+            "cl":11.9,"pID":0.0,"tl":18.3,"ts":102938.21,"ts_rio":0.0,"v":1}}
+            """;
+
+    private final LimelightResultsParser streamingParser = new LimelightResultsParser(16);
+
+    @Setup
+    public void setup() {
+        // Parse once so the shared ObjectMapper and the parser pools are built outside the measurement
+        LimelightHelpers.parseResults(SAMPLE_JSON);
+        streamingParser.parse(SAMPLE_JSON);
+    }
+
+    @Benchmark
+    public LimelightResults parseWithObjectMapper() {
+        return LimelightHelpers.parseResults(SAMPLE_JSON);
+    }
+
+    @Benchmark
+    public LimelightResults parseStreaming() {
+        return streamingParser.parse(SAMPLE_JSON);
+    }
+}
@@ -0,0 +1,54 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import frc.robot.Constants.DriveConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks recording into and looking up the pose history, at the size and rate the drive uses it. */
+@State(Scope.Thread)
+public class PoseHistoryBenchmark {
+    private static final int CAPACITY =
+            (int) Math.ceil(DriveConstants.kOdometryFrequencyHz * DriveConstants.kPoseHistorySeconds);
+    private static final double PERIOD = 1.0 / DriveConstants.kOdometryFrequencyHz;
+    private static final int QUERY_COUNT = 1024;
+
+    private final PoseHistory history = new PoseHistory(CAPACITY);
+    private final double[] queries = new double[QUERY_COUNT];
+    private double time = 0.0;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        // Fill the buffer past capacity so it has wrapped, like it has on the robot after the first
+        // kPoseHistorySeconds
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            add();
+        }
+        // Query times spread over the whole history, between samples
+        double oldest = history.getOldestTimestamp();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queries[i] = oldest + (i * 0.37 % 1.0) * CAPACITY * PERIOD;
+        }
+    }
+
+    private void add() {
+        time += PERIOD;
+        history.add(time, time, -time, Math.sin(time) * Math.PI, 1.0, 0.5, 0.1, time % (2 * Math.PI));
+    }
+
+    @Benchmark
+    public double sample() {
+        index = (index + 1) & (QUERY_COUNT - 1);
+        history.sample(queries[index]);
+        return history.getTheta();
+    }
+
+    @Benchmark
+    public int record() {
+        add();
+        return history.size();
+    }
+}
@@ -0,0 +1,48 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks the angle helpers the rate-limited drive calls every loop. */
+@State(Scope.Thread)
+public class SwerveUtilsBenchmark {
+    private static final int SAMPLE_COUNT = 1024;
+
+    private final double[] currentAngles = new double[SAMPLE_COUNT];
+    private final double[] targetAngles = new double[SAMPLE_COUNT];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        // Sweep a few wraps in both directions so every branch of the helpers is exercised
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            currentAngles[i] = (i - SAMPLE_COUNT / 2) * 0.037;
+            targetAngles[i] = (SAMPLE_COUNT / 2 - i) * 0.053;
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (SAMPLE_COUNT - 1);
+        return index;
+    }
+
+    @Benchmark
+    public double stepTowardsCircular() {
+        int i = next();
+        return SwerveUtils.StepTowardsCircular(currentAngles[i], targetAngles[i], 0.06);
+    }
+
+    @Benchmark
+    public double wrapAngle() {
+        return SwerveUtils.WrapAngle(targetAngles[next()]);
+    }
+
+    @Benchmark
+    public double angleDifference() {
+        int i = next();
+        return SwerveUtils.AngleDifference(currentAngles[i], targetAngles[i]);
+    }
+}
@@ -6,6 +6,8 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.StatusFrameProfile;
+import java.util.Map;
 
 /**
  * The Constants class provides a convenient place for teams to hold robot-wide
@@ -28,20 +30,24 @@ public final class Constants {
         public static final double kMaxSpeedMetersPerSecond = 4.5;
         public static final double kMaxAngularSpeed = 2 * Math.PI; // radians per second
 
-        public static final double kDirectionSlewRate = 3; // radians per second
-        public static final double kMagnitudeSlewRate = 3; // percent per second (1 = 100%)
-        public static final double kRotationalSlewRate = 2.0; // percent per second (1 = 100%)
+        // Limits the setpoint generator holds each module to when rate limiting teleop driving. A MAXSwerve
+        // module's steering tops out around 12.8 rad/s (NEO free speed through 46.42:1).
+        public static final double kMaxWheelAcceleration = 8.0; // meters per second squared
+        public static final double kMaxSteerRate = 10.0; // radians per second
 
         // Chassis configuration
         public static final double kTrackWidth = Units.inchesToMeters(25.75);
         // Distance between centers of right and left wheels on robot
         public static final double kWheelBase = Units.inchesToMeters(25.75);
         // Distance between front and back wheels on robot
-        public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(
-                new Translation2d(kWheelBase / 2, kTrackWidth / 2),
-                new Translation2d(kWheelBase / 2, -kTrackWidth / 2),
-                new Translation2d(-kWheelBase / 2, kTrackWidth / 2),
-                new Translation2d(-kWheelBase / 2, -kTrackWidth / 2));
+        // Module locations relative to the center of the robot: front left, front right, rear left, rear right
+        public static final Translation2d[] kModuleLocations = {
+            new Translation2d(kWheelBase / 2, kTrackWidth / 2),
+            new Translation2d(kWheelBase / 2, -kTrackWidth / 2),
+            new Translation2d(-kWheelBase / 2, kTrackWidth / 2),
+            new Translation2d(-kWheelBase / 2, -kTrackWidth / 2)
+        };
+        public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(kModuleLocations);
 
         // Angular offsets of the modules relative to the chassis in radians
         public static final double kFrontLeftChassisAngularOffset = -Math.PI / 2;
@@ -61,6 +67,91 @@ public final class Constants {
         public static final int kRearRightTurningCanId = 15;
 
         public static final boolean kGyroReversed = true;
+
+        // Odometry is sampled on its own thread, faster than the 20 ms robot loop, so pose
+        // estimates don't alias during fast autos. Sampling any faster than the drive SPARK MAXs send
+        // their position frame (10 ms, see CANConstants.kSwerveDrivingProfile) only reads repeated values.
+        public static final double kOdometryFrequencyHz = 100;
+        // The NavX defaults to 60 Hz; run it at the odometry rate so every sample sees a fresh yaw
+        public static final int kNavXUpdateRateHz = 100;
+        public static final int kOdometryBufferSize = 32; // samples held between robot loops
+        // How far back the pose history goes, for looking up where the robot was when a frame was captured
+        public static final double kPoseHistorySeconds = 1.0;
+
+        // A wheel slips when its velocity is this far from what the other wheels and the gyro say it should
+        // be; its odometry is then replaced by that prediction
+        public static final double kSlipThresholdMetersPerSecond = 0.5;
+        // A collision is when the NavX acceleration is this far from the acceleration the wheels report
+        public static final double kCollisionThresholdMetersPerSecondSquared = 10.0;
+        // For this long after a collision, vision standard deviations are scaled down to pull the pose back
+        public static final double kCollisionRecoverySeconds = 1.0;
+        public static final double kCollisionVisionStdDevScale = 0.25;
+    }
+
+    public static final class VisionConstants {
+        public static final String kLimelightName = "limelight";
+
+        // Whether Limelight botpose measurements are fused into the drive's pose estimate
+        public static final boolean kEnableVisionPoseEstimation = true;
+
+        // Measurement rejection thresholds
+        public static final int kMinTagCount = 1;
+        public static final double kMinTagArea = 0.1; // percent of the image
+        public static final double kMaxSingleTagJumpMeters = 1.0; // single tag poses further than this are ignored,
+        public static final double kTrustedFixSeconds = 1.0; // for this long after a reset or agreeing measurement
+        public static final double kMaxAngularVelocity = 2 * Math.PI; // radians per second
+        public static final double kFieldLengthMeters = 16.54;
+        public static final double kFieldWidthMeters = 8.21;
+
+        // Standard deviations of the wheel odometry, in meters and radians
+        public static final double kStateStdDevXY = 0.1;
+        public static final double kStateStdDevTheta = Units.degreesToRadians(2);
+        // Standard deviations of a single-tag vision measurement at one meter. These grow with the square
+        // of the distance to the tags and shrink with the number of tags in view. Heading is left to the gyro.
+        public static final double kVisionStdDevXY = 0.5;
+        public static final double kVisionStdDevTheta = 9999999;
+
+        // Limelight pipelines by name, which must match the pipeline indices configured on the camera
+        public static final Map<String, Integer> kPipelineIndices = Map.of("AprilTags", 0, "Speaker", 1, "Amp", 2);
+        // How close, and how still, counts as aligned to a target
+        public static final double kAlignToleranceRadians = Units.degreesToRadians(1.5);
+        public static final double kAlignMaxRateRadiansPerSecond = Units.degreesToRadians(10);
+    }
+
+    public static final class AimingConstants {
+        // Centre of each alliance's speaker opening, in blue-origin field coordinates
+        public static final Translation2d kBlueSpeaker = new Translation2d(0.0, 5.548);
+        public static final Translation2d kRedSpeaker = new Translation2d(VisionConstants.kFieldLengthMeters, 5.548);
+
+        // Average note speed over its flight, and the time from starting the feed to the note leaving
+        public static final double kNoteSpeedMetersPerSecond = 10.0;
+        public static final double kShotLatencySeconds = 0.15;
+        // The shooter fires out of the back of the robot
+        public static final double kShooterHeadingOffsetRadians = Math.PI;
+
+        // Profiled heading controller
+        public static final double kHeadingP = 5.0;
+        public static final double kHeadingI = 0.0;
+        public static final double kHeadingD = 0.1;
+        public static final TrapezoidProfile.Constraints kHeadingConstraints =
+                new TrapezoidProfile.Constraints(DriveConstants.kMaxAngularSpeed, 4 * Math.PI);
+        public static final double kHeadingToleranceRadians = Units.degreesToRadians(3);
+    }
+
+    public static final class CharacterizationConstants {
+        // Quasistatic tests ramp the voltage at this rate; dynamic tests step straight to the step voltage.
+        // The drive tests are kept short so the robot stays inside a practice field.
+        public static final double kDriveRampVoltsPerSecond = 1.0;
+        public static final double kDriveStepVolts = 4.0;
+        public static final double kDriveTimeoutSeconds = 5.0;
+        public static final double kTurningRampVoltsPerSecond = 0.5;
+        public static final double kTurningStepVolts = 3.0;
+        public static final double kTurningTimeoutSeconds = 5.0;
+        public static final double kShooterRampVoltsPerSecond = 1.0;
+        public static final double kShooterStepVolts = 7.0;
+        public static final double kShooterTimeoutSeconds = 10.0;
+        // Pause between tests so the mechanism comes to rest
+        public static final double kRestSeconds = 2.0;
     }
 
     public static final class HookConstants {
@@ -96,8 +187,29 @@ public final class Constants {
         public static final int kShootCanId = 6;
         public static final boolean kInvertMotor = false;
         public static final double kShootAmpSpeed = .33;
-        public static final double kShootSpeakerSpeed = 1;
         public static final double kReverseSpeed = -.1;
+
+        // Closed loop speaker shot. Speeds are of the motor, in RPM. Friction and a sagging battery keep the
+        // flywheel well short of free speed, so the target leaves the controller about 1.5 V of headroom to
+        // settle within kAtSpeedToleranceRpm instead of saturating short of it.
+        public static final double kShootSpeakerRpm = 0.88 * ShooterConstants.kFreeSpeedRpm;
+        // Counts per revolution of a quadrature encoder on the SPARK MAX data port, or 0 if there isn't one,
+        // in which case the speed is estimated from the motor's back-EMF.
+        public static final int kEncoderCountsPerRev = 0;
+        // Motor model for the back-EMF estimate (a CIM: 5330 RPM free at 12 V, 131 A stall)
+        public static final double kFreeSpeedRpm = 5330;
+        public static final double kMotorResistanceOhms = 12.0 / 131;
+        // Feedforward: kS volts to overcome friction plus kV volts per RPM. These start at the motor's
+        // theoretical values; replace them with the fit from the characterization routine (see the README).
+        public static final double kS = 0;
+        public static final double kV = 12 / kFreeSpeedRpm;
+        // Proportional gain on the speed error, in volts per RPM
+        public static final double kVelocityP = 0.002;
+        // Time constant of the filter smoothing the speed estimate
+        public static final double kVelocityFilterSeconds = 0.04;
+        // How close to the target, and for how long, counts as ready to fire
+        public static final double kAtSpeedToleranceRpm = 150;
+        public static final double kAtSpeedDebounceSeconds = 0.1;
     }
 
     public static final class ClimberConstants {
@@ -107,6 +219,31 @@ public final class Constants {
         public static final double kDispenseSpeed = -0.8;
     }
 
+    public static final class CANConstants {
+        public static final double kBitrate = 1_000_000; // bits per second
+        // An extended 8 byte frame is 128 bits before bit stuffing; this is a typical stuffed size
+        public static final double kBitsPerFrame = 131;
+        // Every device also receives a setpoint from the roboRIO once per loop
+        public static final double kControlFramesPerSecond = 50;
+
+        // Swerve driving motors: fast velocity and position for the odometry thread
+        public static final StatusFrameProfile kSwerveDrivingProfile =
+                new StatusFrameProfile(10, 10, 10, 500, 500, 500, 500);
+        // Swerve turning motors: fast absolute encoder position, and its velocity every loop since the
+        // turn velocity input and the steering characterization read it. Everything else slow.
+        public static final StatusFrameProfile kSwerveTurningProfile =
+                new StatusFrameProfile(10, 20, 500, 500, 500, 10, 20);
+        // Open loop brushless mechanisms: only current and temperature are interesting
+        public static final StatusFrameProfile kBrushlessMechanismProfile =
+                new StatusFrameProfile(20, 100, 500, 500, 500, 500, 500);
+        // Open loop brushed mechanisms: nothing is read back at all
+        public static final StatusFrameProfile kBrushedMechanismProfile =
+                new StatusFrameProfile(20, 500, 500, 500, 500, 500, 500);
+        // Shooter: applied output, current and encoder velocity every loop for the speed control
+        public static final StatusFrameProfile kShooterProfile =
+                new StatusFrameProfile(20, 20, 500, 500, 500, 500, 500);
+    }
+
     public static final class ModuleConstants {
         // The MAXSwerve module can be configured with one of three pinion gears: 12T, 13T, or 14T.
         // This changes the drive speed of the module (a pinion gear with more teeth will result in a
@@ -140,7 +277,12 @@ public final class Constants {
         public static final double kDrivingP = 0.04;
         public static final double kDrivingI = 0;
         public static final double kDrivingD = 0;
-        public static final double kDrivingFF = 1 / kDriveWheelFreeSpeedRps;
+        // Driving feedforward: kDrivingS volts to overcome friction plus kDrivingV volts per meter per second.
+        // These start at the motor's theoretical values; replace them with the fit from the characterization
+        // routine (see the README).
+        public static final double kDrivingS = 0;
+        public static final double kDrivingV = 12 / kDriveWheelFreeSpeedRps;
+        public static final double kDrivingFF = kDrivingV / 12; // the SPARK MAX feedforward is in duty cycle
         public static final double kDrivingMinOutput = -1;
         public static final double kDrivingMaxOutput = 1;
 
@@ -151,11 +293,45 @@ public final class Constants {
         public static final double kTurningMinOutput = -1;
         public static final double kTurningMaxOutput = 1;
 
+        // The MAXSwerve steering reduction is 9424:203 (about 46.42:1)
+        public static final double kTurningMotorReduction = 9424.0 / 203;
+        public static final double kTurningFreeSpeedRadiansPerSecond =
+                NeoMotorConstants.kFreeSpeedRpm / 60 * 2 * Math.PI / kTurningMotorReduction;
+        // Scale the drive speed by the cosine of the steering error, so a module still turning doesn't push
+        // sideways across the direction it's meant to drive
+        public static final boolean kCosineScaleDriveSpeed = true;
+        // Feed forward the rate the commanded angle is changing at: kTurningS volts to overcome friction plus
+        // kTurningV volts per radian per second. Theoretical values; measure them with the characterization
+        // routine (see the README).
+        public static final boolean kTurningFeedforwardEnabled = true;
+        public static final double kTurningS = 0;
+        public static final double kTurningV = 12 / kTurningFreeSpeedRadiansPerSecond;
+        // Optionally let the SPARK MAX profile each steering move with Smart Motion (PID slot 1, a velocity
+        // loop) instead of the plain position loop
+        public static final boolean kTurningSmartMotionEnabled = false;
+        public static final int kTurningSmartMotionSlot = 1;
+        public static final double kTurningSmartMotionP = 0.02; // duty cycle per radian per second
+        public static final double kTurningSmartMotionMaxVelocity = 10.0; // radians per second
+        public static final double kTurningSmartMotionMaxAcceleration = 100.0; // radians per second squared
+        public static final double kTurningSmartMotionAllowedError = 0.01; // radians
+
         public static final IdleMode kDrivingMotorIdleMode = IdleMode.kBrake;
         public static final IdleMode kTurningMotorIdleMode = IdleMode.kBrake;
 
         public static final int kDrivingMotorCurrentLimit = 50; // amps
         public static final int kTurningMotorCurrentLimit = 20; // amps
+
+        // Skip the factory reset and flash burn at boot when the SPARKS MAX already hold this configuration.
+        // Set to false after swapping in a new SPARK MAX if anything about it seems off.
+        public static final boolean kSkipFlashBurnWhenConfigured = true;
+
+        // Simulation only. Rough moments of inertia seen at the wheel and at the steering axis, including the
+        // robot's mass shared across four modules for the drive.
+        public static final double kDriveSimMomentOfInertia = 0.025; // kg m^2
+        public static final double kTurningSimMomentOfInertia = 0.004; // kg m^2
+        // Voltage lost to friction (carpet, bearings, gearbox) before a mechanism starts to move
+        public static final double kDriveSimFrictionVolts = 0.25;
+        public static final double kTurningSimFrictionVolts = 0.2;
     }
 
     public static final class OIConstants {
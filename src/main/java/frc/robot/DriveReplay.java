@@ -0,0 +1,65 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.DataLogManager;
+import frc.robot.subsystems.DriveReplaySource;
+import frc.robot.subsystems.SwerveDrive;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Re-runs a recorded match through the drive's odometry and pose estimation, as fast as the desktop
+ * allows. Every hardware input comes from the log, timestamps included, so the result only changes
+ * when the code does. The replayed outputs (pose, module states and so on) are written to a new log
+ * next to the original, ending in {@code _replay.wpilog}, for comparison in AdvantageScope.
+ *
+ * <p>Run with {@code REPLAY_LOG=/path/to/match.wpilog ./gradlew simulateJava}.
+ */
+public final class DriveReplay {
+    private DriveReplay() {}
+
+    /**
+     * Replays a log.
+     *
+     * @param logPath The path of the .wpilog file recorded on the robot.
+     */
+    public static void run(String logPath) {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+
+        DriveReplaySource source;
+        try {
+            source = new DriveReplaySource(logPath);
+        } catch (IOException e) {
+            System.err.println("Can't replay " + logPath + ": " + e.getMessage());
+            return;
+        }
+
+        File input = new File(logPath).getAbsoluteFile();
+        String outputName = input.getName().replaceFirst("\\.wpilog$", "") + "_replay.wpilog";
+        DataLogManager.start(input.getParent(), outputName);
+
+        SwerveDrive drive = SwerveDrive.createReplay(source);
+        long start = System.nanoTime();
+        do {
+            source.applyEvents(drive);
+            drive.periodic();
+        } while (source.advance());
+        double wallSeconds = (System.nanoTime() - start) * 1e-9;
+
+        double matchSeconds = source.getEndTimestamp() - source.getStartTimestamp();
+        Pose2d finalPose = drive.getPose();
+        System.out.printf(
+                "Replayed %d loops (%.1f s of robot time) in %.2f s, %.0fx real time%n",
+                source.getLoopCount(), matchSeconds, wallSeconds, matchSeconds / wallSeconds);
+        System.out.printf(
+                "Final pose: x=%.3f m, y=%.3f m, heading=%.1f deg%n",
+                finalPose.getX(), finalPose.getY(), finalPose.getRotation().getDegrees());
+        System.out.println("Wrote " + new File(input.getParent(), outputName));
+
+        DataLogManager.getLog().close();
+    }
+}
@@ -17,6 +17,19 @@ public final class Main {
      * <p>If you change your main robot class, change the parameter type.
      */
     public static void main(String... args) {
+        // Replay a recorded match through the drive code instead of running the robot, see DriveReplay
+        String replayLog = System.getenv("REPLAY_LOG");
+        if (replayLog != null && RobotBase.isSimulation()) {
+            DriveReplay.run(replayLog);
+            return;
+        }
+
+        // Fit feedforward gains to the characterization routines in a robot log, see SysIdAnalysis
+        String sysIdLog = System.getenv("SYSID_LOG");
+        if (sysIdLog != null && RobotBase.isSimulation()) {
+            System.exit(SysIdAnalysis.run(sysIdLog));
+        }
+
         RobotBase.startRobot(Robot::new);
     }
 }
@@ -5,6 +5,10 @@ import edu.wpi.first.net.PortForwarder;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.util.BootProfiler;
+import frc.robot.util.CANBusLoadEstimator;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.Telemetry;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -23,14 +27,26 @@ public class Robot extends TimedRobot {
      */
     @Override
     public void robotInit() {
+        // Start the on-robot log before anything registers telemetry
+        Telemetry.start();
+
         // Setup Port Forwarding to enable Limelight communication while tethered to your robot over USB
         for (int port = 5800; port <= 5807; port++) {
             PortForwarder.add(port, "limelight.local", port);
         }
 
+        // Start profiling the loop before any button bindings exist, so button polling can be told
+        // apart from subsystem periodics.
+        LoopProfiler.install();
+
         // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
         // autonomous chooser on the dashboard.
-        m_robotContainer = new RobotContainer();
+        m_robotContainer = BootProfiler.time("RobotContainer", RobotContainer::new);
+        LoopProfiler.finishInstall();
+
+        // Publish how long each part of startup took, and how busy the CAN bus should be
+        BootProfiler.publish();
+        CANBusLoadEstimator.publish();
     }
 
     /**
@@ -46,12 +62,17 @@ public class Robot extends TimedRobot {
         // commands, running already-scheduled commands, removing finished or interrupted commands,
         // and running subsystem periodic() methods.  This must be called from the robot's periodic
         // block in order for anything in the Command-based framework to work.
+        LoopProfiler.startLoop();
         CommandScheduler.getInstance().run();
+        Telemetry.periodic();
+        LoopProfiler.endLoop();
     }
 
     /** This function is called once each time the robot enters Disabled mode. */
     @Override
-    public void disabledInit() {}
+    public void disabledInit() {
+        m_robotContainer.disabledInit();
+    }
 
     @Override
     public void disabledPeriodic() {}
@@ -3,18 +3,25 @@ package frc.robot;
 
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.auto.NamedCommands;
+import com.pathplanner.lib.commands.PathPlannerAuto;
 import edu.wpi.first.cameraserver.CameraServer;
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.PS4Controller.Button;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
 import frc.robot.Constants.OIConstants;
 import frc.robot.commands.CommandBuilder;
+import frc.robot.commands.NamedCommandRegistry;
 import frc.robot.controllers.XboxController;
 import frc.robot.subsystems.SwerveDrive;
+import frc.robot.util.BootProfiler;
+import java.io.File;
+import java.util.Set;
 
 /*
  * This class is where the bulk of the robot should be declared.  Since Command-based is a
@@ -24,7 +31,7 @@ import frc.robot.subsystems.SwerveDrive;
  */
 public class RobotContainer {
     private final SendableChooser<Command> autoChooser;
-    private final CommandBuilder commands = new CommandBuilder();
+    private final CommandBuilder commands = BootProfiler.time("Subsystems", CommandBuilder::new);
 
     // The driver's controller
     XboxController driverController = new XboxController(OIConstants.kDriverControllerPort);
@@ -34,7 +41,7 @@ public class RobotContainer {
      * The container for the robot. Contains subsystems, OI devices, and commands.
      */
     public RobotContainer() {
-        CameraServer.startAutomaticCapture();
+        BootProfiler.time("Camera server", () -> CameraServer.startAutomaticCapture());
 
         // Configure the button bindings
         configureButtonBindings();
@@ -52,13 +59,39 @@ public class RobotContainer {
                 swerveDrive);
         swerveDrive.setDefaultCommand(swerveDriveCmd);
 
-        // This allows PathPlanner to call our actual commands
-        NamedCommands.registerCommands(commands.namedCommands());
-
-        autoChooser = AutoBuilder.buildAutoChooser();
+        // This allows PathPlanner to call our actual commands. An auto that uses a named command that isn't
+        // registered is reported to the driver station and left out of the chooser.
+        NamedCommandRegistry namedCommands = commands.namedCommands();
+        Set<String> brokenAutos = BootProfiler.time(
+                "Verify named commands",
+                () -> namedCommands.verifyAutos(new File(Filesystem.getDeployDirectory(), "pathplanner/autos")));
+        NamedCommands.registerCommands(namedCommands.getCommands());
+
+        autoChooser = BootProfiler.time("Auto chooser", () -> buildAutoChooser(brokenAutos));
+        // Characterization runs as an auto, so it's started and stopped like one from the driver station
+        autoChooser.addOption("Characterize Drive", commands.characterizeDrive());
+        autoChooser.addOption("Characterize Steering", commands.characterizeSteering());
+        autoChooser.addOption("Characterize Shooter", commands.characterizeShooter());
         SmartDashboard.putData("Auto Chooser", autoChooser);
     }
 
+    /**
+     * Builds the same chooser as {@link AutoBuilder#buildAutoChooser()}, without the given autos.
+     *
+     * @param excludedAutos The names of the autos to leave out.
+     * @return The chooser, defaulting to doing nothing.
+     */
+    private static SendableChooser<Command> buildAutoChooser(Set<String> excludedAutos) {
+        SendableChooser<Command> chooser = new SendableChooser<>();
+        chooser.setDefaultOption("None", Commands.none());
+        for (String autoName : AutoBuilder.getAllAutoNames()) {
+            if (!excludedAutos.contains(autoName)) {
+                chooser.addOption(autoName, new PathPlannerAuto(autoName));
+            }
+        }
+        return chooser;
+    }
+
     /**
      * Use this method to define your button->command mappings. Buttons can be
      * created by instantiating a {@link edu.wpi.first.wpilibj.GenericHID} or one of its
@@ -69,6 +102,13 @@ public class RobotContainer {
         // Right Trigger on drive controller locks the drive wheels in place
         new JoystickButton(driverController, Button.kR1.value).whileTrue(commands.plantDriveWheels());
 
+        // Holding the right trigger on drive controller aims at the speaker, the left stick still translates
+        driverController
+                .getRightTrigger()
+                .whileTrue(commands.aimAtSpeaker(
+                        () -> -MathUtil.applyDeadband(getXSpeed(), OIConstants.kDriveDeadband),
+                        () -> -MathUtil.applyDeadband(getYSpeed(), OIConstants.kDriveDeadband)));
+
         // Y button controls ground intake
         operatorController.getYButtonTrigger().onTrue(commands.startGroundIntakeSequence());
         operatorController.getYButtonTrigger().onFalse(commands.stopGroundIntakeSequence());
@@ -114,6 +154,14 @@ public class RobotContainer {
         return autoChooser.getSelected();
     }
 
+    /**
+     * Called when the robot is disabled. Drops the shooter out of speed control, which otherwise keeps its
+     * target and spins back up the moment the robot is enabled again.
+     */
+    public void disabledInit() {
+        commands.getShooter().set(0);
+    }
+
     public double getXSpeedRaw() {
         return driverController.getLeftY();
     }
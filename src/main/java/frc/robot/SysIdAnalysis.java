@@ -0,0 +1,198 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import frc.utils.FeedforwardFit;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fits feedforward gains to the characterization routines recorded in a robot log. The routines log
+ * each motor's voltage, position and velocity every loop, along with which test was running. For each
+ * motor this differentiates the velocity within each test to get the acceleration, then fits
+ * volts = kS * sign(velocity) + kV * velocity + kA * acceleration by least squares, and prints the gains
+ * for every motor and their average for every mechanism.
+ *
+ * <p>Run with {@code SYSID_LOG=/path/to/robot.wpilog ./gradlew simulateJava}. The logs are also in the
+ * format WPILib's SysId tool reads, for a closer look at the fit.
+ */
+public final class SysIdAnalysis {
+    private static final String kStatePrefix = "sysid-test-state-";
+    private static final String kVoltagePrefix = "voltage-";
+    private static final String kVelocityPrefix = "velocity-";
+    private static final String kNoTest = "none";
+    // Samples slower than this fraction of the motor's top speed are mostly friction and sensor noise
+    private static final double kMinVelocityFraction = 0.02;
+
+    /** One motor's logged samples, in order. */
+    private static final class Motor {
+        final List<Double> timestamps = new ArrayList<>();
+        final List<Double> volts = new ArrayList<>();
+        final List<Double> velocities = new ArrayList<>();
+        String velocityUnit = "";
+    }
+
+    private SysIdAnalysis() {}
+
+    /**
+     * Fits the gains and prints them.
+     *
+     * @param path The path of the .wpilog file.
+     * @return The process exit status: 0 if at least one motor was fitted.
+     */
+    public static int run(String path) {
+        Map<String, Motor> motors = new TreeMap<>();
+        Map<String, TreeMap<Double, String>> states = new HashMap<>();
+        try {
+            read(path, motors, states);
+        } catch (IOException e) {
+            System.err.println("Could not read " + path + ": " + e.getMessage());
+            return 1;
+        }
+
+        int fitted = 0;
+        Map<String, List<FeedforwardFit>> mechanisms = new TreeMap<>();
+        for (Map.Entry<String, Motor> entry : motors.entrySet()) {
+            String mechanism = findMechanism(entry.getKey(), states.keySet());
+            if (mechanism == null) {
+                continue;
+            }
+
+            FeedforwardFit fit = fit(entry.getValue(), states.get(mechanism));
+            if (!fit.solve()) {
+                System.out.printf("%-30s not enough motion to fit%n", entry.getKey());
+                continue;
+            }
+            System.out.printf(
+                    "%-30s kS %7.4f V  kV %7.4f V/(%s)  kA %7.4f V/(%s/s)  r^2 %.3f  (%d samples)%n",
+                    entry.getKey(),
+                    fit.getKs(),
+                    fit.getKv(),
+                    entry.getValue().velocityUnit,
+                    fit.getKa(),
+                    entry.getValue().velocityUnit,
+                    fit.getRSquared(),
+                    fit.getSampleCount());
+            mechanisms.computeIfAbsent(mechanism, name -> new ArrayList<>()).add(fit);
+            fitted++;
+        }
+
+        for (Map.Entry<String, List<FeedforwardFit>> entry : mechanisms.entrySet()) {
+            double kS = 0.0;
+            double kV = 0.0;
+            double kA = 0.0;
+            for (FeedforwardFit fit : entry.getValue()) {
+                kS += fit.getKs() / entry.getValue().size();
+                kV += fit.getKv() / entry.getValue().size();
+                kA += fit.getKa() / entry.getValue().size();
+            }
+            System.out.printf(
+                    "%nMechanism %s, averaged over %d motors: kS %.4f  kV %.4f  kA %.4f%n",
+                    entry.getKey(), entry.getValue().size(), kS, kV, kA);
+        }
+
+        if (fitted == 0) {
+            System.err.println("No characterization routines found in " + path);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static void read(String path, Map<String, Motor> motors, Map<String, TreeMap<Double, String>> states)
+            throws IOException {
+        DataLogReader reader = new DataLogReader(path);
+        if (!reader.isValid()) {
+            throw new IOException("not a WPILib data log");
+        }
+
+        Map<Integer, DataLogRecord.StartRecordData> entries = new HashMap<>();
+        for (DataLogRecord record : reader) {
+            if (record.isStart()) {
+                DataLogRecord.StartRecordData start = record.getStartData();
+                entries.put(start.entry, start);
+                continue;
+            }
+            if (record.isControl()) {
+                continue;
+            }
+
+            DataLogRecord.StartRecordData start = entries.get(record.getEntry());
+            if (start == null) {
+                continue;
+            }
+            String name = start.name;
+            double timestamp = record.getTimestamp() * 1e-6;
+            if (name.startsWith(kStatePrefix)) {
+                states.computeIfAbsent(name.substring(kStatePrefix.length()), mechanism -> new TreeMap<>())
+                        .put(timestamp, record.getString());
+            } else if (name.startsWith(kVoltagePrefix)) {
+                Motor motor = motors.computeIfAbsent(name.substring(kVoltagePrefix.length()), key -> new Motor());
+                motor.timestamps.add(timestamp);
+                motor.volts.add(record.getDouble());
+            } else if (name.startsWith(kVelocityPrefix)) {
+                Motor motor = motors.computeIfAbsent(name.substring(kVelocityPrefix.length()), key -> new Motor());
+                motor.velocities.add(record.getDouble());
+                motor.velocityUnit = start.metadata.isEmpty() ? "unit" : start.metadata;
+            }
+        }
+    }
+
+    /**
+     * Finds the mechanism a motor belongs to: its log entries end with the mechanism's name. A log with
+     * only one mechanism in it needs no matching.
+     */
+    private static String findMechanism(String motor, Collection<String> mechanisms) {
+        if (mechanisms.size() == 1) {
+            return mechanisms.iterator().next();
+        }
+        String found = null;
+        for (String mechanism : mechanisms) {
+            if (motor.endsWith("-" + mechanism) && (found == null || mechanism.length() > found.length())) {
+                found = mechanism;
+            }
+        }
+        return found;
+    }
+
+    /** Feeds every sample taken during a test into a fit, with the acceleration from central differences. */
+    private static FeedforwardFit fit(Motor motor, TreeMap<Double, String> states) {
+        // Voltage and velocity are logged together every loop, so the nth of each belong together
+        int count = Math.min(motor.volts.size(), motor.velocities.size());
+        double maxVelocity = 0.0;
+        for (int i = 0; i < count; i++) {
+            maxVelocity = Math.max(maxVelocity, Math.abs(motor.velocities.get(i)));
+        }
+        double minVelocity = kMinVelocityFraction * maxVelocity;
+
+        FeedforwardFit fit = new FeedforwardFit();
+        for (int i = 1; i < count - 1; i++) {
+            // Only difference across samples from the same test
+            String state = stateAt(states, motor.timestamps.get(i));
+            if (kNoTest.equals(state)
+                    || !state.equals(stateAt(states, motor.timestamps.get(i - 1)))
+                    || !state.equals(stateAt(states, motor.timestamps.get(i + 1)))) {
+                continue;
+            }
+
+            double velocity = motor.velocities.get(i);
+            double dt = motor.timestamps.get(i + 1) - motor.timestamps.get(i - 1);
+            if (Math.abs(velocity) < minVelocity || dt <= 0) {
+                continue;
+            }
+            double acceleration = (motor.velocities.get(i + 1) - motor.velocities.get(i - 1)) / dt;
+            fit.add(motor.volts.get(i), velocity, acceleration);
+        }
+        return fit;
+    }
+
+    private static String stateAt(TreeMap<Double, String> states, double timestamp) {
+        Map.Entry<Double, String> entry = states.floorEntry(timestamp);
+        return entry == null ? kNoTest : entry.getValue();
+    }
+}
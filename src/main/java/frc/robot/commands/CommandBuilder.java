@@ -5,6 +5,8 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
+import frc.robot.Constants.CharacterizationConstants;
 import frc.robot.Constants.ClimberConstants;
 import frc.robot.Constants.IntakeConstants;
 import frc.robot.Constants.LoaderConstants;
@@ -18,22 +20,23 @@ import frc.robot.subsystems.Intake;
 import frc.robot.subsystems.Loader;
 import frc.robot.subsystems.Shooter;
 import frc.robot.subsystems.SwerveDrive;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import frc.robot.util.BootProfiler;
+import java.util.function.DoubleSupplier;
 
 public class CommandBuilder {
     private static final double ZERO = 0.0;
+    // The longest the shooter is given to reach speed before feeding anyway
     private static final double SPEAKER_SPIN_UP_TIME = 1;
+    private static final double SPEAKER_FEED_TIME = .1;
 
-    private final SwerveDrive swerveDrive = new SwerveDrive();
-    private final Hook hook = new Hook();
-    private final Climber climber = new Climber();
-    private final Intake intake = new Intake();
-    private final Loader loader = new Loader();
-    private final Shooter shooter = new Shooter();
-    private final Flappy flappy = new Flappy();
+    // Each subsystem's construction time is recorded so slow boots can be traced to a mechanism
+    private final SwerveDrive swerveDrive = BootProfiler.time("SwerveDrive", SwerveDrive::create);
+    private final Hook hook = BootProfiler.time("Hook", Hook::new);
+    private final Climber climber = BootProfiler.time("Climber", Climber::new);
+    private final Intake intake = BootProfiler.time("Intake", Intake::new);
+    private final Loader loader = BootProfiler.time("Loader", Loader::new);
+    private final Shooter shooter = BootProfiler.time("Shooter", Shooter::new);
+    private final Flappy flappy = BootProfiler.time("Flappy", Flappy::new);
 
     public CommandBuilder() {}
 
@@ -94,11 +97,11 @@ public class CommandBuilder {
     // ~~~~~~~~~~~~~~~
 
     public Command startLoaderForIntake() {
-        return new RunCommand(() -> loader.set(LoaderConstants.kIntakeSpeed), loader);
+        return new RunCommand(loader::intake, loader);
     }
 
     public Command startLoaderForShooter() {
-        return new RunCommand(() -> loader.set(LoaderConstants.kLoadShooterSpeed), loader);
+        return new RunCommand(loader::feedShooter, loader);
     }
 
     public Command reverseLoader() {
@@ -118,7 +121,7 @@ public class CommandBuilder {
     }
 
     public Command startShooterForSpeaker() {
-        return new RunCommand(() -> shooter.set(ShooterConstants.kShootSpeakerSpeed), shooter);
+        return new RunCommand(() -> shooter.setVelocity(ShooterConstants.kShootSpeakerRpm), shooter);
     }
 
     public Command reverseShooter() {
@@ -140,6 +143,13 @@ public class CommandBuilder {
         return new RunCommand(() -> swerveDrive.setX(), swerveDrive);
     }
 
+    /**
+     * Points the robot at the speaker, leading for its own motion, while the driver translates
+     */
+    public Command aimAtSpeaker(DoubleSupplier xSpeed, DoubleSupplier ySpeed) {
+        return swerveDrive.aimAtSpeaker(xSpeed, ySpeed);
+    }
+
     public Command resetHeading() {
         return new RunCommand(() -> swerveDrive.zeroHeading(), swerveDrive).withTimeout(.05);
     }
@@ -148,28 +158,34 @@ public class CommandBuilder {
     // Complex Sequences
     // ~~~~~~~~~~~~~~~~~
 
+    /**
+     * Runs the intake and loader until a note reaches the loaded switch. The loader stops itself the
+     * moment the switch is pressed, leaving the note indexed, and the intake stops on the next loop.
+     */
     public Command startGroundIntakeSequence() {
-        return startIntake().alongWith(startLoaderForIntake());
+        return startIntake()
+                .alongWith(startLoaderForIntake())
+                .until(loader::isNoteIndexed)
+                .andThen(stopGroundIntakeSequence());
     }
 
     public Command stopGroundIntakeSequence() {
-        return Commands.parallel(stopIntake(), stopLoader())
-                .withTimeout(.1)
-                // Backfeed the shooter for a moment to prevent the note from getting
-                // stuck before launching it.
-                .andThen(reverseShooter().alongWith(reverseLoader()).withTimeout(.2))
-                .andThen(stopShooter().alongWith(stopLoader()));
+        return Commands.parallel(stopIntake(), stopLoader()).withTimeout(.1);
     }
 
     public Command shootAmpSequence() {
         return startShooterForAmp().withTimeout(.5).andThen(startLoaderForShooter());
     }
 
+    /**
+     * Spins the shooter up and feeds the note as soon as it reaches speed, or after the spin up time if
+     * it never gets there. The shooter keeps holding its speed afterwards, until stopped.
+     */
     public Command shootSpeakerSequence() {
         return startShooterForSpeaker()
+                .until(shooter::isAtSpeed)
                 .withTimeout(SPEAKER_SPIN_UP_TIME)
-                .andThen(startLoaderForShooter())
-                .withTimeout(SPEAKER_SPIN_UP_TIME + .1);
+                .andThen(startLoaderForShooter().withTimeout(SPEAKER_FEED_TIME));
     }
 
     public Command stopShootSequence() {
@@ -181,10 +197,7 @@ public class CommandBuilder {
     // ~~~~~~~~~~~~
 
     public Command autoShootSpeakerSequence() {
-        return (this.shootSpeakerSequence()
-                        .withTimeout(SPEAKER_SPIN_UP_TIME + .3)
-                        .andThen(new WaitCommand(.1)))
-                .withTimeout(SPEAKER_SPIN_UP_TIME + .2);
+        return this.shootSpeakerSequence().andThen(new WaitCommand(.1));
     }
 
     public Command autoStopShootSequence() {
@@ -196,7 +209,7 @@ public class CommandBuilder {
     }
 
     public Command autoStopGroundIntakeSequence() {
-        return (stopGroundIntakeSequence()).withTimeout(.3);
+        return stopGroundIntakeSequence();
     }
 
     public Command autoExtendFlappy() {
@@ -207,6 +220,40 @@ public class CommandBuilder {
         return retractFlappy().withTimeout(.05);
     }
 
+    // ~~~~~~~~~~~~~~~~~~~~~~~~
+    // Characterization Actions
+    // ~~~~~~~~~~~~~~~~~~~~~~~~
+
+    /** Characterizes the driving motors. The robot drives forwards and backwards several meters, so give it room. */
+    public Command characterizeDrive() {
+        return characterize(swerveDrive.getDriveSysIdRoutine());
+    }
+
+    /** Characterizes the turning motors. The modules spin in place. */
+    public Command characterizeSteering() {
+        return characterize(swerveDrive.getTurningSysIdRoutine());
+    }
+
+    /** Characterizes the shooter flywheel. Keep the loader empty. */
+    public Command characterizeShooter() {
+        return characterize(shooter.getSysIdRoutine());
+    }
+
+    /**
+     * Runs all four tests of a routine, resting in between, so one run logs everything the fitter needs.
+     * Fit the gains from the log with {@code SYSID_LOG}, see the README.
+     */
+    private static Command characterize(SysIdRoutine routine) {
+        return Commands.sequence(
+                routine.quasistatic(SysIdRoutine.Direction.kForward),
+                Commands.waitSeconds(CharacterizationConstants.kRestSeconds),
+                routine.quasistatic(SysIdRoutine.Direction.kReverse),
+                Commands.waitSeconds(CharacterizationConstants.kRestSeconds),
+                routine.dynamic(SysIdRoutine.Direction.kForward),
+                Commands.waitSeconds(CharacterizationConstants.kRestSeconds),
+                routine.dynamic(SysIdRoutine.Direction.kReverse));
+    }
+
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~
     // Getters for the subsystems
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -239,21 +286,18 @@ public class CommandBuilder {
         return this.swerveDrive;
     }
 
-    public Map<String, Command> namedCommands() {
-        Map<String, Command> commandMap = new HashMap<String, Command>();
-
-        for (Method method : this.getClass().getDeclaredMethods()) {
-            String name = method.getName();
-            if (method.getReturnType() == Command.class) {
-                try {
-                    Command result = (Command) method.invoke(this);
-                    commandMap.put(name, result);
-                } catch (IllegalAccessException e) {
-                } catch (IllegalArgumentException e) {
-                } catch (InvocationTargetException e) {
-                }
-            }
-        }
-        return commandMap;
+    /**
+     * Builds the registry of commands that PathPlanner autos can call by name. Commands are only
+     * constructed when an auto first runs them, so each one must list every subsystem it requires.
+     */
+    public NamedCommandRegistry namedCommands() {
+        NamedCommandRegistry registry = new NamedCommandRegistry();
+        registry.register("autoShootSpeakerSequence", this::autoShootSpeakerSequence, shooter, loader);
+        registry.register("autoStopShootSequence", this::autoStopShootSequence, shooter, loader);
+        registry.register("autoStartGroundIntakeSequence", this::autoStartGroundIntakeSequence, intake, loader);
+        registry.register("autoStopGroundIntakeSequence", this::autoStopGroundIntakeSequence, intake, loader);
+        registry.register("autoExtendFlappy", this::autoExtendFlappy, flappy);
+        registry.register("autoRetractFlappy", this::autoRetractFlappy, flappy);
+        return registry;
     }
 }
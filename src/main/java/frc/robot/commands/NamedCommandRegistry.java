@@ -0,0 +1,164 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.commands;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * An explicit registry of the commands PathPlanner autos can call by name. Each command is registered
+ * with a factory and the subsystems it requires, and is only constructed the first time an auto
+ * actually runs it.
+ */
+public class NamedCommandRegistry {
+
+    /**
+     * Stands in for a registered command until it is first run. PathPlanner needs a command's
+     * requirements when it builds an auto, so they are declared up front and checked against the real
+     * command once it is constructed.
+     */
+    private static class LazyCommand extends Command {
+        private final Supplier<Command> factory;
+        private Command command;
+
+        LazyCommand(String name, Supplier<Command> factory, Subsystem... requirements) {
+            this.factory = factory;
+            setName(name);
+            addRequirements(requirements);
+        }
+
+        private Command getCommand() {
+            if (command == null) {
+                command = factory.get();
+                if (!getRequirements().containsAll(command.getRequirements())) {
+                    throw new IllegalStateException("Named command '" + getName()
+                            + "' requires more subsystems than it was registered with: " + command.getRequirements());
+                }
+                CommandScheduler.getInstance().registerComposedCommands(command);
+            }
+            return command;
+        }
+
+        @Override
+        public void initialize() {
+            getCommand().initialize();
+        }
+
+        @Override
+        public void execute() {
+            command.execute();
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            command.end(interrupted);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return command.isFinished();
+        }
+
+        // The scheduler and command groups ask for these before the command is first initialized, which
+        // builds it early; a group containing it builds it when the group is composed
+        @Override
+        public boolean runsWhenDisabled() {
+            return getCommand().runsWhenDisabled();
+        }
+
+        @Override
+        public InterruptionBehavior getInterruptionBehavior() {
+            return getCommand().getInterruptionBehavior();
+        }
+    }
+
+    private final Map<String, Command> commands = new LinkedHashMap<>();
+
+    /**
+     * Registers a command that autos can call by name.
+     *
+     * @param name         The name used in the PathPlanner GUI.
+     * @param factory      Builds the command the first time it is run.
+     * @param requirements Every subsystem the built command requires.
+     */
+    public void register(String name, Supplier<Command> factory, Subsystem... requirements) {
+        if (commands.containsKey(name)) {
+            throw new IllegalArgumentException("Named command '" + name + "' is already registered");
+        }
+        commands.put(name, new LazyCommand(name, factory, requirements));
+    }
+
+    /**
+     * Returns the registered commands, ready to hand to PathPlanner's {@code NamedCommands}.
+     *
+     * @return The commands, keyed by name.
+     */
+    public Map<String, Command> getCommands() {
+        return commands;
+    }
+
+    /**
+     * Checks that every named command referenced by the PathPlanner autos in the given directory has been
+     * registered, so a typo in the GUI shows up at boot instead of as a silently skipped step in a match.
+     * Each problem is reported to the driver station; the robot still boots, and the broken autos are
+     * returned so they can be left out of the chooser.
+     *
+     * @param autosDirectory The directory holding the {@code .auto} files.
+     * @return The names of the autos, without the extension, that reference a command that isn't
+     *     registered or can't be read.
+     */
+    public Set<String> verifyAutos(File autosDirectory) {
+        Set<String> brokenAutos = new TreeSet<>();
+        File[] autoFiles = autosDirectory.listFiles((dir, name) -> name.endsWith(".auto"));
+        if (autoFiles == null) {
+            return brokenAutos;
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        for (File autoFile : autoFiles) {
+            String autoName = autoFile.getName().substring(0, autoFile.getName().length() - ".auto".length());
+            try {
+                Set<String> referenced = new TreeSet<>();
+                collectNamedCommands(mapper.readTree(autoFile).get("command"), referenced);
+                referenced.removeAll(commands.keySet());
+                if (!referenced.isEmpty()) {
+                    brokenAutos.add(autoName);
+                    DriverStation.reportError(
+                            "Auto '" + autoName + "' is disabled, it references unregistered named commands: "
+                                    + referenced,
+                            false);
+                }
+            } catch (IOException e) {
+                brokenAutos.add(autoName);
+                DriverStation.reportError(
+                        "Auto '" + autoName + "' is disabled, it could not be read: " + e.getMessage(), false);
+            }
+        }
+        return brokenAutos;
+    }
+
+    /** Walks an auto's command tree and collects the names of every named command in it. */
+    private static void collectNamedCommands(JsonNode command, Set<String> names) {
+        if (command == null) {
+            return;
+        }
+
+        JsonNode data = command.path("data");
+        if ("named".equals(command.path("type").asText())) {
+            names.add(data.path("name").asText());
+        }
+        for (JsonNode child : data.path("commands")) {
+            collectNamedCommands(child, names);
+        }
+    }
+}
@@ -136,7 +136,7 @@ public class XboxController extends edu.wpi.first.wpilibj.XboxController {
      * @return the button as a Trigger
      */
     public Trigger getRightTrigger() {
-        return new Trigger(this::getLeftTriggerPressed);
+        return new Trigger(this::getRightTriggerPressed);
     }
 
     /**
@@ -5,19 +5,29 @@ import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkMax;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.CANConstants;
 import frc.robot.Constants.ClimberConstants;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
+import frc.robot.util.Telemetry;
 
 public class Climber extends SubsystemBase {
 
     private CANSparkMax motor;
+    private final Telemetry.DoubleChannel outputTelemetry = Telemetry.doubleChannel("Climber/Output", "percent");
 
     public Climber() {
         motor = new CANSparkMax(ClimberConstants.kCanId, MotorType.kBrushless);
-        motor.setInverted(ClimberConstants.kInvertMotor);
-        motor.setIdleMode(IdleMode.kCoast);
+        SparkMaxConfigurator.apply(
+                motor,
+                new SparkMaxConfig()
+                        .inverted(ClimberConstants.kInvertMotor)
+                        .idleMode(IdleMode.kCoast)
+                        .statusFrames(CANConstants.kBrushlessMechanismProfile));
     }
 
     public void set(double percent) {
         motor.set(percent);
+        outputTelemetry.set(percent);
     }
 }
@@ -0,0 +1,179 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.util.datalog.BooleanLogEntry;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.subsystems.GyroIO.GyroIOInputs;
+import frc.robot.subsystems.ModuleIO.ModuleIOInputs;
+import frc.robot.subsystems.OdometryIO.OdometryIOInputs;
+import frc.robot.subsystems.VisionIO.VisionIOInputs;
+import frc.robot.util.LimelightClient;
+
+/**
+ * Records every hardware input {@link SwerveDrive} reads each loop, so the loop can be re-run from the
+ * log by {@link DriveReplaySource}. Each loop starts with a {@link #kLoop} record; everything logged
+ * after it, up to the next one, belongs to that loop.
+ *
+ * <p>Pose resets and heading zeroes aren't hardware inputs, but they change the estimate, so they are
+ * recorded too, each with the FPGA time it happened at, and re-applied at the same point in the replay.
+ */
+class DriveInputsLog {
+    static final String kLoop = "Inputs/Drive/Loop Timestamp";
+    static final String kOdometryTimestamps = "Inputs/Odometry/Timestamps";
+    static final String kOdometryDistances = "Inputs/Odometry/Distances";
+    static final String kOdometryAngles = "Inputs/Odometry/Angles";
+    static final String kOdometryYaws = "Inputs/Odometry/Yaws";
+    static final String kModulePositions = "Inputs/Modules/Drive Positions";
+    static final String kModuleVelocities = "Inputs/Modules/Drive Velocities";
+    static final String kModuleAngles = "Inputs/Modules/Angles";
+    static final String kGyroConnected = "Inputs/Gyro/Connected";
+    static final String kGyroYaw = "Inputs/Gyro/Yaw";
+    static final String kGyroYawRate = "Inputs/Gyro/Yaw Rate";
+    static final String kGyroAcceleration = "Inputs/Gyro/Acceleration";
+    static final String kVisionFrame = "Inputs/Vision/Frame";
+    static final String kVisionBotpose = "Inputs/Vision/Botpose";
+    static final String kResetPose = "Inputs/Drive/Reset Pose";
+    static final String kZeroHeading = "Inputs/Drive/Zero Heading";
+
+    /** The number of values in a {@link #kVisionFrame} record. */
+    static final int kVisionFrameLength = 9;
+
+    private final DoubleLogEntry m_loop;
+    private final DoubleArrayLogEntry m_odometryTimestamps;
+    private final DoubleArrayLogEntry m_odometryDistances;
+    private final DoubleArrayLogEntry m_odometryAngles;
+    private final DoubleArrayLogEntry m_odometryYaws;
+    private final DoubleArrayLogEntry m_modulePositions;
+    private final DoubleArrayLogEntry m_moduleVelocities;
+    private final DoubleArrayLogEntry m_moduleAngles;
+    private final BooleanLogEntry m_gyroConnected;
+    private final DoubleLogEntry m_gyroYaw;
+    private final DoubleLogEntry m_gyroYawRate;
+    private final DoubleArrayLogEntry m_gyroAcceleration;
+    private final DoubleArrayLogEntry m_visionFrame;
+    private final DoubleArrayLogEntry m_visionBotpose;
+    private final DoubleArrayLogEntry m_resetPose;
+    private final DoubleLogEntry m_zeroHeading;
+
+    // A DataLog array entry always records a whole array, so keep one array per sample count to log
+    // exactly the samples taken without allocating
+    private final double[][] m_sampleViews = new double[DriveConstants.kOdometryBufferSize + 1][];
+    private final double[][] m_moduleSampleViews = new double[DriveConstants.kOdometryBufferSize + 1][];
+
+    private final double[] m_moduleValues = new double[4];
+    private final double[] m_accelerationValues = new double[2];
+    private final double[] m_visionValues = new double[kVisionFrameLength];
+    private final double[] m_resetValues = new double[4];
+
+    DriveInputsLog() {
+        DataLog log = DataLogManager.getLog();
+        m_loop = new DoubleLogEntry(log, kLoop);
+        m_odometryTimestamps = new DoubleArrayLogEntry(log, kOdometryTimestamps);
+        m_odometryDistances = new DoubleArrayLogEntry(log, kOdometryDistances);
+        m_odometryAngles = new DoubleArrayLogEntry(log, kOdometryAngles);
+        m_odometryYaws = new DoubleArrayLogEntry(log, kOdometryYaws);
+        m_modulePositions = new DoubleArrayLogEntry(log, kModulePositions);
+        m_moduleVelocities = new DoubleArrayLogEntry(log, kModuleVelocities);
+        m_moduleAngles = new DoubleArrayLogEntry(log, kModuleAngles);
+        m_gyroConnected = new BooleanLogEntry(log, kGyroConnected);
+        m_gyroYaw = new DoubleLogEntry(log, kGyroYaw);
+        m_gyroYawRate = new DoubleLogEntry(log, kGyroYawRate);
+        m_gyroAcceleration = new DoubleArrayLogEntry(log, kGyroAcceleration);
+        m_visionFrame = new DoubleArrayLogEntry(log, kVisionFrame);
+        m_visionBotpose = new DoubleArrayLogEntry(log, kVisionBotpose);
+        m_resetPose = new DoubleArrayLogEntry(log, kResetPose);
+        m_zeroHeading = new DoubleLogEntry(log, kZeroHeading);
+
+        for (int count = 0; count <= DriveConstants.kOdometryBufferSize; count++) {
+            m_sampleViews[count] = new double[count];
+            m_moduleSampleViews[count] = new double[count * 4];
+        }
+    }
+
+    /**
+     * Records one loop's inputs.
+     *
+     * @param timestamp The FPGA time at the start of the loop, in seconds.
+     */
+    void record(
+            double timestamp,
+            OdometryIOInputs odometry,
+            ModuleIOInputs[] modules,
+            GyroIOInputs gyro,
+            VisionIOInputs vision) {
+        m_loop.append(timestamp);
+
+        int count = odometry.sampleCount;
+        appendPrefix(m_odometryTimestamps, odometry.timestamps, m_sampleViews[count]);
+        appendPrefix(m_odometryDistances, odometry.distances, m_moduleSampleViews[count]);
+        appendPrefix(m_odometryAngles, odometry.angles, m_moduleSampleViews[count]);
+        appendPrefix(m_odometryYaws, odometry.yaws, m_sampleViews[count]);
+
+        for (int i = 0; i < modules.length; i++) {
+            m_moduleValues[i] = modules[i].drivePositionMeters;
+        }
+        m_modulePositions.append(m_moduleValues);
+        for (int i = 0; i < modules.length; i++) {
+            m_moduleValues[i] = modules[i].driveVelocityMetersPerSecond;
+        }
+        m_moduleVelocities.append(m_moduleValues);
+        for (int i = 0; i < modules.length; i++) {
+            m_moduleValues[i] = modules[i].angleRadians;
+        }
+        m_moduleAngles.append(m_moduleValues);
+
+        m_gyroConnected.append(gyro.connected);
+        m_gyroYaw.append(gyro.yawRadians);
+        m_gyroYawRate.append(gyro.yawRateRadiansPerSecond);
+        m_accelerationValues[0] = gyro.accelXMetersPerSecondSquared;
+        m_accelerationValues[1] = gyro.accelYMetersPerSecondSquared;
+        m_gyroAcceleration.append(m_accelerationValues);
+
+        if (vision.hasNewFrame) {
+            LimelightClient.Frame frame = vision.frame;
+            m_visionValues[0] = frame.heartbeat;
+            m_visionValues[1] = frame.receivedTimestamp;
+            m_visionValues[2] = frame.hasTarget ? 1.0 : 0.0;
+            m_visionValues[3] = frame.tx;
+            m_visionValues[4] = frame.ty;
+            m_visionValues[5] = frame.ta;
+            m_visionValues[6] = frame.fiducialID;
+            m_visionValues[7] = frame.latency_pipeline;
+            m_visionValues[8] = frame.latency_capture;
+            m_visionFrame.append(m_visionValues);
+            m_visionBotpose.append(frame.botpose_wpiblue);
+        }
+    }
+
+    /**
+     * Records that the pose estimate was reset. Logged as the time, then the pose's x, y and heading.
+     *
+     * @param timestamp The FPGA time of the reset, in seconds.
+     */
+    void recordResetPose(double timestamp, double x, double y, double headingRadians) {
+        m_resetValues[0] = timestamp;
+        m_resetValues[1] = x;
+        m_resetValues[2] = y;
+        m_resetValues[3] = headingRadians;
+        m_resetPose.append(m_resetValues);
+    }
+
+    /**
+     * Records that the gyro heading was zeroed.
+     *
+     * @param timestamp The FPGA time it was zeroed, in seconds.
+     */
+    void recordZeroHeading(double timestamp) {
+        m_zeroHeading.append(timestamp);
+    }
+
+    /** Logs the first {@code view.length} values of {@code values}. */
+    private static void appendPrefix(DoubleArrayLogEntry entry, double[] values, double[] view) {
+        System.arraycopy(values, 0, view, 0, view.length);
+        entry.append(view);
+    }
+}
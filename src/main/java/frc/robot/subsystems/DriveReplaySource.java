@@ -0,0 +1,191 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the drive inputs recorded by {@link DriveInputsLog} back out of a WPILib data log, one loop at
+ * a time. The replay IO implementations all read from the current loop, so stepping this and calling
+ * {@link SwerveDrive#periodic()} re-runs the exact odometry and pose estimation the robot ran.
+ */
+public class DriveReplaySource {
+    /** The inputs recorded during one robot loop. */
+    public static class Loop {
+        public double timestamp;
+
+        public double[] odometryTimestamps = new double[0];
+        public double[] odometryDistances = new double[0];
+        public double[] odometryAngles = new double[0];
+        public double[] odometryYaws = new double[0];
+
+        public double[] drivePositions = new double[4];
+        public double[] driveVelocities = new double[4];
+        public double[] moduleAngles = new double[4];
+
+        public boolean gyroConnected;
+        public double gyroYaw;
+        public double gyroYawRate;
+        /** Forward and leftward acceleration; zero in logs recorded before it was logged. */
+        public double[] gyroAcceleration = new double[2];
+
+        /** The vision frame values, or null if no new frame arrived this loop. */
+        public double[] visionFrame;
+
+        public double[] visionBotpose = new double[0];
+    }
+
+    /** A pose reset or heading zero, which happened between two loops. */
+    public static class Event {
+        /** The FPGA time it happened, in seconds. */
+        public double timestamp;
+
+        /** The pose the estimate was reset to, or null if the heading was zeroed instead. */
+        public Pose2d resetPose;
+    }
+
+    private final List<Loop> m_loops = new ArrayList<>();
+    private final List<Event> m_events = new ArrayList<>();
+    private int m_index = 0;
+    private int m_eventIndex = 0;
+
+    /**
+     * Loads every recorded loop from a log file.
+     *
+     * @param path The path of the .wpilog file.
+     * @throws IOException If the file can't be read, isn't a data log, or has no recorded drive inputs.
+     */
+    public DriveReplaySource(String path) throws IOException {
+        DataLogReader reader = new DataLogReader(path);
+        if (!reader.isValid()) {
+            throw new IOException(path + " is not a WPILib data log");
+        }
+
+        Map<Integer, String> entries = new HashMap<>();
+        Loop loop = null;
+        for (DataLogRecord record : reader) {
+            if (record.isStart()) {
+                DataLogRecord.StartRecordData start = record.getStartData();
+                entries.put(start.entry, start.name);
+                continue;
+            }
+            if (record.isControl()) {
+                continue;
+            }
+
+            String name = entries.get(record.getEntry());
+            if (name == null || !name.startsWith("Inputs/")) {
+                continue;
+            }
+
+            if (name.equals(DriveInputsLog.kResetPose)) {
+                double[] values = record.getDoubleArray();
+                Event event = new Event();
+                event.timestamp = values[0];
+                event.resetPose = new Pose2d(values[1], values[2], new Rotation2d(values[3]));
+                m_events.add(event);
+            } else if (name.equals(DriveInputsLog.kZeroHeading)) {
+                Event event = new Event();
+                event.timestamp = record.getDouble();
+                m_events.add(event);
+            } else if (name.equals(DriveInputsLog.kLoop)) {
+                loop = new Loop();
+                loop.timestamp = record.getDouble();
+                m_loops.add(loop);
+            } else if (loop != null) {
+                read(loop, name, record);
+            }
+        }
+
+        if (m_loops.isEmpty()) {
+            throw new IOException(path + " has no recorded drive inputs");
+        }
+    }
+
+    private static void read(Loop loop, String name, DataLogRecord record) {
+        switch (name) {
+            case DriveInputsLog.kOdometryTimestamps -> loop.odometryTimestamps = record.getDoubleArray();
+            case DriveInputsLog.kOdometryDistances -> loop.odometryDistances = record.getDoubleArray();
+            case DriveInputsLog.kOdometryAngles -> loop.odometryAngles = record.getDoubleArray();
+            case DriveInputsLog.kOdometryYaws -> loop.odometryYaws = record.getDoubleArray();
+            case DriveInputsLog.kModulePositions -> loop.drivePositions = record.getDoubleArray();
+            case DriveInputsLog.kModuleVelocities -> loop.driveVelocities = record.getDoubleArray();
+            case DriveInputsLog.kModuleAngles -> loop.moduleAngles = record.getDoubleArray();
+            case DriveInputsLog.kGyroConnected -> loop.gyroConnected = record.getBoolean();
+            case DriveInputsLog.kGyroYaw -> loop.gyroYaw = record.getDouble();
+            case DriveInputsLog.kGyroYawRate -> loop.gyroYawRate = record.getDouble();
+            case DriveInputsLog.kGyroAcceleration -> loop.gyroAcceleration = record.getDoubleArray();
+            case DriveInputsLog.kVisionFrame -> loop.visionFrame = record.getDoubleArray();
+            case DriveInputsLog.kVisionBotpose -> loop.visionBotpose = record.getDoubleArray();
+            default -> {}
+        }
+    }
+
+    /**
+     * Moves on to the next recorded loop.
+     *
+     * @return Whether there was another loop to move to.
+     */
+    public boolean advance() {
+        if (m_index + 1 >= m_loops.size()) {
+            return false;
+        }
+        m_index++;
+        return true;
+    }
+
+    /**
+     * Re-applies every reset and heading zero that happened before the current loop started and hasn't
+     * been applied yet, in the order they happened. Call once per loop, before {@link SwerveDrive#periodic()},
+     * so the drive sees them between the same two loops it did on the robot.
+     *
+     * @param drive The drive being replayed.
+     */
+    public void applyEvents(SwerveDrive drive) {
+        double loopStart = getLoop().timestamp;
+        while (m_eventIndex < m_events.size() && m_events.get(m_eventIndex).timestamp <= loopStart) {
+            Event event = m_events.get(m_eventIndex++);
+            if (event.resetPose != null) {
+                drive.resetOdometry(event.resetPose);
+            } else {
+                drive.zeroHeading();
+            }
+        }
+    }
+
+    /** @return The number of pose resets and heading zeroes in the log. */
+    public int getEventCount() {
+        return m_events.size();
+    }
+
+    /**
+     * Returns the inputs of the current loop. Starts at the first recorded loop.
+     *
+     * @return The current loop.
+     */
+    public Loop getLoop() {
+        return m_loops.get(m_index);
+    }
+
+    /** @return The number of loops in the log. */
+    public int getLoopCount() {
+        return m_loops.size();
+    }
+
+    /** @return The FPGA time of the first recorded loop, in seconds. */
+    public double getStartTimestamp() {
+        return m_loops.get(0).timestamp;
+    }
+
+    /** @return The FPGA time of the last recorded loop, in seconds. */
+    public double getEndTimestamp() {
+        return m_loops.get(m_loops.size() - 1).timestamp;
+    }
+}
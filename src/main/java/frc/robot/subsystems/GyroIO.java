@@ -0,0 +1,33 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+/** The hardware interface of the gyro, so {@link SwerveDrive} can run against a real NavX, a simulation, or a log. */
+public interface GyroIO {
+    /** Everything read from the gyro once per loop. */
+    class GyroIOInputs {
+        public boolean connected = false;
+        /** The robot heading, counter-clockwise positive. */
+        public double yawRadians = 0.0;
+        /** The robot turn rate, counter-clockwise positive. */
+        public double yawRateRadiansPerSecond = 0.0;
+        /** The robot's forward acceleration, with gravity removed. */
+        public double accelXMetersPerSecondSquared = 0.0;
+        /** The robot's leftward acceleration, with gravity removed. */
+        public double accelYMetersPerSecondSquared = 0.0;
+    }
+
+    /** Reads the gyro's current state into the inputs. */
+    default void updateInputs(GyroIOInputs inputs) {}
+
+    /**
+     * Returns the robot heading. Called from the odometry thread, so it must not allocate.
+     *
+     * @return The heading, in radians, counter-clockwise positive.
+     */
+    default double getYawRadians() {
+        return 0.0;
+    }
+
+    /** Zeroes the heading. */
+    default void reset() {}
+}
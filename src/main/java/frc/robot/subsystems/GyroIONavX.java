@@ -0,0 +1,36 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import com.kauailabs.navx.frc.AHRS;
+import edu.wpi.first.wpilibj.SPI;
+import frc.robot.Constants.DriveConstants;
+
+/** A NavX on the MXP port. */
+public class GyroIONavX implements GyroIO {
+    private static final double kGravity = 9.80665; // meters per second squared per g
+
+    // private final ADIS16470_IMU m_gyro = new ADIS16470_IMU();
+    private final AHRS m_gyro = new AHRS(SPI.Port.kMXP, (byte) DriveConstants.kNavXUpdateRateHz);
+
+    @Override
+    public void updateInputs(GyroIOInputs inputs) {
+        inputs.connected = m_gyro.isConnected();
+        inputs.yawRadians = getYawRadians();
+        inputs.yawRateRadiansPerSecond =
+                Math.toRadians(m_gyro.getRate() * (DriveConstants.kGyroReversed ? -1.0 : 1.0));
+        // The NavX reads in g, with its X axis forward and, being clockwise positive, its Y axis to the right
+        inputs.accelXMetersPerSecondSquared = m_gyro.getWorldLinearAccelX() * kGravity;
+        inputs.accelYMetersPerSecondSquared = -m_gyro.getWorldLinearAccelY() * kGravity;
+    }
+
+    @Override
+    public double getYawRadians() {
+        // The NavX reads clockwise positive
+        return Math.toRadians(-m_gyro.getAngle());
+    }
+
+    @Override
+    public void reset() {
+        m_gyro.reset();
+    }
+}
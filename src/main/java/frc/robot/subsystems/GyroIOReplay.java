@@ -0,0 +1,31 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+/** A gyro played back from a log. Resets are ignored. */
+public class GyroIOReplay implements GyroIO {
+    private final DriveReplaySource m_source;
+
+    /**
+     * Creates a replayed gyro.
+     *
+     * @param source The log being replayed.
+     */
+    public GyroIOReplay(DriveReplaySource source) {
+        m_source = source;
+    }
+
+    @Override
+    public void updateInputs(GyroIOInputs inputs) {
+        DriveReplaySource.Loop loop = m_source.getLoop();
+        inputs.connected = loop.gyroConnected;
+        inputs.yawRadians = loop.gyroYaw;
+        inputs.yawRateRadiansPerSecond = loop.gyroYawRate;
+        inputs.accelXMetersPerSecondSquared = loop.gyroAcceleration[0];
+        inputs.accelYMetersPerSecondSquared = loop.gyroAcceleration[1];
+    }
+
+    @Override
+    public double getYawRadians() {
+        return m_source.getLoop().gyroYaw;
+    }
+}
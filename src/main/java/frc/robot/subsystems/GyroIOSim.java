@@ -0,0 +1,91 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * A simulated gyro that integrates the chassis rotation implied by the simulated module velocities, the
+ * same way a real gyro would see the robot turn. Its accelerometer differentiates the robot-relative
+ * chassis velocity and adds the centripetal acceleration of turning, so in simulation the wheels never
+ * slip.
+ */
+public class GyroIOSim implements GyroIO {
+    private final ModuleIO[] m_modules;
+    private double m_yaw = 0.0;
+    private double m_yawRate = 0.0;
+    private double m_vx = 0.0;
+    private double m_vy = 0.0;
+    private double m_accelX = 0.0;
+    private double m_accelY = 0.0;
+    private double m_lastUpdateTime = Double.NaN;
+
+    /**
+     * Creates a simulated gyro.
+     *
+     * @param modules The simulated modules, in the same order as the drive kinematics.
+     */
+    public GyroIOSim(ModuleIO[] modules) {
+        m_modules = modules;
+    }
+
+    @Override
+    public void updateInputs(GyroIOInputs inputs) {
+        m_yawRate = computeYawRate();
+        double vx = 0.0;
+        double vy = 0.0;
+        for (ModuleIO module : m_modules) {
+            // The rotation cancels out over a symmetric set of modules, leaving the chassis velocity
+            vx += module.getDriveVelocityMetersPerSecond() * Math.cos(module.getAngleRadians()) / m_modules.length;
+            vy += module.getDriveVelocityMetersPerSecond() * Math.sin(module.getAngleRadians()) / m_modules.length;
+        }
+
+        double now = Timer.getFPGATimestamp();
+        if (!Double.isNaN(m_lastUpdateTime) && now > m_lastUpdateTime) {
+            double dt = now - m_lastUpdateTime;
+            m_yaw = MathUtil.angleModulus(m_yaw + m_yawRate * dt);
+            // An accelerometer turning with the robot also feels omega cross v
+            m_accelX = (vx - m_vx) / dt - m_yawRate * vy;
+            m_accelY = (vy - m_vy) / dt + m_yawRate * vx;
+        }
+        m_lastUpdateTime = now;
+        m_vx = vx;
+        m_vy = vy;
+
+        inputs.connected = true;
+        inputs.yawRadians = m_yaw;
+        inputs.yawRateRadiansPerSecond = m_yawRate;
+        inputs.accelXMetersPerSecondSquared = m_accelX;
+        inputs.accelYMetersPerSecondSquared = m_accelY;
+    }
+
+    /**
+     * Finds the chassis rotation rate from the module velocities. Each module's velocity perpendicular to
+     * its position vector contributes omega * r^2, so a least squares fit over all modules is
+     * sum(r x v) / sum(r^2).
+     */
+    private double computeYawRate() {
+        double numerator = 0.0;
+        double denominator = 0.0;
+        for (int i = 0; i < m_modules.length; i++) {
+            double x = DriveConstants.kModuleLocations[i].getX();
+            double y = DriveConstants.kModuleLocations[i].getY();
+            double speed = m_modules[i].getDriveVelocityMetersPerSecond();
+            double angle = m_modules[i].getAngleRadians();
+            numerator += x * speed * Math.sin(angle) - y * speed * Math.cos(angle);
+            denominator += x * x + y * y;
+        }
+        return numerator / denominator;
+    }
+
+    @Override
+    public double getYawRadians() {
+        return m_yaw;
+    }
+
+    @Override
+    public void reset() {
+        m_yaw = 0.0;
+    }
+}
@@ -5,19 +5,29 @@ import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkMax;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.CANConstants;
 import frc.robot.Constants.IntakeConstants;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
+import frc.robot.util.Telemetry;
 
 public class Intake extends SubsystemBase {
 
     private CANSparkMax motor;
+    private final Telemetry.DoubleChannel outputTelemetry = Telemetry.doubleChannel("Intake/Output", "percent");
 
     public Intake() {
         motor = new CANSparkMax(IntakeConstants.kIntakeCanId, MotorType.kBrushless);
-        motor.setInverted(IntakeConstants.kInvertIntake);
-        motor.setIdleMode(IdleMode.kBrake);
+        SparkMaxConfigurator.apply(
+                motor,
+                new SparkMaxConfig()
+                        .inverted(IntakeConstants.kInvertIntake)
+                        .idleMode(IdleMode.kBrake)
+                        .statusFrames(CANConstants.kBrushlessMechanismProfile));
     }
 
     public void set(double percent) {
         motor.set(percent);
+        outputTelemetry.set(percent);
     }
 }
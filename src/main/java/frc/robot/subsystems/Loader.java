@@ -6,26 +6,154 @@ import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkMax;
 import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.CANConstants;
 import frc.robot.Constants.LoaderConstants;
+import frc.robot.util.EdgeCapture;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
+import frc.robot.util.Telemetry;
 
+/**
+ * The loader, which carries a note from the intake up to the shooter. It tracks where the note is with
+ * the loaded switch, which is watched by an FPGA interrupt rather than polled, so the loader stops the
+ * moment a note reaches the switch instead of up to a loop later. The hardware timestamp of each edge
+ * is kept and logged, for measuring how quickly notes move through the robot.
+ */
 public class Loader extends SubsystemBase {
 
+    /** Where the note is. */
+    public enum NoteState {
+        /** No note in the robot. */
+        EMPTY,
+        /** Pulling a note in from the intake. */
+        INTAKING,
+        /** A note is sitting on the switch, ready to shoot. */
+        INDEXED,
+        /** Feeding the note into the shooter. */
+        SHOOTING
+    }
+
     private CANSparkMax motor;
+    private final Telemetry.DoubleChannel outputTelemetry = Telemetry.doubleChannel("Loader/Output", "percent");
+    private final Telemetry.BooleanChannel indexedTelemetry = Telemetry.booleanChannel("Loader/Note Indexed");
+    private final Telemetry.DoubleChannel arrivedTelemetry = Telemetry.doubleChannel("Loader/Note Arrived", "s");
+    private final Telemetry.DoubleChannel leftTelemetry = Telemetry.doubleChannel("Loader/Note Left", "s");
     private DigitalInput loadedSwitch;
+    private final EdgeCapture switchEdges;
+    private int loggedArrivals = 0;
+    private int loggedDepartures = 0;
+
+    // Changed from both the robot loop and the interrupt thread, always while holding the lock
+    private volatile NoteState state = NoteState.EMPTY;
+    private volatile double output = 0.0;
 
     public Loader() {
         motor = new CANSparkMax(LoaderConstants.kLoaderCanId, MotorType.kBrushed);
-        motor.setInverted(LoaderConstants.kInvertLoad);
-        motor.setIdleMode(IdleMode.kCoast);
+        SparkMaxConfigurator.apply(
+                motor,
+                new SparkMaxConfig()
+                        .inverted(LoaderConstants.kInvertLoad)
+                        .idleMode(IdleMode.kCoast)
+                        .statusFrames(CANConstants.kBrushedMechanismProfile));
 
         loadedSwitch = new DigitalInput(LoaderConstants.kSwitchId);
+        if (isNoteLoaded()) {
+            state = NoteState.INDEXED;
+        }
+
+        switchEdges = new EdgeCapture(loadedSwitch, timestamp -> noteArrived(), timestamp -> noteLeft());
     }
 
-    public void set(double percent) {
-        motor.set(percent);
+    /** Runs the loader at a percent, e.g. to stop it or exhaust a note. */
+    public synchronized void set(double percent) {
+        if (state == NoteState.INTAKING || state == NoteState.SHOOTING) {
+            state = isNoteLoaded() ? NoteState.INDEXED : NoteState.EMPTY;
+        }
+        setOutput(percent);
+    }
+
+    /** Pulls a note in from the intake, unless one is already indexed, in which case the loader holds it. */
+    public synchronized void intake() {
+        if (state == NoteState.EMPTY) {
+            state = NoteState.INTAKING;
+        }
+        setOutput(state == NoteState.INTAKING ? LoaderConstants.kIntakeSpeed : 0.0);
+    }
+
+    /** Feeds the note into the shooter. */
+    public synchronized void feedShooter() {
+        state = NoteState.SHOOTING;
+        setOutput(LoaderConstants.kLoadShooterSpeed);
+    }
+
+    public NoteState getNoteState() {
+        return state;
+    }
+
+    /** Returns whether a note is sitting on the switch ready to shoot. */
+    public boolean isNoteIndexed() {
+        return state == NoteState.INDEXED;
     }
 
     public boolean isNoteLoaded() {
         return this.loadedSwitch.get();
     }
+
+    /**
+     * Returns when a note last pressed the loaded switch.
+     *
+     * @return The FPGA timestamp, in seconds, or NaN if no note has yet.
+     */
+    public double getNoteArrivedTimestamp() {
+        return switchEdges.getLastRisingTimestamp();
+    }
+
+    /**
+     * Returns when a note last left the loaded switch.
+     *
+     * @return The FPGA timestamp, in seconds, or NaN if no note has yet.
+     */
+    public double getNoteLeftTimestamp() {
+        return switchEdges.getLastFallingTimestamp();
+    }
+
+    @Override
+    public void periodic() {
+        indexedTelemetry.set(isNoteIndexed());
+        outputTelemetry.set(output);
+
+        // Edges and the output are logged here rather than from the interrupt thread, which the telemetry isn't safe on
+        if (switchEdges.getRisingCount() != loggedArrivals) {
+            loggedArrivals = switchEdges.getRisingCount();
+            arrivedTelemetry.set(getNoteArrivedTimestamp());
+        }
+        if (switchEdges.getFallingCount() != loggedDepartures) {
+            loggedDepartures = switchEdges.getFallingCount();
+            leftTelemetry.set(getNoteLeftTimestamp());
+        }
+    }
+
+    /** Called from the interrupt thread when a note presses the switch. */
+    private synchronized void noteArrived() {
+        if (state == NoteState.INTAKING) {
+            // Stop right away to index the note, the intake command notices on the next loop
+            setOutput(0.0);
+        }
+        if (state != NoteState.SHOOTING) {
+            state = NoteState.INDEXED;
+        }
+    }
+
+    /** Called from the interrupt thread when a note leaves the switch. */
+    private synchronized void noteLeft() {
+        if (state != NoteState.INTAKING) {
+            state = NoteState.EMPTY;
+        }
+    }
+
+    /** Drives the motor. Only called while holding the lock, so the loop and the interrupt don't interleave. */
+    private void setOutput(double percent) {
+        motor.set(percent);
+        output = percent;
+    }
 }
@@ -7,12 +7,18 @@ import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkAbsoluteEncoder.Type;
 import com.revrobotics.SparkPIDController;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.CANConstants;
 import frc.robot.Constants.ModuleConstants;
+import frc.robot.util.BootProfiler;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
 
-public class MAXSwerveModule {
+public class MAXSwerveModule implements ModuleIO {
     private final CANSparkMax m_drivingSparkMax;
     private final CANSparkMax m_turningSparkMax;
 
@@ -23,7 +29,9 @@ public class MAXSwerveModule {
     private final SparkPIDController m_turningPIDController;
 
     private double m_chassisAngularOffset = 0;
-    private SwerveModuleState m_desiredState = new SwerveModuleState(0.0, new Rotation2d());
+    private double m_desiredSpeed = 0.0;
+    private double m_desiredAngle = 0.0;
+    private final ModuleSetpoint m_setpoint = new ModuleSetpoint();
 
     /**
      * Constructs a MAXSwerveModule and configures the driving and turning motor,
@@ -32,74 +40,91 @@ public class MAXSwerveModule {
      * Encoder.
      */
     public MAXSwerveModule(int drivingCANId, int turningCANId, double chassisAngularOffset) {
+        long configStart = System.nanoTime();
         m_drivingSparkMax = new CANSparkMax(drivingCANId, MotorType.kBrushless);
         m_turningSparkMax = new CANSparkMax(turningCANId, MotorType.kBrushless);
 
-        // Factory reset, so we get the SPARKS MAX to a known state before configuring
-        // them. This is useful in case a SPARK MAX is swapped out.
-        m_drivingSparkMax.restoreFactoryDefaults();
-        m_turningSparkMax.restoreFactoryDefaults();
-
         // Setup encoders and PID controllers for the driving and turning SPARKS MAX.
         m_drivingEncoder = m_drivingSparkMax.getEncoder();
         m_turningEncoder = m_turningSparkMax.getAbsoluteEncoder(Type.kDutyCycle);
         m_drivingPIDController = m_drivingSparkMax.getPIDController();
         m_turningPIDController = m_turningSparkMax.getPIDController();
-        m_drivingPIDController.setFeedbackDevice(m_drivingEncoder);
-        m_turningPIDController.setFeedbackDevice(m_turningEncoder);
-
-        // Apply position and velocity conversion factors for the driving encoder. The
-        // native units for position and velocity are rotations and RPM, respectively,
-        // but we want meters and meters per second to use with WPILib's swerve APIs.
-        m_drivingEncoder.setPositionConversionFactor(ModuleConstants.kDrivingEncoderPositionFactor);
-        m_drivingEncoder.setVelocityConversionFactor(ModuleConstants.kDrivingEncoderVelocityFactor);
-
-        // Apply position and velocity conversion factors for the turning encoder. We
-        // want these in radians and radians per second to use with WPILib's swerve
-        // APIs.
-        m_turningEncoder.setPositionConversionFactor(ModuleConstants.kTurningEncoderPositionFactor);
-        m_turningEncoder.setVelocityConversionFactor(ModuleConstants.kTurningEncoderVelocityFactor);
-
-        // Invert the turning encoder, since the output shaft rotates in the opposite direction of
-        // the steering motor in the MAXSwerve Module.
-        m_turningEncoder.setInverted(ModuleConstants.kTurningEncoderInverted);
-
-        // Enable PID wrap around for the turning motor. This will allow the PID
-        // controller to go through 0 to get to the setpoint i.e. going from 350 degrees
-        // to 10 degrees will go through 0 rather than the other direction which is a
-        // longer route.
-        m_turningPIDController.setPositionPIDWrappingEnabled(true);
-        m_turningPIDController.setPositionPIDWrappingMinInput(ModuleConstants.kTurningEncoderPositionPIDMinInput);
-        m_turningPIDController.setPositionPIDWrappingMaxInput(ModuleConstants.kTurningEncoderPositionPIDMaxInput);
-
-        // Set the PID gains for the driving motor. Note these are example gains, and you
-        // may need to tune them for your own robot!
-        m_drivingPIDController.setP(ModuleConstants.kDrivingP);
-        m_drivingPIDController.setI(ModuleConstants.kDrivingI);
-        m_drivingPIDController.setD(ModuleConstants.kDrivingD);
-        m_drivingPIDController.setFF(ModuleConstants.kDrivingFF);
-        m_drivingPIDController.setOutputRange(ModuleConstants.kDrivingMinOutput, ModuleConstants.kDrivingMaxOutput);
-
-        // Set the PID gains for the turning motor. Note these are example gains, and you
-        // may need to tune them for your own robot!
-        m_turningPIDController.setP(ModuleConstants.kTurningP);
-        m_turningPIDController.setI(ModuleConstants.kTurningI);
-        m_turningPIDController.setD(ModuleConstants.kTurningD);
-        m_turningPIDController.setFF(ModuleConstants.kTurningFF);
-        m_turningPIDController.setOutputRange(ModuleConstants.kTurningMinOutput, ModuleConstants.kTurningMaxOutput);
-
-        m_drivingSparkMax.setIdleMode(ModuleConstants.kDrivingMotorIdleMode);
-        m_turningSparkMax.setIdleMode(ModuleConstants.kTurningMotorIdleMode);
-        m_drivingSparkMax.setSmartCurrentLimit(ModuleConstants.kDrivingMotorCurrentLimit);
-        m_turningSparkMax.setSmartCurrentLimit(ModuleConstants.kTurningMotorCurrentLimit);
-
-        // Save the SPARK MAX configurations. If a SPARK MAX browns out during
-        // operation, it will maintain the above configurations.
-        m_drivingSparkMax.burnFlash();
-        m_turningSparkMax.burnFlash();
+
+        // Factory reset, so we get the SPARKS MAX to a known state before configuring
+        // them. This is useful in case a SPARK MAX is swapped out. The configurator only
+        // resets and burns flash when a controller doesn't already hold this configuration,
+        // which is the usual case after a reboot.
+        SparkMaxConfig drivingConfig = new SparkMaxConfig()
+                .restoreFactoryDefaults()
+                .burnFlash()
+                .skipWhenConfigured(ModuleConstants.kSkipFlashBurnWhenConfigured)
+                // Apply position and velocity conversion factors for the driving encoder. The
+                // native units for position and velocity are rotations and RPM, respectively,
+                // but we want meters and meters per second to use with WPILib's swerve APIs.
+                .primaryEncoder(
+                        ModuleConstants.kDrivingEncoderPositionFactor, ModuleConstants.kDrivingEncoderVelocityFactor)
+                // Set the PID gains for the driving motor. Note these are example gains, and you
+                // may need to tune them for your own robot!
+                .pid(
+                        ModuleConstants.kDrivingP,
+                        ModuleConstants.kDrivingI,
+                        ModuleConstants.kDrivingD,
+                        ModuleConstants.kDrivingFF,
+                        ModuleConstants.kDrivingMinOutput,
+                        ModuleConstants.kDrivingMaxOutput)
+                .idleMode(ModuleConstants.kDrivingMotorIdleMode)
+                .smartCurrentLimit(ModuleConstants.kDrivingMotorCurrentLimit)
+                .statusFrames(CANConstants.kSwerveDrivingProfile);
+
+        SparkMaxConfig turningConfig = new SparkMaxConfig()
+                .restoreFactoryDefaults()
+                .burnFlash()
+                .skipWhenConfigured(ModuleConstants.kSkipFlashBurnWhenConfigured)
+                // Apply position and velocity conversion factors for the turning encoder. We
+                // want these in radians and radians per second to use with WPILib's swerve
+                // APIs. Invert the turning encoder, since the output shaft rotates in the opposite
+                // direction of the steering motor in the MAXSwerve Module.
+                .absoluteEncoder(
+                        ModuleConstants.kTurningEncoderPositionFactor,
+                        ModuleConstants.kTurningEncoderVelocityFactor,
+                        ModuleConstants.kTurningEncoderInverted)
+                // Enable PID wrap around for the turning motor. This will allow the PID
+                // controller to go through 0 to get to the setpoint i.e. going from 350 degrees
+                // to 10 degrees will go through 0 rather than the other direction which is a
+                // longer route.
+                .positionWrapping(
+                        ModuleConstants.kTurningEncoderPositionPIDMinInput,
+                        ModuleConstants.kTurningEncoderPositionPIDMaxInput)
+                // Set the PID gains for the turning motor. Note these are example gains, and you
+                // may need to tune them for your own robot!
+                .pid(
+                        ModuleConstants.kTurningP,
+                        ModuleConstants.kTurningI,
+                        ModuleConstants.kTurningD,
+                        ModuleConstants.kTurningFF,
+                        ModuleConstants.kTurningMinOutput,
+                        ModuleConstants.kTurningMaxOutput)
+                .smartMotion(
+                        ModuleConstants.kTurningSmartMotionSlot,
+                        ModuleConstants.kTurningSmartMotionP,
+                        1 / ModuleConstants.kTurningFreeSpeedRadiansPerSecond,
+                        ModuleConstants.kTurningSmartMotionMaxVelocity,
+                        ModuleConstants.kTurningSmartMotionMaxAcceleration,
+                        ModuleConstants.kTurningSmartMotionAllowedError)
+                .idleMode(ModuleConstants.kTurningMotorIdleMode)
+                .smartCurrentLimit(ModuleConstants.kTurningMotorCurrentLimit)
+                .statusFrames(CANConstants.kSwerveTurningProfile);
+
+        // Configure both SPARKS MAX at once, since most of the time is spent waiting on CAN.
+        SparkMaxConfigurator.applyInParallel(
+                new CANSparkMax[] {m_drivingSparkMax, m_turningSparkMax},
+                new SparkMaxConfig[] {drivingConfig, turningConfig});
+        BootProfiler.record(
+                "Swerve Module " + drivingCANId + "/" + turningCANId + " CAN config",
+                (System.nanoTime() - configStart) * 1e-6);
 
         m_chassisAngularOffset = chassisAngularOffset;
-        m_desiredState.angle = new Rotation2d(m_turningEncoder.getPosition());
+        m_desiredAngle = m_turningEncoder.getPosition();
         m_drivingEncoder.setPosition(0);
     }
 
@@ -109,11 +134,7 @@ public class MAXSwerveModule {
      * @return The current state of the module.
      */
     public SwerveModuleState getState() {
-        // Apply chassis angular offset to the encoder position to get the position
-        // relative to the chassis.
-        return new SwerveModuleState(
-                m_drivingEncoder.getVelocity(),
-                new Rotation2d(m_turningEncoder.getPosition() - m_chassisAngularOffset));
+        return new SwerveModuleState(getDriveVelocityMetersPerSecond(), new Rotation2d(getAngleRadians()));
     }
 
     /**
@@ -122,11 +143,55 @@ public class MAXSwerveModule {
      * @return The current position of the module.
      */
     public SwerveModulePosition getPosition() {
+        return new SwerveModulePosition(getDrivePositionMeters(), new Rotation2d(getAngleRadians()));
+    }
+
+    /**
+     * Returns the distance the driving wheel has travelled. Unlike {@link #getPosition()} this does not
+     * allocate, so it is safe to call from the odometry thread and other hot paths.
+     *
+     * @return The drive distance, in meters.
+     */
+    @Override
+    public double getDrivePositionMeters() {
+        return m_drivingEncoder.getPosition();
+    }
+
+    /**
+     * Returns the speed of the driving wheel without allocating.
+     *
+     * @return The drive velocity, in meters per second.
+     */
+    @Override
+    public double getDriveVelocityMetersPerSecond() {
+        return m_drivingEncoder.getVelocity();
+    }
+
+    /**
+     * Returns the angle of the module relative to the chassis without allocating.
+     *
+     * @return The module angle, in radians.
+     */
+    @Override
+    public double getAngleRadians() {
         // Apply chassis angular offset to the encoder position to get the position
         // relative to the chassis.
-        return new SwerveModulePosition(
-                m_drivingEncoder.getPosition(),
-                new Rotation2d(m_turningEncoder.getPosition() - m_chassisAngularOffset));
+        return m_turningEncoder.getPosition() - m_chassisAngularOffset;
+    }
+
+    @Override
+    public double getTurnVelocityRadiansPerSecond() {
+        return m_turningEncoder.getVelocity();
+    }
+
+    @Override
+    public double getDriveAppliedVolts() {
+        return m_drivingSparkMax.getAppliedOutput() * m_drivingSparkMax.getBusVoltage();
+    }
+
+    @Override
+    public double getTurnAppliedVolts() {
+        return m_turningSparkMax.getAppliedOutput() * m_turningSparkMax.getBusVoltage();
     }
 
     /**
@@ -135,25 +200,69 @@ public class MAXSwerveModule {
      * @param desiredState Desired state with speed and angle.
      */
     public void setDesiredState(SwerveModuleState desiredState) {
-        // Apply chassis angular offset to the desired state.
-        SwerveModuleState correctedDesiredState = new SwerveModuleState();
-        correctedDesiredState.speedMetersPerSecond = desiredState.speedMetersPerSecond;
-        correctedDesiredState.angle = desiredState.angle.plus(Rotation2d.fromRadians(m_chassisAngularOffset));
+        setDesiredState(desiredState.speedMetersPerSecond, desiredState.angle.getRadians());
+    }
 
-        // Optimize the reference state to avoid spinning further than 90 degrees.
-        SwerveModuleState optimizedDesiredState =
-                SwerveModuleState.optimize(correctedDesiredState, new Rotation2d(m_turningEncoder.getPosition()));
+    /**
+     * Sets the desired state for the module using primitives, so the control loop does not allocate a
+     * {@link SwerveModuleState} or {@link Rotation2d} every call.
+     *
+     * @param speedMetersPerSecond Desired speed of the driving wheel.
+     * @param angleRadians         Desired angle of the module relative to the chassis.
+     */
+    @Override
+    public void setDesiredState(double speedMetersPerSecond, double angleRadians) {
+        // Apply chassis angular offset to the desired state.
+        double currentAngle = m_turningEncoder.getPosition();
+        m_setpoint.update(
+                speedMetersPerSecond, angleRadians + m_chassisAngularOffset, currentAngle, Timer.getFPGATimestamp());
+        double speed = m_setpoint.getDriveSpeed();
 
         // Command driving and turning SPARKS MAX towards their respective setpoints.
         m_drivingPIDController.setReference(
-                optimizedDesiredState.speedMetersPerSecond, CANSparkMax.ControlType.kVelocity);
+                speed,
+                CANSparkMax.ControlType.kVelocity,
+                0,
+                Math.signum(speed) * ModuleConstants.kDrivingS,
+                SparkPIDController.ArbFFUnits.kVoltage);
+        // The target goes in the absolute encoder's 0 to 2 pi range. Left unwrapped, repeated turns the
+        // same way would walk it off the end of the range the controller wraps its position over.
+        double target = MathUtil.inputModulus(
+                m_setpoint.getAngle(),
+                ModuleConstants.kTurningEncoderPositionPIDMinInput,
+                ModuleConstants.kTurningEncoderPositionPIDMaxInput);
+        if (ModuleConstants.kTurningSmartMotionEnabled) {
+            // Smart Motion profiles the move itself, from where the module is
+            m_turningPIDController.setReference(
+                    target, CANSparkMax.ControlType.kSmartMotion, ModuleConstants.kTurningSmartMotionSlot);
+        } else {
+            m_turningPIDController.setReference(
+                    target,
+                    CANSparkMax.ControlType.kPosition,
+                    0,
+                    m_setpoint.getTurnFeedforwardVolts(),
+                    SparkPIDController.ArbFFUnits.kVoltage);
+        }
+
+        m_desiredSpeed = speedMetersPerSecond;
+        m_desiredAngle = angleRadians;
+    }
+
+    @Override
+    public void runDriveCharacterization(double volts) {
+        m_drivingSparkMax.setVoltage(volts);
         m_turningPIDController.setReference(
-                optimizedDesiredState.angle.getRadians(), CANSparkMax.ControlType.kPosition);
+                MathUtil.angleModulus(m_chassisAngularOffset), CANSparkMax.ControlType.kPosition);
+    }
 
-        m_desiredState = desiredState;
+    @Override
+    public void runTurnCharacterization(double volts) {
+        m_drivingSparkMax.setVoltage(0.0);
+        m_turningSparkMax.setVoltage(volts);
     }
 
     /** Zeroes all the SwerveModule encoders. */
+    @Override
     public void resetEncoders() {
         m_drivingEncoder.setPosition(0);
     }
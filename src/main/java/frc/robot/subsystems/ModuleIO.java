@@ -0,0 +1,107 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+/**
+ * The hardware interface of a single swerve module. {@link SwerveDrive} only talks to modules through
+ * this, so the same odometry and control code can run against real SPARKS MAX, a simulation, or a
+ * recorded log.
+ */
+public interface ModuleIO {
+    /** Everything read from a module once per loop. */
+    class ModuleIOInputs {
+        public double drivePositionMeters = 0.0;
+        public double driveVelocityMetersPerSecond = 0.0;
+        /** The module angle relative to the chassis. */
+        public double angleRadians = 0.0;
+        public double turnVelocityRadiansPerSecond = 0.0;
+        public double driveAppliedVolts = 0.0;
+        public double turnAppliedVolts = 0.0;
+    }
+
+    /** Reads the module's current state into the inputs. */
+    default void updateInputs(ModuleIOInputs inputs) {
+        inputs.drivePositionMeters = getDrivePositionMeters();
+        inputs.driveVelocityMetersPerSecond = getDriveVelocityMetersPerSecond();
+        inputs.angleRadians = getAngleRadians();
+        inputs.turnVelocityRadiansPerSecond = getTurnVelocityRadiansPerSecond();
+        inputs.driveAppliedVolts = getDriveAppliedVolts();
+        inputs.turnAppliedVolts = getTurnAppliedVolts();
+    }
+
+    /**
+     * Returns the distance the driving wheel has travelled. Called from the odometry thread, so it must
+     * not allocate.
+     *
+     * @return The drive distance, in meters.
+     */
+    double getDrivePositionMeters();
+
+    /**
+     * Returns the speed of the driving wheel.
+     *
+     * @return The drive velocity, in meters per second.
+     */
+    double getDriveVelocityMetersPerSecond();
+
+    /**
+     * Returns the angle of the module relative to the chassis. Called from the odometry thread, so it
+     * must not allocate.
+     *
+     * @return The module angle, in radians.
+     */
+    double getAngleRadians();
+
+    /**
+     * Returns how fast the module is steering.
+     *
+     * @return The steering velocity, in radians per second.
+     */
+    default double getTurnVelocityRadiansPerSecond() {
+        return 0.0;
+    }
+
+    /**
+     * Returns the voltage the driving motor controller is applying.
+     *
+     * @return The voltage, in volts.
+     */
+    default double getDriveAppliedVolts() {
+        return 0.0;
+    }
+
+    /**
+     * Returns the voltage the turning motor controller is applying.
+     *
+     * @return The voltage, in volts.
+     */
+    default double getTurnAppliedVolts() {
+        return 0.0;
+    }
+
+    /**
+     * Commands the module.
+     *
+     * @param speedMetersPerSecond Desired speed of the driving wheel.
+     * @param angleRadians         Desired angle of the module relative to the chassis.
+     */
+    default void setDesiredState(double speedMetersPerSecond, double angleRadians) {}
+
+    /**
+     * Drives the driving motor open loop for characterization, with the module held pointing forwards.
+     * Stays in effect until the next {@link #setDesiredState(double, double)}.
+     *
+     * @param volts The voltage to apply.
+     */
+    default void runDriveCharacterization(double volts) {}
+
+    /**
+     * Drives the turning motor open loop for characterization, with the driving motor stopped. Stays in
+     * effect until the next {@link #setDesiredState(double, double)}.
+     *
+     * @param volts The voltage to apply.
+     */
+    default void runTurnCharacterization(double volts) {}
+
+    /** Zeroes the drive encoder. */
+    default void resetEncoders() {}
+}
@@ -0,0 +1,34 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+/** A swerve module played back from a log. Commands are ignored. */
+public class ModuleIOReplay implements ModuleIO {
+    private final DriveReplaySource m_source;
+    private final int m_index;
+
+    /**
+     * Creates a replayed module.
+     *
+     * @param source The log being replayed.
+     * @param index  The module's index in the drive kinematics.
+     */
+    public ModuleIOReplay(DriveReplaySource source, int index) {
+        m_source = source;
+        m_index = index;
+    }
+
+    @Override
+    public double getDrivePositionMeters() {
+        return m_source.getLoop().drivePositions[m_index];
+    }
+
+    @Override
+    public double getDriveVelocityMetersPerSecond() {
+        return m_source.getLoop().driveVelocities[m_index];
+    }
+
+    @Override
+    public double getAngleRadians() {
+        return m_source.getLoop().moduleAngles[m_index];
+    }
+}
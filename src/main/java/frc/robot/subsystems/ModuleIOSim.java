@@ -0,0 +1,248 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.Constants.ModuleConstants;
+
+/**
+ * A simulated MAXSwerve module. Each NEO is modelled as a DC motor driving its gear reduction and a
+ * lumped inertia, with Coulomb friction and the configured current limit. The SPARK MAX velocity and
+ * position loops are emulated with the same gains {@link MAXSwerveModule} configures on the real
+ * controllers, run at the controller's 1 kHz rate, so commands see a module that takes time to reach its
+ * setpoint rather than one that snaps to it. Setpoints come from the same {@link ModuleSetpoint} the real
+ * module uses, and Smart Motion is emulated too, so the control options can be compared in simulation.
+ *
+ * <p>Simulation time is taken from {@link Timer#getFPGATimestamp()}, so the module can be stepped with
+ * simulated timing as well as real time.
+ */
+public class ModuleIOSim implements ModuleIO {
+    // The SPARK MAX runs its onboard PID at 1 kHz
+    private static final double kControllerPeriodSeconds = 0.001;
+    // Below this speed a mechanism with too little voltage to beat friction is held still
+    private static final double kStoppedRadiansPerSecond = 0.05;
+
+    private static final DCMotor kNeo = DCMotor.getNEO(1);
+
+    private final ModuleSetpoint m_setpoint;
+    private final boolean m_turningSmartMotionEnabled;
+
+    private final DCMotorSim m_drivingSim =
+            new DCMotorSim(kNeo, ModuleConstants.kDrivingMotorReduction, ModuleConstants.kDriveSimMomentOfInertia);
+    private final DCMotorSim m_turningSim =
+            new DCMotorSim(kNeo, ModuleConstants.kTurningMotorReduction, ModuleConstants.kTurningSimMomentOfInertia);
+
+    private double m_driveSetpoint = 0.0;
+    private double m_angleSetpoint = 0.0;
+    private double m_turnFeedforwardVolts = 0.0;
+
+    // Emulates Smart Motion: a trapezoid profile towards the angle setpoint, tracked by a velocity loop
+    private final TrapezoidProfile m_turningProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(
+            ModuleConstants.kTurningSmartMotionMaxVelocity, ModuleConstants.kTurningSmartMotionMaxAcceleration));
+    private TrapezoidProfile.State m_turningProfileState = new TrapezoidProfile.State();
+    private final TrapezoidProfile.State m_turningProfileGoal = new TrapezoidProfile.State();
+    private double m_drivePositionOffset = 0.0;
+    // Open loop voltages while characterizing, or NaN when the emulated controller is in charge
+    private double m_driveCharacterizationVolts = Double.NaN;
+    private double m_turnCharacterizationVolts = Double.NaN;
+    private double m_driveAppliedVolts = 0.0;
+    private double m_turnAppliedVolts = 0.0;
+    private double m_lastUpdateTime = Double.NaN;
+
+    /** Creates a simulated module with the control options in {@link ModuleConstants}. */
+    public ModuleIOSim() {
+        this(
+                ModuleConstants.kCosineScaleDriveSpeed,
+                ModuleConstants.kTurningFeedforwardEnabled,
+                ModuleConstants.kTurningSmartMotionEnabled,
+                ModuleConstants.kTurningFreeSpeedRadiansPerSecond);
+    }
+
+    /**
+     * Creates a simulated module with its own control options, for comparing them against each other.
+     *
+     * @param cosineScaleDriveSpeed     Whether to scale the drive speed by the cosine of the steering error.
+     * @param turningFeedforwardEnabled Whether to feed forward the rate the commanded angle changes at.
+     * @param turningSmartMotionEnabled Whether to profile steering moves like Smart Motion.
+     * @param maxFeedforwardRate        The fastest commanded angle rate fed forward, in radians per second.
+     */
+    ModuleIOSim(
+            boolean cosineScaleDriveSpeed,
+            boolean turningFeedforwardEnabled,
+            boolean turningSmartMotionEnabled,
+            double maxFeedforwardRate) {
+        m_setpoint = new ModuleSetpoint(cosineScaleDriveSpeed, turningFeedforwardEnabled, maxFeedforwardRate);
+        m_turningSmartMotionEnabled = turningSmartMotionEnabled;
+    }
+
+    @Override
+    public void updateInputs(ModuleIOInputs inputs) {
+        double now = Timer.getFPGATimestamp();
+        if (!Double.isNaN(m_lastUpdateTime)) {
+            step(now - m_lastUpdateTime);
+        }
+        m_lastUpdateTime = now;
+
+        ModuleIO.super.updateInputs(inputs);
+    }
+
+    /** Advances both motors, re-running the emulated controllers every controller period. */
+    private void step(double dtSeconds) {
+        int steps = (int) Math.ceil(dtSeconds / kControllerPeriodSeconds);
+        if (steps <= 0) {
+            return;
+        }
+        double stepSeconds = dtSeconds / steps;
+        boolean enabled = DriverStation.isEnabled();
+        double batteryVolts = RobotController.getBatteryVoltage();
+
+        for (int i = 0; i < steps; i++) {
+            double driveOutput = 0.0;
+            double turnOutput = 0.0;
+            if (enabled) {
+                driveOutput = ModuleConstants.kDrivingFF * m_driveSetpoint
+                        + ModuleConstants.kDrivingP * (m_driveSetpoint - getDriveVelocityMetersPerSecond())
+                        + Math.signum(m_driveSetpoint) * ModuleConstants.kDrivingS / batteryVolts;
+                if (m_turningSmartMotionEnabled) {
+                    // Goal on the same turn as the profile, so it takes the short way round
+                    m_turningProfileGoal.position = m_turningProfileState.position
+                            + MathUtil.angleModulus(m_angleSetpoint - m_turningProfileState.position);
+                    m_turningProfileState =
+                            m_turningProfile.calculate(stepSeconds, m_turningProfileState, m_turningProfileGoal);
+                    double velocity = m_turningProfileState.velocity;
+                    turnOutput = velocity / ModuleConstants.kTurningFreeSpeedRadiansPerSecond
+                            + ModuleConstants.kTurningSmartMotionP
+                                    * (velocity - m_turningSim.getAngularVelocityRadPerSec());
+                } else {
+                    turnOutput = ModuleConstants.kTurningP * MathUtil.angleModulus(m_angleSetpoint - getAngleRadians())
+                            + m_turnFeedforwardVolts / batteryVolts;
+                }
+                if (!Double.isNaN(m_driveCharacterizationVolts)) {
+                    driveOutput = m_driveCharacterizationVolts / batteryVolts;
+                }
+                if (!Double.isNaN(m_turnCharacterizationVolts)) {
+                    turnOutput = m_turnCharacterizationVolts / batteryVolts;
+                }
+            }
+
+            driveOutput = MathUtil.clamp(
+                    driveOutput, ModuleConstants.kDrivingMinOutput, ModuleConstants.kDrivingMaxOutput);
+            turnOutput = MathUtil.clamp(
+                    turnOutput, ModuleConstants.kTurningMinOutput, ModuleConstants.kTurningMaxOutput);
+
+            m_driveAppliedVolts = driveOutput * batteryVolts;
+            m_turnAppliedVolts = turnOutput * batteryVolts;
+            drive(
+                    m_drivingSim,
+                    m_driveAppliedVolts,
+                    ModuleConstants.kDrivingMotorReduction,
+                    ModuleConstants.kDrivingMotorCurrentLimit,
+                    ModuleConstants.kDriveSimFrictionVolts,
+                    stepSeconds);
+            drive(
+                    m_turningSim,
+                    m_turnAppliedVolts,
+                    ModuleConstants.kTurningMotorReduction,
+                    ModuleConstants.kTurningMotorCurrentLimit,
+                    ModuleConstants.kTurningSimFrictionVolts,
+                    stepSeconds);
+        }
+    }
+
+    /**
+     * Applies a voltage to one motor for one step, limited so the motor draws no more than the current
+     * limit and reduced by the voltage lost to friction.
+     */
+    private static void drive(
+            DCMotorSim sim, double volts, double reduction, double currentLimit, double frictionVolts, double dt) {
+        double velocity = sim.getAngularVelocityRadPerSec();
+        double motorVelocity = velocity * reduction;
+        double maxTorque = kNeo.KtNMPerAmp * currentLimit;
+        volts = MathUtil.clamp(
+                volts, kNeo.getVoltage(-maxTorque, motorVelocity), kNeo.getVoltage(maxTorque, motorVelocity));
+
+        if (Math.abs(velocity) > kStoppedRadiansPerSecond) {
+            volts -= Math.copySign(frictionVolts, velocity);
+        } else if (Math.abs(volts) <= frictionVolts) {
+            // Static friction holds the mechanism still
+            sim.setState(sim.getAngularPositionRad(), 0.0);
+            volts = 0.0;
+        } else {
+            volts -= Math.copySign(frictionVolts, volts);
+        }
+
+        sim.setInputVoltage(volts);
+        sim.update(dt);
+    }
+
+    @Override
+    public double getDrivePositionMeters() {
+        return m_drivingSim.getAngularPositionRad() * ModuleConstants.kWheelDiameterMeters / 2 - m_drivePositionOffset;
+    }
+
+    @Override
+    public double getDriveVelocityMetersPerSecond() {
+        return m_drivingSim.getAngularVelocityRadPerSec() * ModuleConstants.kWheelDiameterMeters / 2;
+    }
+
+    @Override
+    public double getAngleRadians() {
+        return MathUtil.angleModulus(m_turningSim.getAngularPositionRad());
+    }
+
+    @Override
+    public double getTurnVelocityRadiansPerSecond() {
+        return m_turningSim.getAngularVelocityRadPerSec();
+    }
+
+    @Override
+    public double getDriveAppliedVolts() {
+        return m_driveAppliedVolts;
+    }
+
+    @Override
+    public double getTurnAppliedVolts() {
+        return m_turnAppliedVolts;
+    }
+
+    @Override
+    public void setDesiredState(double speedMetersPerSecond, double angleRadians) {
+        m_driveCharacterizationVolts = Double.NaN;
+        m_turnCharacterizationVolts = Double.NaN;
+        double currentAngle = getAngleRadians();
+        m_setpoint.update(speedMetersPerSecond, angleRadians, currentAngle, Timer.getFPGATimestamp());
+        m_driveSetpoint = m_setpoint.getDriveSpeed();
+        m_angleSetpoint = MathUtil.angleModulus(m_setpoint.getAngle());
+        m_turnFeedforwardVolts = m_setpoint.getTurnFeedforwardVolts();
+        // Smart Motion plans a new profile from where the module is whenever the target changes
+        m_turningProfileState = new TrapezoidProfile.State(currentAngle, m_turningSim.getAngularVelocityRadPerSec());
+    }
+
+    /** Returns the steering feedforward the latest command asked for, in volts, before the output limit. */
+    double getTurnFeedforwardVolts() {
+        return m_turnFeedforwardVolts;
+    }
+
+    @Override
+    public void runDriveCharacterization(double volts) {
+        m_driveCharacterizationVolts = volts;
+        m_turnCharacterizationVolts = Double.NaN;
+        m_angleSetpoint = 0.0;
+    }
+
+    @Override
+    public void runTurnCharacterization(double volts) {
+        m_driveCharacterizationVolts = 0.0;
+        m_turnCharacterizationVolts = volts;
+    }
+
+    @Override
+    public void resetEncoders() {
+        m_drivePositionOffset += getDrivePositionMeters();
+    }
+}
@@ -0,0 +1,116 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.Constants.ModuleConstants;
+
+/**
+ * Turns a commanded module state into setpoints for the module's drive and steering controllers. It is
+ * shared by {@link MAXSwerveModule} and {@link ModuleIOSim}, so the simulation runs exactly the logic the
+ * robot does.
+ *
+ * <p>The target angle is optimized so the module never turns more than 90 degrees, reversing the wheel
+ * instead. The drive speed is optionally scaled by the cosine of the steering error. The steering
+ * feedforward is optionally computed from how fast the commanded angle is changing. Results are read back
+ * through getters so nothing allocates.
+ */
+class ModuleSetpoint {
+    private final boolean m_cosineScaleDriveSpeed;
+    private final boolean m_turningFeedforwardEnabled;
+    private final double m_maxFeedforwardRate;
+
+    // The previous command, for the rate the commanded angle is changing at
+    private double m_lastAngle = 0.0;
+    private double m_lastTimestamp = Double.NaN;
+
+    // The setpoints for the latest command
+    private double m_driveSpeed = 0.0;
+    private double m_angle = 0.0;
+    private double m_turnFeedforwardVolts = 0.0;
+
+    /** Creates a setpoint calculator with the control options in {@link ModuleConstants}. */
+    ModuleSetpoint() {
+        this(
+                ModuleConstants.kCosineScaleDriveSpeed,
+                ModuleConstants.kTurningFeedforwardEnabled,
+                ModuleConstants.kTurningFreeSpeedRadiansPerSecond);
+    }
+
+    /**
+     * Creates a setpoint calculator with its own control options, for comparing them against each other.
+     *
+     * @param cosineScaleDriveSpeed     Whether to scale the drive speed by the cosine of the steering error.
+     * @param turningFeedforwardEnabled Whether to feed forward the rate the commanded angle changes at.
+     * @param maxFeedforwardRate        The fastest commanded angle rate fed forward, in radians per second.
+     */
+    ModuleSetpoint(boolean cosineScaleDriveSpeed, boolean turningFeedforwardEnabled, double maxFeedforwardRate) {
+        m_cosineScaleDriveSpeed = cosineScaleDriveSpeed;
+        m_turningFeedforwardEnabled = turningFeedforwardEnabled;
+        m_maxFeedforwardRate = maxFeedforwardRate;
+    }
+
+    /**
+     * Computes the setpoints for a commanded state. The commanded and current angles only need to be
+     * measured from the same zero.
+     *
+     * @param speedMetersPerSecond The commanded speed of the driving wheel.
+     * @param angleRadians         The commanded angle of the module.
+     * @param currentAngleRadians  The angle the module is at.
+     * @param timestamp            The time of the command, in seconds.
+     */
+    void update(double speedMetersPerSecond, double angleRadians, double currentAngleRadians, double timestamp) {
+        double delta = MathUtil.angleModulus(angleRadians - currentAngleRadians);
+        double speed = speedMetersPerSecond;
+
+        // Optimize the reference state to avoid spinning further than 90 degrees.
+        if (Math.abs(delta) > Math.PI / 2) {
+            speed = -speed;
+            delta = MathUtil.angleModulus(delta + Math.PI);
+        }
+
+        // Drive only as fast as the wheel is pointing the right way, so it doesn't scrub sideways while
+        // the module is still turning.
+        if (m_cosineScaleDriveSpeed) {
+            speed *= Math.cos(delta);
+        }
+
+        // Feed forward the rate the commanded angle is changing at, e.g. while the robot drives and turns at
+        // once. Either direction of the wheel is the same angle, so a flip isn't a change. A step in the
+        // command isn't a rate the module could follow, so it's limited rather than feeding forward many
+        // times the battery voltage for one loop.
+        double dt = timestamp - m_lastTimestamp;
+        m_turnFeedforwardVolts = 0.0;
+        if (m_turningFeedforwardEnabled && dt > 0 && dt < 0.1) {
+            double rate = MathUtil.clamp(
+                    Math.IEEEremainder(angleRadians - m_lastAngle, Math.PI) / dt,
+                    -m_maxFeedforwardRate,
+                    m_maxFeedforwardRate);
+            m_turnFeedforwardVolts = Math.signum(rate) * ModuleConstants.kTurningS + ModuleConstants.kTurningV * rate;
+        }
+        m_lastAngle = angleRadians;
+        m_lastTimestamp = timestamp;
+
+        m_driveSpeed = speed;
+        m_angle = currentAngleRadians + delta;
+    }
+
+    /** @return The drive speed to command, in meters per second. */
+    double getDriveSpeed() {
+        return m_driveSpeed;
+    }
+
+    /**
+     * Returns the angle to steer to: the current angle plus the short way to the optimized target. It is
+     * not wrapped, so wrap it into whatever range the steering controller expects.
+     *
+     * @return The angle, in radians, from the same zero as the current angle.
+     */
+    double getAngle() {
+        return m_angle;
+    }
+
+    /** @return The steering feedforward, in volts, before the controller's output limit. */
+    double getTurnFeedforwardVolts() {
+        return m_turnFeedforwardVolts;
+    }
+}
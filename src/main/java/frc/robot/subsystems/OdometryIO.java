@@ -0,0 +1,31 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * The source of high-rate odometry samples. On the robot this is the {@link OdometryThread}; in
+ * simulation and replay the samples come from elsewhere.
+ */
+public interface OdometryIO {
+    /**
+     * The samples collected since the last loop, oldest first. Per-module values are stored flat, with
+     * sample {@code i} of module {@code m} at index {@code i * 4 + m}.
+     */
+    class OdometryIOInputs {
+        public int sampleCount = 0;
+        public final double[] timestamps = new double[DriveConstants.kOdometryBufferSize];
+        public final double[] distances = new double[DriveConstants.kOdometryBufferSize * 4];
+        public final double[] angles = new double[DriveConstants.kOdometryBufferSize * 4];
+        public final double[] yaws = new double[DriveConstants.kOdometryBufferSize];
+    }
+
+    /** Moves every sample collected since the last call into the inputs. */
+    void updateInputs(OdometryIOInputs inputs);
+
+    /** Throws away any samples that have not been read yet, e.g. when the odometry is reset. */
+    default void clear() {}
+
+    /** Publishes sampling statistics, if the source has any. */
+    default void publishStatistics() {}
+}
@@ -0,0 +1,27 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+/** Odometry samples played back from a log. */
+public class OdometryIOReplay implements OdometryIO {
+    private final DriveReplaySource m_source;
+
+    /**
+     * Creates replayed odometry.
+     *
+     * @param source The log being replayed.
+     */
+    public OdometryIOReplay(DriveReplaySource source) {
+        m_source = source;
+    }
+
+    @Override
+    public void updateInputs(OdometryIOInputs inputs) {
+        DriveReplaySource.Loop loop = m_source.getLoop();
+        int count = loop.odometryTimestamps.length;
+        System.arraycopy(loop.odometryTimestamps, 0, inputs.timestamps, 0, count);
+        System.arraycopy(loop.odometryDistances, 0, inputs.distances, 0, count * 4);
+        System.arraycopy(loop.odometryAngles, 0, inputs.angles, 0, count * 4);
+        System.arraycopy(loop.odometryYaws, 0, inputs.yaws, 0, count);
+        inputs.sampleCount = count;
+    }
+}
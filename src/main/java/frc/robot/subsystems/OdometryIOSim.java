@@ -0,0 +1,36 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Takes a single odometry sample per loop, straight from the simulated modules and gyro. Unlike the
+ * {@link OdometryThread} this runs on the robot loop, so a simulation stepped with simulated time stays
+ * deterministic.
+ */
+public class OdometryIOSim implements OdometryIO {
+    private final ModuleIO[] m_modules;
+    private final GyroIO m_gyro;
+
+    /**
+     * Creates the sampler.
+     *
+     * @param modules The simulated modules, in the same order as the drive kinematics.
+     * @param gyro    The simulated gyro.
+     */
+    public OdometryIOSim(ModuleIO[] modules, GyroIO gyro) {
+        m_modules = modules;
+        m_gyro = gyro;
+    }
+
+    @Override
+    public void updateInputs(OdometryIOInputs inputs) {
+        inputs.timestamps[0] = Timer.getFPGATimestamp();
+        for (int i = 0; i < m_modules.length; i++) {
+            inputs.distances[i] = m_modules[i].getDrivePositionMeters();
+            inputs.angles[i] = m_modules[i].getAngleRadians();
+        }
+        inputs.yaws[0] = m_gyro.getYawRadians();
+        inputs.sampleCount = 1;
+    }
+}
@@ -0,0 +1,213 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.util.Telemetry;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Samples the swerve module positions and gyro yaw on a dedicated {@link Notifier} that runs faster
+ * than the 20 ms robot loop. Samples are stored in a fixed-size, timestamped ring buffer which
+ * {@link SwerveDrive#periodic()} drains every loop, so odometry integrates every sample instead of
+ * only the one that happens to be current when the scheduler runs.
+ */
+public class OdometryThread implements OdometryIO {
+    private final ModuleIO[] m_modules;
+    private final GyroIO m_gyro;
+    private final Notifier m_notifier;
+    private final double m_periodSeconds;
+
+    // Everything below is shared with the notifier thread and guarded by this lock
+    private final ReentrantLock m_lock = new ReentrantLock();
+
+    private final double[] m_timestamps;
+    private final double[] m_distances;
+    private final double[] m_angles;
+    private final double[] m_yaws;
+    private int m_head = 0;
+    private int m_size = 0;
+    private int m_droppedSamples = 0;
+
+    // Timing statistics, reset each time they are published
+    private double m_lastSampleTime = 0.0;
+    private int m_periodCount = 0;
+    private double m_periodSum = 0.0;
+    private double m_periodSumSquares = 0.0;
+    private double m_maxPeriod = 0.0;
+
+    // The statistics as last published, read back by the getters
+    private double m_publishedRate = 0.0;
+    private double m_publishedJitter = 0.0;
+    private double m_publishedMaxPeriod = 0.0;
+    private int m_publishedDropped = 0;
+
+    private final Telemetry.DoubleChannel m_rateTelemetry = Telemetry.doubleChannel("Odometry/Rate Hz", "hertz");
+    private final Telemetry.DoubleChannel m_jitterTelemetry = Telemetry.doubleChannel("Odometry/Jitter ms", "ms");
+    private final Telemetry.DoubleChannel m_maxPeriodTelemetry =
+            Telemetry.doubleChannel("Odometry/Max Period ms", "ms");
+    private final Telemetry.DoubleChannel m_droppedTelemetry =
+            Telemetry.doubleChannel("Odometry/Dropped Samples", "samples");
+
+    /**
+     * Creates the odometry thread. Sampling does not begin until {@link #start()} is called.
+     *
+     * @param modules    The swerve modules, in the same order as the drive kinematics.
+     * @param gyro       The gyro to read the robot yaw from.
+     * @param frequency  How often to sample, in hertz.
+     * @param bufferSize How many samples may be held between calls to {@link #updateInputs}.
+     */
+    public OdometryThread(ModuleIO[] modules, GyroIO gyro, double frequency, int bufferSize) {
+        m_modules = modules;
+        m_gyro = gyro;
+        m_periodSeconds = 1.0 / frequency;
+
+        m_timestamps = new double[bufferSize];
+        m_distances = new double[bufferSize * modules.length];
+        m_angles = new double[bufferSize * modules.length];
+        m_yaws = new double[bufferSize];
+
+        m_notifier = new Notifier(this::sample);
+        m_notifier.setName("Odometry");
+    }
+
+    /** Starts sampling at the configured rate. */
+    public void start() {
+        m_notifier.startPeriodic(m_periodSeconds);
+    }
+
+    /** Stops sampling. Samples already in the buffer are kept until they are drained. */
+    public void stop() {
+        m_notifier.stop();
+    }
+
+    /** Reads every module and the gyro once and records the result in the ring buffer. */
+    private void sample() {
+        double timestamp = Timer.getFPGATimestamp();
+
+        m_lock.lock();
+        try {
+            // When the buffer is full the oldest sample is overwritten, so a stalled robot loop only
+            // loses history rather than blocking the sampler.
+            if (m_size == m_timestamps.length) {
+                m_droppedSamples++;
+            } else {
+                m_size++;
+            }
+
+            int offset = m_head * m_modules.length;
+            for (int i = 0; i < m_modules.length; i++) {
+                m_distances[offset + i] = m_modules[i].getDrivePositionMeters();
+                m_angles[offset + i] = m_modules[i].getAngleRadians();
+            }
+            m_yaws[m_head] = m_gyro.getYawRadians();
+            m_timestamps[m_head] = timestamp;
+            m_head = (m_head + 1) % m_timestamps.length;
+
+            if (m_lastSampleTime != 0.0) {
+                double period = timestamp - m_lastSampleTime;
+                m_periodCount++;
+                m_periodSum += period;
+                m_periodSumSquares += period * period;
+                m_maxPeriod = Math.max(m_maxPeriod, period);
+            }
+            m_lastSampleTime = timestamp;
+        } finally {
+            m_lock.unlock();
+        }
+    }
+
+    /**
+     * Copies every sample collected since the last call into the inputs, oldest first. The input arrays
+     * must be at least as long as the buffer size given to the constructor.
+     */
+    @Override
+    public void updateInputs(OdometryIOInputs inputs) {
+        m_lock.lock();
+        try {
+            int moduleCount = m_modules.length;
+            int index = (m_head - m_size + m_timestamps.length) % m_timestamps.length;
+            for (int i = 0; i < m_size; i++) {
+                inputs.timestamps[i] = m_timestamps[index];
+                System.arraycopy(m_distances, index * moduleCount, inputs.distances, i * moduleCount, moduleCount);
+                System.arraycopy(m_angles, index * moduleCount, inputs.angles, i * moduleCount, moduleCount);
+                inputs.yaws[i] = m_yaws[index];
+                index = (index + 1) % m_timestamps.length;
+            }
+            inputs.sampleCount = m_size;
+            m_size = 0;
+        } finally {
+            m_lock.unlock();
+        }
+    }
+
+    /** Throws away any samples that have not been drained yet, e.g. when the odometry is reset. */
+    @Override
+    public void clear() {
+        m_lock.lock();
+        try {
+            m_size = 0;
+        } finally {
+            m_lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes the achieved sample rate and jitter since the last call to the dashboard. Comparing the
+     * rate against the configured frequency is the quickest way to confirm the sampler is keeping up.
+     */
+    @Override
+    public void publishStatistics() {
+        double rate;
+        double jitter;
+        double maxPeriod;
+        int dropped;
+
+        m_lock.lock();
+        try {
+            double mean = m_periodCount > 0 ? m_periodSum / m_periodCount : 0.0;
+            double variance = m_periodCount > 0 ? m_periodSumSquares / m_periodCount - mean * mean : 0.0;
+            rate = mean > 0.0 ? 1.0 / mean : 0.0;
+            jitter = Math.sqrt(Math.max(variance, 0.0));
+            maxPeriod = m_maxPeriod;
+            dropped = m_droppedSamples;
+
+            m_periodCount = 0;
+            m_periodSum = 0.0;
+            m_periodSumSquares = 0.0;
+            m_maxPeriod = 0.0;
+        } finally {
+            m_lock.unlock();
+        }
+
+        m_publishedRate = rate;
+        m_publishedJitter = jitter;
+        m_publishedMaxPeriod = maxPeriod;
+        m_publishedDropped = dropped;
+
+        m_rateTelemetry.set(rate);
+        m_jitterTelemetry.set(jitter * 1000.0);
+        m_maxPeriodTelemetry.set(maxPeriod * 1000.0);
+        m_droppedTelemetry.set(dropped);
+    }
+
+    /** @return The mean sample rate over the last published interval, in hertz. */
+    public double getRateHz() {
+        return m_publishedRate;
+    }
+
+    /** @return The standard deviation of the sample period over the last published interval, in seconds. */
+    public double getJitterSeconds() {
+        return m_publishedJitter;
+    }
+
+    /** @return The longest sample period over the last published interval, in seconds. */
+    public double getMaxPeriodSeconds() {
+        return m_publishedMaxPeriod;
+    }
+
+    /** @return The number of samples overwritten before they were drained, since the thread was created. */
+    public int getDroppedSamples() {
+        return m_publishedDropped;
+    }
+}
@@ -1,23 +1,200 @@
 /* 2024 Written by Alumiboti FRC 5590 */
 package frc.robot.subsystems;
 
+import static edu.wpi.first.units.Units.Rotations;
+import static edu.wpi.first.units.Units.RotationsPerSecond;
+import static edu.wpi.first.units.Units.Second;
+import static edu.wpi.first.units.Units.Seconds;
+import static edu.wpi.first.units.Units.Volts;
+
 import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkRelativeEncoder;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.Debouncer;
+import edu.wpi.first.math.filter.LinearFilter;
+import edu.wpi.first.units.Angle;
+import edu.wpi.first.units.MutableMeasure;
+import edu.wpi.first.units.Velocity;
+import edu.wpi.first.units.Voltage;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutineLog;
+import frc.robot.Constants.CANConstants;
+import frc.robot.Constants.CharacterizationConstants;
 import frc.robot.Constants.ShooterConstants;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
+import frc.robot.util.Telemetry;
 
+/**
+ * The shooter flywheel. It can run open loop at a percent, or hold a speed, in which case it reports when
+ * it is close enough to the target to fire. The speed comes from a quadrature encoder if one is fitted,
+ * otherwise it is estimated from the motor's back-EMF: the applied voltage less the voltage dropped across
+ * the winding resistance by the measured current.
+ */
 public class Shooter extends SubsystemBase {
+    private static final double kNominalVoltage = 12.0;
 
     private CANSparkMax motor;
+    // Null when the speed is estimated from back-EMF
+    private RelativeEncoder encoder;
+
+    private final LinearFilter velocityFilter =
+            LinearFilter.singlePoleIIR(ShooterConstants.kVelocityFilterSeconds, TimedRobot.kDefaultPeriod);
+    private final Debouncer atSpeedDebouncer =
+            new Debouncer(ShooterConstants.kAtSpeedDebounceSeconds, Debouncer.DebounceType.kRising);
+
+    // NaN when running open loop
+    private double targetRpm = Double.NaN;
+    private double velocityRpm = 0.0;
+    // Unfiltered, for characterization, where the filter's lag would throw off the fitted acceleration gain
+    private double rawVelocityRpm = 0.0;
+    private boolean atSpeed = false;
+
+    // Characterization, which drives the motor open loop and logs what it does for the fitter. Without an
+    // encoder the speed is itself estimated from a motor model, so characterize with one fitted.
+    private final SysIdRoutine sysIdRoutine = new SysIdRoutine(
+            new SysIdRoutine.Config(
+                    Volts.per(Second).of(CharacterizationConstants.kShooterRampVoltsPerSecond),
+                    Volts.of(CharacterizationConstants.kShooterStepVolts),
+                    Seconds.of(CharacterizationConstants.kShooterTimeoutSeconds)),
+            new SysIdRoutine.Mechanism(volts -> setVoltage(volts.in(Volts)), this::logCharacterization, this));
+    private final MutableMeasure<Voltage> sysIdVolts = MutableMeasure.zero(Volts);
+    private final MutableMeasure<Angle> sysIdPosition = MutableMeasure.zero(Rotations);
+    private final MutableMeasure<Velocity<Angle>> sysIdVelocity = MutableMeasure.zero(RotationsPerSecond);
+    // Integrated from the speed when there's no encoder to read it from
+    private double positionRotations = 0.0;
+
+    private final Telemetry.DoubleChannel outputTelemetry = Telemetry.doubleChannel("Shooter/Output", "percent");
+    private final Telemetry.DoubleChannel velocityTelemetry = Telemetry.doubleChannel("Shooter/Velocity", "rpm");
+    private final Telemetry.BooleanChannel atSpeedTelemetry = Telemetry.booleanChannel("Shooter/At Speed");
 
     public Shooter() {
         motor = new CANSparkMax(ShooterConstants.kShootCanId, MotorType.kBrushed);
-        motor.setInverted(ShooterConstants.kInvertMotor);
-        motor.setIdleMode(IdleMode.kCoast);
+        SparkMaxConfigurator.apply(
+                motor,
+                new SparkMaxConfig()
+                        .inverted(ShooterConstants.kInvertMotor)
+                        .idleMode(IdleMode.kCoast)
+                        .statusFrames(CANConstants.kShooterProfile));
+
+        if (ShooterConstants.kEncoderCountsPerRev > 0) {
+            encoder = motor.getEncoder(SparkRelativeEncoder.Type.kQuadrature, ShooterConstants.kEncoderCountsPerRev);
+        }
     }
 
+    /** Runs the shooter open loop. */
     public void set(double percent) {
+        targetRpm = Double.NaN;
         motor.set(percent);
+        outputTelemetry.set(percent);
+    }
+
+    /**
+     * Runs the shooter open loop at a voltage, compensating for the battery sagging.
+     *
+     * @param volts The voltage to apply.
+     */
+    public void setVoltage(double volts) {
+        targetRpm = Double.NaN;
+        motor.setVoltage(volts);
+        outputTelemetry.set(volts / kNominalVoltage);
+    }
+
+    /**
+     * Holds the shooter at a speed. The speed control runs every loop until {@link #set(double)} is called.
+     *
+     * @param rpm The target motor speed, in RPM.
+     */
+    public void setVelocity(double rpm) {
+        targetRpm = rpm;
+    }
+
+    /**
+     * Returns the measured or estimated motor speed.
+     *
+     * @return The speed, in RPM.
+     */
+    public double getVelocityRpm() {
+        return velocityRpm;
+    }
+
+    /**
+     * Returns whether the shooter is holding a speed and has been within tolerance of it for long enough to
+     * fire.
+     *
+     * @return True when it's ready to shoot.
+     */
+    public boolean isAtSpeed() {
+        return atSpeed;
+    }
+
+    /**
+     * Returns the routine that characterizes the flywheel.
+     *
+     * @return The routine.
+     */
+    public SysIdRoutine getSysIdRoutine() {
+        return sysIdRoutine;
+    }
+
+    @Override
+    public void periodic() {
+        rawVelocityRpm = measureVelocityRpm();
+        velocityRpm = velocityFilter.calculate(rawVelocityRpm);
+        velocityTelemetry.set(velocityRpm);
+        positionRotations = encoder != null
+                ? encoder.getPosition()
+                : positionRotations + rawVelocityRpm / 60 * TimedRobot.kDefaultPeriod;
+
+        boolean closedLoop = !Double.isNaN(targetRpm);
+        if (closedLoop) {
+            double volts = calculateVolts(targetRpm, velocityRpm);
+            motor.setVoltage(volts);
+            outputTelemetry.set(volts / kNominalVoltage);
+        }
+
+        atSpeed = atSpeedDebouncer.calculate(
+                closedLoop && Math.abs(targetRpm - velocityRpm) <= ShooterConstants.kAtSpeedToleranceRpm);
+        atSpeedTelemetry.set(atSpeed);
+    }
+
+    /**
+     * Returns the voltage that holds the flywheel at a speed: the feedforward for the target plus a
+     * proportional correction, limited to the nominal battery voltage.
+     *
+     * @param targetRpm   The target motor speed, in RPM.
+     * @param velocityRpm The filtered motor speed, in RPM.
+     * @return The voltage to apply.
+     */
+    static double calculateVolts(double targetRpm, double velocityRpm) {
+        double volts = Math.signum(targetRpm) * ShooterConstants.kS
+                + ShooterConstants.kV * targetRpm
+                + ShooterConstants.kVelocityP * (targetRpm - velocityRpm);
+        return MathUtil.clamp(volts, -kNominalVoltage, kNominalVoltage);
+    }
+
+    private void logCharacterization(SysIdRoutineLog log) {
+        log.motor("shooter")
+                .voltage(sysIdVolts.mut_replace(motor.getAppliedOutput() * motor.getBusVoltage(), Volts))
+                .angularPosition(sysIdPosition.mut_replace(positionRotations, Rotations))
+                .angularVelocity(sysIdVelocity.mut_replace(rawVelocityRpm / 60, RotationsPerSecond));
+    }
+
+    /** Reads the encoder, or estimates the speed from the back-EMF if there isn't one. */
+    private double measureVelocityRpm() {
+        if (encoder != null) {
+            return encoder.getVelocity();
+        }
+
+        double appliedVolts = motor.getAppliedOutput() * motor.getBusVoltage();
+        // The SPARK MAX reports current without a sign, so it is taken to flow in the direction driven
+        double backEmf = appliedVolts - Math.copySign(motor.getOutputCurrent(), appliedVolts)
+                * ShooterConstants.kMotorResistanceOhms;
+        return backEmf * ShooterConstants.kFreeSpeedRpm / kNominalVoltage;
     }
 }
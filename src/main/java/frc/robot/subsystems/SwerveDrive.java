@@ -1,74 +1,321 @@
 /* 2024 Written by Alumiboti FRC 5590 */
 package frc.robot.subsystems;
 
-import com.kauailabs.navx.frc.AHRS;
+import static edu.wpi.first.units.Units.Meters;
+import static edu.wpi.first.units.Units.MetersPerSecond;
+import static edu.wpi.first.units.Units.Radians;
+import static edu.wpi.first.units.Units.RadiansPerSecond;
+import static edu.wpi.first.units.Units.Second;
+import static edu.wpi.first.units.Units.Seconds;
+import static edu.wpi.first.units.Units.Volts;
+
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.util.HolonomicPathFollowerConfig;
 import com.pathplanner.lib.util.PIDConstants;
 import com.pathplanner.lib.util.ReplanningConfig;
-import edu.wpi.first.math.filter.SlewRateLimiter;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.units.Angle;
+import edu.wpi.first.units.Distance;
+import edu.wpi.first.units.MutableMeasure;
+import edu.wpi.first.units.Velocity;
+import edu.wpi.first.units.Voltage;
 import edu.wpi.first.util.WPIUtilJNI;
 import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.SPI;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutineLog;
+import frc.robot.Constants.AimingConstants;
+import frc.robot.Constants.CharacterizationConstants;
 import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.util.LimelightClient;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.Telemetry;
+import frc.utils.PoseHistory;
+import frc.utils.ShotSolver;
+import frc.utils.SlipDetector;
+import frc.utils.SwerveSetpointGenerator;
 import frc.utils.SwerveUtils;
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
 
 public class SwerveDrive extends SubsystemBase {
-    // Create MAXSwerveModules
-    private final MAXSwerveModule m_frontLeft = new MAXSwerveModule(
-            DriveConstants.kFrontLeftDrivingCanId,
-            DriveConstants.kFrontLeftTurningCanId,
-            DriveConstants.kFrontLeftChassisAngularOffset);
-
-    private final MAXSwerveModule m_frontRight = new MAXSwerveModule(
-            DriveConstants.kFrontRightDrivingCanId,
-            DriveConstants.kFrontRightTurningCanId,
-            DriveConstants.kFrontRightChassisAngularOffset);
-
-    private final MAXSwerveModule m_rearLeft = new MAXSwerveModule(
-            DriveConstants.kRearLeftDrivingCanId,
-            DriveConstants.kRearLeftTurningCanId,
-            DriveConstants.kBackLeftChassisAngularOffset);
-
-    private final MAXSwerveModule m_rearRight = new MAXSwerveModule(
-            DriveConstants.kRearRightDrivingCanId,
-            DriveConstants.kRearRightTurningCanId,
-            DriveConstants.kBackRightChassisAngularOffset);
-
-    // The gyro sensor
-    // private final ADIS16470_IMU m_gyro = new ADIS16470_IMU();
-    private final AHRS m_gyro = new AHRS(SPI.Port.kMXP);
-
-    // Slew rate filter variables for controlling lateral acceleration
-    private double m_currentRotation = 0.0;
-    private double m_currentTranslationDir = 0.0;
-    private double m_currentTranslationMag = 0.0;
-
-    private SlewRateLimiter m_magLimiter = new SlewRateLimiter(DriveConstants.kMagnitudeSlewRate);
-    private SlewRateLimiter m_rotLimiter = new SlewRateLimiter(DriveConstants.kRotationalSlewRate);
-    private double m_prevTime = WPIUtilJNI.now() * 1e-6;
-
-    // Odometry class for tracking robot pose
-    SwerveDriveOdometry m_odometry = new SwerveDriveOdometry(
-            DriveConstants.kDriveKinematics, Rotation2d.fromDegrees(-m_gyro.getAngle()), new SwerveModulePosition[] {
-                m_frontLeft.getPosition(),
-                m_frontRight.getPosition(),
-                m_rearLeft.getPosition(),
-                m_rearRight.getPosition()
-            });
-
-    /** Creates a new SwerveDrive. */
-    public SwerveDrive() {
+    // Hardware, accessed only through these interfaces so the drive can be simulated or replayed.
+    // Modules are in the same order as DriveConstants.kDriveKinematics.
+    private final ModuleIO[] m_modules;
+    private final GyroIO m_gyro;
+    private final OdometryIO m_odometry;
+    private final VisionIO m_vision;
+
+    // Everything read from the hardware this loop. Nothing below reads the hardware directly, so a
+    // replayed log produces exactly the same results as the match it was recorded in.
+    private final ModuleIO.ModuleIOInputs[] m_moduleInputs = {
+        new ModuleIO.ModuleIOInputs(),
+        new ModuleIO.ModuleIOInputs(),
+        new ModuleIO.ModuleIOInputs(),
+        new ModuleIO.ModuleIOInputs()
+    };
+    private final GyroIO.GyroIOInputs m_gyroInputs = new GyroIO.GyroIOInputs();
+    private final OdometryIO.OdometryIOInputs m_odometryInputs = new OdometryIO.OdometryIOInputs();
+    private final VisionIO.VisionIOInputs m_visionInputs = new VisionIO.VisionIOInputs();
+    private final DriveInputsLog m_inputsLog = new DriveInputsLog();
+
+    // Limits rate limited driving to what each module can follow, created once the module offsets are known
+    private final SwerveSetpointGenerator m_setpointGenerator;
+    private double m_lastSetpointTime = Double.NaN;
+    // Whether the modules were last commanded by the setpoint generator, so it can carry on from there
+    private boolean m_setpointGeneratorInSync = false;
+
+    // Pose estimator for tracking robot pose. Fuses wheel odometry with Limelight measurements when
+    // vision is enabled, and behaves like plain odometry otherwise.
+    private final SwerveDrivePoseEstimator m_poseEstimator;
+
+    private boolean m_visionEnabled = VisionConstants.kEnableVisionPoseEstimation;
+
+    // Shoot-on-the-move aiming: where to point, and a profiled controller to get there without overshoot
+    private final ShotSolver m_shotSolver = new ShotSolver(
+            AimingConstants.kNoteSpeedMetersPerSecond,
+            AimingConstants.kShotLatencySeconds,
+            AimingConstants.kShooterHeadingOffsetRadians);
+    private final ProfiledPIDController m_headingController = new ProfiledPIDController(
+            AimingConstants.kHeadingP,
+            AimingConstants.kHeadingI,
+            AimingConstants.kHeadingD,
+            AimingConstants.kHeadingConstraints);
+    private final TrapezoidProfile.State m_headingGoal = new TrapezoidProfile.State();
+    private boolean m_aimed = false;
+
+    // Where the robot was at every odometry sample over the last second, so delayed data such as a camera
+    // frame can be matched against the robot's state when it was captured rather than when it arrived
+    private final PoseHistory m_poseHistory = new PoseHistory(
+            (int) Math.ceil(DriveConstants.kOdometryFrequencyHz * DriveConstants.kPoseHistorySeconds));
+
+    // Drops slipping wheels from the odometry, and spots collisions so vision can correct for them
+    private final SlipDetector m_slipDetector;
+    private final double[] m_rawDistances = new double[4];
+    private double m_lastCollisionTime = Double.NaN;
+
+    // When the pose was last confirmed by a reset, a multi-tag measurement or a single tag that agreed with
+    // it. Single-tag outliers are only rejected while this is recent, so a bad pose can still be recovered.
+    private double m_lastTrustedFixTime = Double.NaN;
+
+    // Characterization routines, which drive the modules open loop and log what they do for the fitter
+    private static final String[] kModuleNames = {"front-left", "front-right", "rear-left", "rear-right"};
+    private final SysIdRoutine m_driveSysId = new SysIdRoutine(
+            new SysIdRoutine.Config(
+                    Volts.per(Second).of(CharacterizationConstants.kDriveRampVoltsPerSecond),
+                    Volts.of(CharacterizationConstants.kDriveStepVolts),
+                    Seconds.of(CharacterizationConstants.kDriveTimeoutSeconds)),
+            new SysIdRoutine.Mechanism(
+                    volts -> runDriveCharacterization(volts.in(Volts)), this::logDriveCharacterization, this, "drive"));
+    private final SysIdRoutine m_turningSysId = new SysIdRoutine(
+            new SysIdRoutine.Config(
+                    Volts.per(Second).of(CharacterizationConstants.kTurningRampVoltsPerSecond),
+                    Volts.of(CharacterizationConstants.kTurningStepVolts),
+                    Seconds.of(CharacterizationConstants.kTurningTimeoutSeconds)),
+            new SysIdRoutine.Mechanism(
+                    volts -> runTurnCharacterization(volts.in(Volts)),
+                    this::logTurnCharacterization,
+                    this,
+                    "steer"));
+    private final MutableMeasure<Voltage> m_sysIdVolts = MutableMeasure.zero(Volts);
+    private final MutableMeasure<Distance> m_sysIdDistance = MutableMeasure.zero(Meters);
+    private final MutableMeasure<Velocity<Distance>> m_sysIdVelocity = MutableMeasure.zero(MetersPerSecond);
+    private final MutableMeasure<Angle> m_sysIdAngle = MutableMeasure.zero(Radians);
+    private final MutableMeasure<Velocity<Angle>> m_sysIdAngularVelocity = MutableMeasure.zero(RadiansPerSecond);
+
+    // AprilTag alignment
+    private double m_alignTargetYaw = Double.NaN;
+    private double m_pipelineSwitchTime = 0.0;
+
+    // Telemetry, registered once so logging each loop is just an append
+    private final Telemetry.DoubleArrayChannel m_poseTelemetry = Telemetry.doubleArrayChannel("Drive/Pose", 3);
+    private final Telemetry.DoubleArrayChannel m_measuredStatesTelemetry =
+            Telemetry.doubleArrayChannel("Drive/Measured States", 8);
+    private final Telemetry.DoubleArrayChannel m_desiredStatesTelemetry =
+            Telemetry.doubleArrayChannel("Drive/Desired States", 8);
+    private final Telemetry.DoubleArrayChannel m_commandedSpeedsTelemetry =
+            Telemetry.doubleArrayChannel("Drive/Commanded Speeds", 3);
+    private final Telemetry.DoubleChannel m_gyroTelemetry = Telemetry.doubleChannel("Gyro Angle", "degrees");
+    private final Telemetry.DoubleArrayChannel m_aimTelemetry = Telemetry.doubleArrayChannel("Aim/Target", 3);
+    private final Telemetry.BooleanChannel m_aimedTelemetry = Telemetry.booleanChannel("Aim/Aimed");
+    private final Telemetry.DoubleArrayChannel m_slipTelemetry = Telemetry.doubleArrayChannel("Drive/Slipping", 4);
+    private final Telemetry.BooleanChannel m_collisionTelemetry = Telemetry.booleanChannel("Drive/Collision");
+
+    // Loop timing for the overrun profiler
+    private final LoopProfiler.Section m_periodicSection = LoopProfiler.section("SwerveDrive periodic");
+    private final LoopProfiler.Section m_visionSection = LoopProfiler.section("SwerveDrive vision");
+
+    // Pre-allocated storage for integrating odometry samples. Rotation2d is immutable, so a new one is
+    // only made when an angle has actually changed since the last sample.
+    private final SwerveModulePosition[] m_samplePositions = new SwerveModulePosition[] {
+        new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition()
+    };
+    private Rotation2d m_sampleYaw = new Rotation2d();
+
+    // The robot-relative speeds the modules measured this loop: forward, leftward and rotation
+    private final double[] m_measuredSpeeds = new double[3];
+    private final double[] m_measuredModuleSpeeds = new double[4];
+    private final double[] m_measuredModuleAngles = new double[4];
+
+    // Pre-allocated buffers for the drive control path so that commanding the modules doesn't allocate
+    private final double[] m_moduleX = new double[4];
+    private final double[] m_moduleY = new double[4];
+    private final double[] m_moduleSpeeds = new double[4];
+    private final double[] m_moduleAngles = new double[4];
+    private final double[] m_desiredSpeeds = new double[4];
+    private final double[] m_desiredAngles = new double[4];
+    private final SwerveModuleState[] m_moduleStates = new SwerveModuleState[] {
+        new SwerveModuleState(), new SwerveModuleState(), new SwerveModuleState(), new SwerveModuleState()
+    };
+
+    /**
+     * Creates the drive for whatever the code is running on: the real hardware on the robot, or a
+     * simulation on a desktop.
+     *
+     * @return The drive.
+     */
+    public static SwerveDrive create() {
+        return RobotBase.isReal() ? createReal() : createSim();
+    }
+
+    /**
+     * Creates the drive backed by the real MAXSwerve modules, NavX and Limelight.
+     *
+     * @return The drive.
+     */
+    public static SwerveDrive createReal() {
+        ModuleIO[] modules = {
+            new MAXSwerveModule(
+                    DriveConstants.kFrontLeftDrivingCanId,
+                    DriveConstants.kFrontLeftTurningCanId,
+                    DriveConstants.kFrontLeftChassisAngularOffset),
+            new MAXSwerveModule(
+                    DriveConstants.kFrontRightDrivingCanId,
+                    DriveConstants.kFrontRightTurningCanId,
+                    DriveConstants.kFrontRightChassisAngularOffset),
+            new MAXSwerveModule(
+                    DriveConstants.kRearLeftDrivingCanId,
+                    DriveConstants.kRearLeftTurningCanId,
+                    DriveConstants.kBackLeftChassisAngularOffset),
+            new MAXSwerveModule(
+                    DriveConstants.kRearRightDrivingCanId,
+                    DriveConstants.kRearRightTurningCanId,
+                    DriveConstants.kBackRightChassisAngularOffset)
+        };
+        GyroIO gyro = new GyroIONavX();
+
+        // Samples module positions and gyro yaw faster than the robot loop
+        OdometryThread odometry = new OdometryThread(
+                modules, gyro, DriveConstants.kOdometryFrequencyHz, DriveConstants.kOdometryBufferSize);
+        SwerveDrive drive =
+                new SwerveDrive(modules, gyro, odometry, new VisionIOLimelight(VisionConstants.kLimelightName));
+        odometry.start();
+        return drive;
+    }
+
+    /**
+     * Creates the drive backed by physics-simulated modules, a gyro that follows them, and a camera that
+     * sees the field's tags from the drive's pose.
+     *
+     * @return The drive.
+     */
+    public static SwerveDrive createSim() {
+        ModuleIO[] modules = {new ModuleIOSim(), new ModuleIOSim(), new ModuleIOSim(), new ModuleIOSim()};
+        GyroIO gyro = new GyroIOSim(modules);
+        VisionIOSim vision = new VisionIOSim();
+        SwerveDrive drive = new SwerveDrive(modules, gyro, new OdometryIOSim(modules, gyro), vision);
+        vision.setPoseSupplier(drive::getPose);
+        return drive;
+    }
+
+    /**
+     * Creates the drive backed by a recorded log. Step the log with {@link DriveReplaySource#advance()}
+     * and call {@link #periodic()} once per step.
+     *
+     * @param source The log to replay.
+     * @return The drive.
+     */
+    public static SwerveDrive createReplay(DriveReplaySource source) {
+        ModuleIO[] modules = {
+            new ModuleIOReplay(source, 0),
+            new ModuleIOReplay(source, 1),
+            new ModuleIOReplay(source, 2),
+            new ModuleIOReplay(source, 3)
+        };
+        return new SwerveDrive(
+                modules, new GyroIOReplay(source), new OdometryIOReplay(source), new VisionIOReplay(source));
+    }
+
+    /**
+     * Creates a new SwerveDrive. Use one of the factory methods rather than calling this directly.
+     *
+     * @param modules  The modules, in the same order as the drive kinematics.
+     * @param gyro     The gyro.
+     * @param odometry The source of high-rate odometry samples.
+     * @param vision   The Limelight.
+     */
+    public SwerveDrive(ModuleIO[] modules, GyroIO gyro, OdometryIO odometry, VisionIO vision) {
+        m_modules = modules;
+        m_gyro = gyro;
+        m_odometry = odometry;
+        m_vision = vision;
+
+        for (int i = 0; i < m_modules.length; i++) {
+            m_moduleX[i] = DriveConstants.kModuleLocations[i].getX();
+            m_moduleY[i] = DriveConstants.kModuleLocations[i].getY();
+        }
+
+        updateModuleAndGyroInputs();
+        m_poseEstimator = new SwerveDrivePoseEstimator(
+                DriveConstants.kDriveKinematics,
+                new Rotation2d(m_gyroInputs.yawRadians),
+                getModulePositions(),
+                new Pose2d(),
+                VecBuilder.fill(
+                        VisionConstants.kStateStdDevXY,
+                        VisionConstants.kStateStdDevXY,
+                        VisionConstants.kStateStdDevTheta),
+                VecBuilder.fill(
+                        VisionConstants.kVisionStdDevXY,
+                        VisionConstants.kVisionStdDevXY,
+                        VisionConstants.kVisionStdDevTheta));
+
+        for (int i = 0; i < m_modules.length; i++) {
+            m_moduleAngles[i] = m_moduleInputs[i].angleRadians;
+        }
+
+        m_slipDetector = new SlipDetector(
+                m_moduleX,
+                m_moduleY,
+                DriveConstants.kSlipThresholdMetersPerSecond,
+                DriveConstants.kCollisionThresholdMetersPerSecondSquared);
+        resetSlipDetector();
+
+        m_setpointGenerator = new SwerveSetpointGenerator(
+                m_moduleX,
+                m_moduleY,
+                DriveConstants.kMaxSpeedMetersPerSecond,
+                DriveConstants.kMaxWheelAcceleration,
+                DriveConstants.kMaxSteerRate);
+        m_headingController.enableContinuousInput(-Math.PI, Math.PI);
+
         AutoBuilder.configureHolonomic(
                 this::getPose, // Robot pose supplier
                 this::resetOdometry, // Method to reset odometry (will be called if your auto has a starting pose)
@@ -99,12 +346,181 @@ public class SwerveDrive extends SubsystemBase {
 
     @Override
     public void periodic() {
-        // Update the odometry in the periodic block
-        m_odometry.update(Rotation2d.fromDegrees(-m_gyro.getAngle()), new SwerveModulePosition[] {
-            m_frontLeft.getPosition(), m_frontRight.getPosition(), m_rearLeft.getPosition(), m_rearRight.getPosition()
-        });
+        long periodicStart = m_periodicSection.start();
+
+        // Read all of the hardware once, up front, and record it so this loop can be replayed
+        updateModuleAndGyroInputs();
+        m_odometry.updateInputs(m_odometryInputs);
+        m_vision.updateInputs(m_visionInputs);
+        m_inputsLog.record(
+                Timer.getFPGATimestamp(), m_odometryInputs, m_moduleInputs, m_gyroInputs, m_visionInputs);
+
+        // Integrate every odometry sample collected since the last loop, oldest first, with any slipping
+        // wheel's distance replaced by what the other wheels and the gyro say it should have rolled
+        double[] slipping = m_slipTelemetry.values();
+        Arrays.fill(slipping, 0.0);
+        boolean unreliable = false;
+        for (int i = 0; i < m_odometryInputs.sampleCount; i++) {
+            m_slipDetector.update(
+                    m_odometryInputs.timestamps[i],
+                    m_odometryInputs.distances,
+                    m_odometryInputs.angles,
+                    i * 4,
+                    m_gyroInputs.connected ? m_odometryInputs.yaws[i] : Double.NaN);
+            unreliable |= m_slipDetector.isUnreliable();
+            for (int module = 0; module < m_samplePositions.length; module++) {
+                m_samplePositions[module].distanceMeters = m_slipDetector.getCorrectedDistance(module);
+                double angle = m_odometryInputs.angles[i * 4 + module];
+                if (m_samplePositions[module].angle.getRadians() != angle) {
+                    m_samplePositions[module].angle = new Rotation2d(angle);
+                }
+                if (m_slipDetector.isSlipping(module)) {
+                    slipping[module] = 1.0;
+                }
+            }
+            if (m_sampleYaw.getRadians() != m_odometryInputs.yaws[i]) {
+                m_sampleYaw = new Rotation2d(m_odometryInputs.yaws[i]);
+            }
+            Pose2d pose =
+                    m_poseEstimator.updateWithTime(m_odometryInputs.timestamps[i], m_sampleYaw, m_samplePositions);
+            // Each sample's own velocity, from its wheel and yaw deltas to the one before, so the history
+            // doesn't smear one loop's speeds across every sample in it. Without a previous sample or the
+            // gyro, fall back to this loop's measured speeds.
+            boolean sampled = m_slipDetector.hasVelocity();
+            m_poseHistory.add(
+                    m_odometryInputs.timestamps[i],
+                    pose.getX(),
+                    pose.getY(),
+                    pose.getRotation().getRadians(),
+                    sampled ? m_slipDetector.getVx() : m_measuredSpeeds[0],
+                    sampled ? m_slipDetector.getVy() : m_measuredSpeeds[1],
+                    sampled ? m_slipDetector.getOmega() : m_measuredSpeeds[2],
+                    m_odometryInputs.yaws[i]);
+        }
+
+        m_slipTelemetry.update();
+
+        // A hit, or wheels too confused to fit, leaves the odometry suspect until vision pulls it back
+        boolean collision = m_slipDetector.checkCollision(
+                m_gyroInputs.accelXMetersPerSecondSquared, m_gyroInputs.accelYMetersPerSecondSquared);
+        if ((collision || unreliable) && m_odometryInputs.sampleCount > 0) {
+            m_lastCollisionTime = m_odometryInputs.timestamps[m_odometryInputs.sampleCount - 1];
+        }
+        m_collisionTelemetry.set(collision);
+
+        long visionStart = m_visionSection.start();
+        if (m_visionInputs.hasNewFrame && m_visionEnabled) {
+            addVisionMeasurement(m_visionInputs.frame);
+        }
+        m_visionSection.stop(visionStart);
 
-        SmartDashboard.putNumber("Gyro Angle", -m_gyro.getAngle());
+        m_odometry.publishStatistics();
+        logTelemetry();
+        m_periodicSection.stop(periodicStart);
+    }
+
+    private void updateModuleAndGyroInputs() {
+        for (int i = 0; i < m_modules.length; i++) {
+            m_modules[i].updateInputs(m_moduleInputs[i]);
+            m_measuredModuleSpeeds[i] = m_moduleInputs[i].driveVelocityMetersPerSecond;
+            m_measuredModuleAngles[i] = m_moduleInputs[i].angleRadians;
+        }
+        m_gyro.updateInputs(m_gyroInputs);
+        SwerveUtils.toChassisSpeeds(
+                m_measuredModuleSpeeds, m_measuredModuleAngles, m_moduleX, m_moduleY, m_measuredSpeeds);
+    }
+
+    /**
+     * Returns the routine that characterizes the driving motors, with every module pointing forwards.
+     *
+     * @return The routine.
+     */
+    public SysIdRoutine getDriveSysIdRoutine() {
+        return m_driveSysId;
+    }
+
+    /**
+     * Returns the routine that characterizes the turning motors, with the driving motors stopped.
+     *
+     * @return The routine.
+     */
+    public SysIdRoutine getTurningSysIdRoutine() {
+        return m_turningSysId;
+    }
+
+    private void runDriveCharacterization(double volts) {
+        m_setpointGeneratorInSync = false;
+        for (ModuleIO module : m_modules) {
+            module.runDriveCharacterization(volts);
+        }
+    }
+
+    private void runTurnCharacterization(double volts) {
+        m_setpointGeneratorInSync = false;
+        for (ModuleIO module : m_modules) {
+            module.runTurnCharacterization(volts);
+        }
+    }
+
+    private void logDriveCharacterization(SysIdRoutineLog log) {
+        for (int i = 0; i < m_modules.length; i++) {
+            log.motor(kModuleNames[i])
+                    .voltage(m_sysIdVolts.mut_replace(m_moduleInputs[i].driveAppliedVolts, Volts))
+                    .linearPosition(m_sysIdDistance.mut_replace(m_moduleInputs[i].drivePositionMeters, Meters))
+                    .linearVelocity(m_sysIdVelocity.mut_replace(
+                            m_moduleInputs[i].driveVelocityMetersPerSecond, MetersPerSecond));
+        }
+    }
+
+    private void logTurnCharacterization(SysIdRoutineLog log) {
+        for (int i = 0; i < m_modules.length; i++) {
+            log.motor(kModuleNames[i])
+                    .voltage(m_sysIdVolts.mut_replace(m_moduleInputs[i].turnAppliedVolts, Volts))
+                    .angularPosition(m_sysIdAngle.mut_replace(m_moduleInputs[i].angleRadians, Radians))
+                    .angularVelocity(m_sysIdAngularVelocity.mut_replace(
+                            m_moduleInputs[i].turnVelocityRadiansPerSecond, RadiansPerSecond));
+        }
+    }
+
+    /** Restarts the slip detector from this loop's module positions, which the pose estimator is reset to. */
+    private void resetSlipDetector() {
+        for (int i = 0; i < m_modules.length; i++) {
+            m_rawDistances[i] = m_moduleInputs[i].drivePositionMeters;
+        }
+        m_slipDetector.reset(m_rawDistances);
+    }
+
+    /** Returns the module positions from this loop's inputs. */
+    private SwerveModulePosition[] getModulePositions() {
+        SwerveModulePosition[] positions = new SwerveModulePosition[m_modules.length];
+        for (int i = 0; i < m_modules.length; i++) {
+            positions[i] = new SwerveModulePosition(
+                    m_moduleInputs[i].drivePositionMeters, new Rotation2d(m_moduleInputs[i].angleRadians));
+        }
+        return positions;
+    }
+
+    /** Records the pose and module states. Module states are logged as angle (radians), speed pairs. */
+    private void logTelemetry() {
+        Pose2d pose = m_poseEstimator.getEstimatedPosition();
+        double[] poseValues = m_poseTelemetry.values();
+        poseValues[0] = pose.getX();
+        poseValues[1] = pose.getY();
+        poseValues[2] = pose.getRotation().getRadians();
+        m_poseTelemetry.update();
+
+        double[] measured = m_measuredStatesTelemetry.values();
+        double[] desired = m_desiredStatesTelemetry.values();
+        for (int i = 0; i < m_modules.length; i++) {
+            measured[2 * i] = m_moduleInputs[i].angleRadians;
+            measured[2 * i + 1] = m_moduleInputs[i].driveVelocityMetersPerSecond;
+            desired[2 * i] = m_desiredAngles[i];
+            desired[2 * i + 1] = m_desiredSpeeds[i];
+        }
+        m_measuredStatesTelemetry.update();
+        m_desiredStatesTelemetry.update();
+
+        m_gyroTelemetry.set(Math.toDegrees(m_gyroInputs.yawRadians));
     }
 
     /**
@@ -113,7 +529,34 @@ public class SwerveDrive extends SubsystemBase {
      * @return The pose.
      */
     public Pose2d getPose() {
-        return m_odometry.getPoseMeters();
+        return m_poseEstimator.getEstimatedPosition();
+    }
+
+    /**
+     * Returns where the robot was at a past time, interpolated from the odometry samples of the last
+     * {@link DriveConstants#kPoseHistorySeconds}. Times older than that return the oldest pose held.
+     *
+     * @param timestamp The FPGA time, in seconds.
+     * @return The pose, or the current pose if no history has been recorded yet.
+     */
+    public Pose2d getPoseAt(double timestamp) {
+        if (!m_poseHistory.sample(timestamp)) {
+            return getPose();
+        }
+        return new Pose2d(m_poseHistory.getX(), m_poseHistory.getY(), new Rotation2d(m_poseHistory.getTheta()));
+    }
+
+    /**
+     * Returns the robot-relative speeds at a past time, interpolated like {@link #getPoseAt(double)}.
+     *
+     * @param timestamp The FPGA time, in seconds.
+     * @return The speeds, or the current speeds if no history has been recorded yet.
+     */
+    public ChassisSpeeds getRobotRelativeSpeedsAt(double timestamp) {
+        if (!m_poseHistory.sample(timestamp)) {
+            return getRobotRelativeSpeeds();
+        }
+        return new ChassisSpeeds(m_poseHistory.getVx(), m_poseHistory.getVy(), m_poseHistory.getOmega());
     }
 
     /**
@@ -122,15 +565,108 @@ public class SwerveDrive extends SubsystemBase {
      * @param pose The pose to which to set the odometry.
      */
     public void resetOdometry(Pose2d pose) {
-        m_odometry.resetPosition(
-                Rotation2d.fromDegrees(-m_gyro.getAngle()),
-                new SwerveModulePosition[] {
-                    m_frontLeft.getPosition(),
-                    m_frontRight.getPosition(),
-                    m_rearLeft.getPosition(),
-                    m_rearRight.getPosition()
-                },
-                pose);
+        // Logged so a replay resets at the same point, including the resets PathPlanner makes at the
+        // start of an auto
+        m_inputsLog.recordResetPose(
+                Timer.getFPGATimestamp(), pose.getX(), pose.getY(), pose.getRotation().getRadians());
+        // Samples taken before the reset would be integrated relative to the new pose, so drop them
+        m_odometry.clear();
+        m_poseHistory.clear();
+        // Timed from the last odometry sample rather than the clock, so a replay resets the same way
+        m_lastTrustedFixTime = m_odometryInputs.sampleCount > 0
+                ? m_odometryInputs.timestamps[m_odometryInputs.sampleCount - 1]
+                : Timer.getFPGATimestamp();
+        resetSlipDetector();
+        m_poseEstimator.resetPosition(new Rotation2d(m_gyroInputs.yawRadians), getModulePositions(), pose);
+    }
+
+    /**
+     * Enables or disables fusing Limelight measurements into the pose estimate.
+     *
+     * @param enabled Whether vision measurements should be used.
+     */
+    public void setVisionEnabled(boolean enabled) {
+        m_visionEnabled = enabled;
+    }
+
+    /**
+     * Feeds a Limelight botpose into the pose estimator, if it is worth trusting. The measurement is
+     * back-dated by the pipeline and capture latency so the estimator can apply it against the odometry
+     * history at the moment the image was taken.
+     *
+     * @param frame The Limelight frame to use.
+     */
+    private void addVisionMeasurement(LimelightClient.Frame frame) {
+        double[] botpose = frame.botpose_wpiblue;
+        if (botpose.length < 6 || !frame.hasTarget) {
+            return;
+        }
+
+        // Newer Limelight firmware appends tag statistics to the botpose array
+        double tagCount = botpose.length >= 11 ? botpose[7] : 1;
+        double averageDistance = botpose.length >= 11 ? botpose[9] : 1;
+        double averageArea = botpose.length >= 11 ? botpose[10] : frame.ta;
+
+        Pose2d visionPose = new Pose2d(botpose[0], botpose[1], Rotation2d.fromDegrees(botpose[5]));
+        double captureTime = frame.getCaptureTimestamp();
+        if (!isVisionMeasurementTrusted(visionPose, tagCount, averageArea, captureTime)) {
+            return;
+        }
+        if (tagCount >= 2
+                || visionPose.getTranslation().getDistance(getPose().getTranslation())
+                        <= VisionConstants.kMaxSingleTagJumpMeters) {
+            m_lastTrustedFixTime = captureTime;
+        }
+
+        double xyStdDev = VisionConstants.kVisionStdDevXY * averageDistance * averageDistance / tagCount;
+        if (isRecoveringFromCollision(captureTime)) {
+            // The odometry around a collision is suspect, so lean on vision to correct it
+            xyStdDev *= DriveConstants.kCollisionVisionStdDevScale;
+        }
+        m_poseEstimator.addVisionMeasurement(
+                visionPose,
+                captureTime,
+                VecBuilder.fill(xyStdDev, xyStdDev, VisionConstants.kVisionStdDevTheta));
+    }
+
+    /**
+     * Rejects vision measurements that are likely to be wrong: too few or too small tags, poses off the
+     * field, anything taken while spinning fast, and single-tag poses that disagree wildly with odometry
+     * while the odometry is known to be good. Once it is not, because nothing has confirmed it recently
+     * or the robot was hit, a single tag is allowed to pull the pose back however far off it is.
+     */
+    private boolean isVisionMeasurementTrusted(
+            Pose2d visionPose, double tagCount, double averageArea, double captureTime) {
+        if (tagCount < VisionConstants.kMinTagCount || averageArea < VisionConstants.kMinTagArea) {
+            return false;
+        }
+        if (visionPose.getX() < 0
+                || visionPose.getX() > VisionConstants.kFieldLengthMeters
+                || visionPose.getY() < 0
+                || visionPose.getY() > VisionConstants.kFieldWidthMeters) {
+            return false;
+        }
+        if (Math.abs(Math.toRadians(getTurnRate())) > VisionConstants.kMaxAngularVelocity) {
+            return false;
+        }
+        if (tagCount < 2
+                && isOdometryTrusted(captureTime)
+                && visionPose.getTranslation().getDistance(getPose().getTranslation())
+                        > VisionConstants.kMaxSingleTagJumpMeters) {
+            return false;
+        }
+        return true;
+    }
+
+    /** Whether the pose was confirmed shortly before the given time, and nothing has knocked it since. */
+    private boolean isOdometryTrusted(double timestamp) {
+        return timestamp - m_lastTrustedFixTime < VisionConstants.kTrustedFixSeconds
+                && !isRecoveringFromCollision(timestamp);
+    }
+
+    /** Whether the given time is close enough to the last collision that the odometry around it is suspect. */
+    private boolean isRecoveringFromCollision(double timestamp) {
+        return Math.abs(timestamp - m_lastCollisionTime) < DriveConstants.kCollisionRecoverySeconds;
     }
 
     /**
@@ -144,88 +680,237 @@ public class SwerveDrive extends SubsystemBase {
      * @param rateLimit     Whether to enable rate limiting for smoother control.
      */
     public void drive(double xSpeed, double ySpeed, double rot, boolean fieldRelative, boolean rateLimit) {
-
-        double xSpeedCommanded;
-        double ySpeedCommanded;
+        // Convert the commanded speeds into the correct units for the drivetrain
+        double xSpeedDelivered = xSpeed * DriveConstants.kMaxSpeedMetersPerSecond;
+        double ySpeedDelivered = ySpeed * DriveConstants.kMaxSpeedMetersPerSecond;
+        double rotDelivered = rot * DriveConstants.kMaxAngularSpeed;
+
+        if (fieldRelative) {
+            // Rotate the field-relative velocity into the robot's frame
+            double cos = Math.cos(m_gyroInputs.yawRadians);
+            double sin = Math.sin(m_gyroInputs.yawRadians);
+            double robotX = xSpeedDelivered * cos + ySpeedDelivered * sin;
+            ySpeedDelivered = -xSpeedDelivered * sin + ySpeedDelivered * cos;
+            xSpeedDelivered = robotX;
+        }
 
         if (rateLimit) {
-            // Convert XY to polar for rate limiting
-            double inputTranslationDir = Math.atan2(ySpeed, xSpeed);
-            double inputTranslationMag = Math.sqrt(Math.pow(xSpeed, 2) + Math.pow(ySpeed, 2));
-
-            // Calculate the direction slew rate based on an estimate of the lateral acceleration
-            double directionSlewRate;
-            if (m_currentTranslationMag != 0.0) {
-                directionSlewRate = Math.abs(DriveConstants.kDirectionSlewRate / m_currentTranslationMag);
-            } else {
-                directionSlewRate = 500.0; // some high number that means the slew rate is effectively instantaneous
-            }
+            driveWithSetpointGenerator(xSpeedDelivered, ySpeedDelivered, rotDelivered);
+        } else {
+            driveRobotRelative(xSpeedDelivered, ySpeedDelivered, rotDelivered);
+        }
+    }
 
-            double currentTime = WPIUtilJNI.now() * 1e-6;
-            double elapsedTime = currentTime - m_prevTime;
-            double angleDif = SwerveUtils.AngleDifference(inputTranslationDir, m_currentTranslationDir);
-            if (angleDif < 0.45 * Math.PI) {
-                m_currentTranslationDir = SwerveUtils.StepTowardsCircular(
-                        m_currentTranslationDir, inputTranslationDir, directionSlewRate * elapsedTime);
-                m_currentTranslationMag = m_magLimiter.calculate(inputTranslationMag);
-            } else if (angleDif > 0.85 * Math.PI) {
-                if (m_currentTranslationMag
-                        > 1e-4) { // some small number to avoid floating-point errors with equality checking
-                    // keep currentTranslationDir unchanged
-                    m_currentTranslationMag = m_magLimiter.calculate(0.0);
-                } else {
-                    m_currentTranslationDir = SwerveUtils.WrapAngle(m_currentTranslationDir + Math.PI);
-                    m_currentTranslationMag = m_magLimiter.calculate(inputTranslationMag);
-                }
-            } else {
-                m_currentTranslationDir = SwerveUtils.StepTowardsCircular(
-                        m_currentTranslationDir, inputTranslationDir, directionSlewRate * elapsedTime);
-                m_currentTranslationMag = m_magLimiter.calculate(0.0);
+    /**
+     * Drives the robot with robot-relative speeds, limited to what the modules can follow from their
+     * previous setpoints.
+     *
+     * @param vx    Forward speed, in meters per second.
+     * @param vy    Leftward speed, in meters per second.
+     * @param omega Counter-clockwise rotation rate, in radians per second.
+     */
+    private void driveWithSetpointGenerator(double vx, double vy, double omega) {
+        double now = WPIUtilJNI.now() * 1e-6;
+        double dt = now - m_lastSetpointTime;
+        m_lastSetpointTime = now;
+
+        // After something else has been driving, start again from what the modules are actually doing
+        if (!m_setpointGeneratorInSync || !(dt < 5 * TimedRobot.kDefaultPeriod)) {
+            for (int i = 0; i < m_modules.length; i++) {
+                m_moduleSpeeds[i] = m_moduleInputs[i].driveVelocityMetersPerSecond;
+                m_moduleAngles[i] = m_moduleInputs[i].angleRadians;
             }
-            m_prevTime = currentTime;
+            m_setpointGenerator.reset(
+                    m_measuredSpeeds[0], m_measuredSpeeds[1], m_measuredSpeeds[2], m_moduleSpeeds, m_moduleAngles);
+            dt = TimedRobot.kDefaultPeriod;
+        }
 
-            xSpeedCommanded = m_currentTranslationMag * Math.cos(m_currentTranslationDir);
-            ySpeedCommanded = m_currentTranslationMag * Math.sin(m_currentTranslationDir);
-            m_currentRotation = m_rotLimiter.calculate(rot);
+        m_setpointGenerator.generate(vx, vy, omega, dt);
 
-        } else {
-            xSpeedCommanded = xSpeed;
-            ySpeedCommanded = ySpeed;
-            m_currentRotation = rot;
+        double[] commanded = m_commandedSpeedsTelemetry.values();
+        commanded[0] = m_setpointGenerator.getVx();
+        commanded[1] = m_setpointGenerator.getVy();
+        commanded[2] = m_setpointGenerator.getOmega();
+        m_commandedSpeedsTelemetry.update();
+
+        for (int i = 0; i < m_modules.length; i++) {
+            setModuleState(i, m_setpointGenerator.getModuleSpeed(i), m_setpointGenerator.getModuleAngle(i));
         }
+        m_setpointGeneratorInSync = true;
+    }
 
-        // Convert the commanded speeds into the correct units for the drivetrain
-        double xSpeedDelivered = xSpeedCommanded * DriveConstants.kMaxSpeedMetersPerSecond;
-        double ySpeedDelivered = ySpeedCommanded * DriveConstants.kMaxSpeedMetersPerSecond;
-        double rotDelivered = m_currentRotation * DriveConstants.kMaxAngularSpeed;
-
-        var swerveModuleStates = DriveConstants.kDriveKinematics.toSwerveModuleStates(
-                fieldRelative
-                        ? ChassisSpeeds.fromFieldRelativeSpeeds(
-                                xSpeedDelivered,
-                                ySpeedDelivered,
-                                rotDelivered,
-                                Rotation2d.fromDegrees(-m_gyro.getAngle()))
-                        : new ChassisSpeeds(xSpeedDelivered, ySpeedDelivered, rotDelivered));
-        SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, DriveConstants.kMaxSpeedMetersPerSecond);
-        m_frontLeft.setDesiredState(swerveModuleStates[0]);
-        m_frontRight.setDesiredState(swerveModuleStates[1]);
-        m_rearLeft.setDesiredState(swerveModuleStates[2]);
-        m_rearRight.setDesiredState(swerveModuleStates[3]);
+    /**
+     * Drives the robot with field-relative speeds without allocating any intermediate objects.
+     *
+     * @param vx             Forward speed along the field, in meters per second.
+     * @param vy             Leftward speed along the field, in meters per second.
+     * @param omega          Counter-clockwise rotation rate, in radians per second.
+     * @param headingRadians The current heading of the robot on the field.
+     */
+    private void driveFieldRelative(double vx, double vy, double omega, double headingRadians) {
+        // Rotate the field-relative velocity into the robot's frame
+        double cos = Math.cos(headingRadians);
+        double sin = Math.sin(headingRadians);
+        driveRobotRelative(vx * cos + vy * sin, -vx * sin + vy * cos, omega);
+    }
+
+    /**
+     * Drives the robot with robot-relative speeds without allocating any intermediate objects.
+     *
+     * @param vx    Forward speed, in meters per second.
+     * @param vy    Leftward speed, in meters per second.
+     * @param omega Counter-clockwise rotation rate, in radians per second.
+     */
+    private void driveRobotRelative(double vx, double vy, double omega) {
+        double[] commanded = m_commandedSpeedsTelemetry.values();
+        commanded[0] = vx;
+        commanded[1] = vy;
+        commanded[2] = omega;
+        m_commandedSpeedsTelemetry.update();
+
+        SwerveUtils.toModuleStates(vx, vy, omega, m_moduleX, m_moduleY, m_moduleSpeeds, m_moduleAngles);
+        SwerveUtils.desaturateWheelSpeeds(m_moduleSpeeds, DriveConstants.kMaxSpeedMetersPerSecond);
+        for (int i = 0; i < m_modules.length; i++) {
+            setModuleState(i, m_moduleSpeeds[i], m_moduleAngles[i]);
+        }
+    }
+
+    private void setModuleState(int module, double speedMetersPerSecond, double angleRadians) {
+        m_setpointGeneratorInSync = false;
+        m_modules[module].setDesiredState(speedMetersPerSecond, angleRadians);
+        m_desiredSpeeds[module] = speedMetersPerSecond;
+        m_desiredAngles[module] = angleRadians;
     }
 
+    /**
+     * Turns the robot in place to face the target of a Limelight pipeline. The heading to hold is the gyro
+     * yaw when the frame was captured, less the target's tx, so camera latency doesn't make the robot
+     * chase a target it has already turned past. A profiled controller then turns to that heading, which
+     * settles faster than a proportional loop on tx and without overshoot.
+     *
+     * @param pipelineName The name of the pipeline in {@link VisionConstants#kPipelineIndices}.
+     * @return The command, which finishes once the robot is aligned and still, or straight away with an error
+     *     reported to the driver station if there's no such pipeline.
+     */
     public Command alignToAprilTag(String pipelineName) {
-        return null;
+        Integer pipelineIndex = VisionConstants.kPipelineIndices.get(pipelineName);
+        if (pipelineIndex == null) {
+            String message = "No Limelight pipeline named '" + pipelineName + "', not aligning";
+            DriverStation.reportError(message, false);
+            return Commands.runOnce(() -> DriverStation.reportError(message, false));
+        }
+
+        return runOnce(() -> {
+                    m_vision.setPipelineIndex(pipelineIndex);
+                    m_pipelineSwitchTime = Timer.getFPGATimestamp();
+                    m_alignTargetYaw = Double.NaN;
+                    m_headingController.reset(m_gyroInputs.yawRadians, m_gyroInputs.yawRateRadiansPerSecond);
+                })
+                .andThen(run(this::alignToTarget))
+                .until(this::isAlignedToTarget)
+                .finallyDo(() -> driveRobotRelative(0.0, 0.0, 0.0));
+    }
+
+    private void alignToTarget() {
+        LimelightClient.Frame frame = m_visionInputs.frame;
+        // Frames captured before the pipeline switch may still be looking for something else
+        if (m_visionInputs.hasNewFrame && frame.hasTarget && frame.getCaptureTimestamp() > m_pipelineSwitchTime) {
+            double yawAtCapture = m_poseHistory.sample(frame.getCaptureTimestamp())
+                    ? m_poseHistory.getYaw()
+                    : m_gyroInputs.yawRadians;
+            // tx is positive when the target is to the right, and yaw is counter-clockwise positive
+            m_alignTargetYaw = MathUtil.angleModulus(yawAtCapture - Math.toRadians(frame.tx));
+        }
+
+        if (Double.isNaN(m_alignTargetYaw)) {
+            driveRobotRelative(0.0, 0.0, 0.0);
+            return;
+        }
+        double omega = m_headingController.calculate(m_gyroInputs.yawRadians, m_alignTargetYaw)
+                + m_headingController.getSetpoint().velocity;
+        driveRobotRelative(0.0, 0.0, omega);
+    }
+
+    private boolean isAlignedToTarget() {
+        return !Double.isNaN(m_alignTargetYaw)
+                && Math.abs(MathUtil.angleModulus(m_alignTargetYaw - m_gyroInputs.yawRadians))
+                        <= VisionConstants.kAlignToleranceRadians
+                && Math.abs(m_gyroInputs.yawRateRadiansPerSecond) <= VisionConstants.kAlignMaxRateRadiansPerSecond;
+    }
+
+    /**
+     * Turns the robot to shoot into the alliance's speaker while the driver keeps control of translation.
+     * The heading leads the speaker by the robot's velocity times the note's time of flight, so a note
+     * fired on the move still goes in.
+     *
+     * @param xSpeed Forward speed from the driver, from -1 to 1, field relative.
+     * @param ySpeed Sideways speed from the driver, from -1 to 1, field relative.
+     * @return The command, which runs until interrupted.
+     */
+    public Command aimAtSpeaker(DoubleSupplier xSpeed, DoubleSupplier ySpeed) {
+        return runOnce(() -> m_headingController.reset(
+                        getPose().getRotation().getRadians(), m_gyroInputs.yawRateRadiansPerSecond))
+                .andThen(run(() -> aimAtSpeaker(xSpeed.getAsDouble(), ySpeed.getAsDouble())))
+                .finallyDo(() -> {
+                    m_aimed = false;
+                    m_aimedTelemetry.set(false);
+                });
+    }
+
+    private void aimAtSpeaker(double xSpeed, double ySpeed) {
+        Pose2d pose = getPose();
+        double heading = pose.getRotation().getRadians();
+
+        // The robot's velocity on the field, from what the modules measure
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double vx = m_measuredSpeeds[0] * cos - m_measuredSpeeds[1] * sin;
+        double vy = m_measuredSpeeds[0] * sin + m_measuredSpeeds[1] * cos;
+
+        Translation2d speaker = isRedAlliance() ? AimingConstants.kRedSpeaker : AimingConstants.kBlueSpeaker;
+        m_shotSolver.solve(pose.getX(), pose.getY(), vx, vy, speaker.getX(), speaker.getY());
+
+        m_headingGoal.position = m_shotSolver.getHeading();
+        m_headingGoal.velocity = m_shotSolver.getHeadingRate();
+        double omega = m_headingController.calculate(heading, m_headingGoal)
+                + m_headingController.getSetpoint().velocity;
+        m_aimed = Math.abs(MathUtil.angleModulus(m_shotSolver.getHeading() - heading))
+                <= AimingConstants.kHeadingToleranceRadians;
+
+        // Driven like normal rate limited field relative driving, with the rotation from the controller
+        drive(xSpeed, ySpeed, omega / DriveConstants.kMaxAngularSpeed, true, true);
+
+        double[] aim = m_aimTelemetry.values();
+        aim[0] = m_shotSolver.getHeading();
+        aim[1] = m_shotSolver.getDistance();
+        aim[2] = m_shotSolver.getTimeOfFlight();
+        m_aimTelemetry.update();
+        m_aimedTelemetry.set(m_aimed);
+    }
+
+    /**
+     * Returns whether {@link #aimAtSpeaker(DoubleSupplier, DoubleSupplier)} is running and the robot is
+     * pointing close enough to the lead-compensated heading to shoot.
+     *
+     * @return True when aimed.
+     */
+    public boolean isAimed() {
+        return m_aimed;
+    }
+
+    private static boolean isRedAlliance() {
+        var alliance = DriverStation.getAlliance();
+        return alliance.isPresent() && alliance.get() == DriverStation.Alliance.Red;
     }
 
     /**
      * Sets the wheels into an X formation to prevent movement.
      */
     public void setX() {
-        m_frontLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(45)));
-        m_frontRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(-45)));
-        m_rearLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(-45)));
-        m_rearRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(45)));
+        setModuleState(0, 0, Math.PI / 4);
+        setModuleState(1, 0, -Math.PI / 4);
+        setModuleState(2, 0, -Math.PI / 4);
+        setModuleState(3, 0, Math.PI / 4);
     }
 
     /**
@@ -235,23 +920,25 @@ public class SwerveDrive extends SubsystemBase {
      */
     public void setModuleStates(SwerveModuleState[] desiredStates) {
         SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, DriveConstants.kMaxSpeedMetersPerSecond);
-        m_frontLeft.setDesiredState(desiredStates[0]);
-        m_frontRight.setDesiredState(desiredStates[1]);
-        m_rearLeft.setDesiredState(desiredStates[2]);
-        m_rearRight.setDesiredState(desiredStates[3]);
+        for (int i = 0; i < m_modules.length; i++) {
+            setModuleState(i, desiredStates[i].speedMetersPerSecond, desiredStates[i].angle.getRadians());
+        }
     }
 
     /** Resets the drive encoders to currently read a position of 0. */
     public void resetEncoders() {
-        m_frontLeft.resetEncoders();
-        m_rearLeft.resetEncoders();
-        m_frontRight.resetEncoders();
-        m_rearRight.resetEncoders();
+        for (ModuleIO module : m_modules) {
+            module.resetEncoders();
+        }
     }
 
     /** Zeroes the heading of the robot. */
     public void zeroHeading() {
+        m_inputsLog.recordZeroHeading(Timer.getFPGATimestamp());
         m_gyro.reset();
+        m_gyroInputs.yawRadians = 0.0;
+        m_poseHistory.clear();
+        m_slipDetector.restart();
     }
 
     /**
@@ -260,7 +947,7 @@ public class SwerveDrive extends SubsystemBase {
      * @return the robot's heading in degrees, from -180 to 180
      */
     public double getHeading() {
-        return Rotation2d.fromDegrees(-m_gyro.getAngle()).getDegrees();
+        return Math.toDegrees(MathUtil.angleModulus(m_gyroInputs.yawRadians));
     }
 
     /**
@@ -269,7 +956,7 @@ public class SwerveDrive extends SubsystemBase {
      * @return The turn rate of the robot, in degrees per second
      */
     public double getTurnRate() {
-        return m_gyro.getRate() * (DriveConstants.kGyroReversed ? -1.0 : 1.0);
+        return Math.toDegrees(m_gyroInputs.yawRateRadiansPerSecond);
     }
 
     public void driveRobotRelative(ChassisSpeeds speeds) {
@@ -277,20 +964,40 @@ public class SwerveDrive extends SubsystemBase {
     }
 
     public void drive(ChassisSpeeds speeds, boolean fieldRelative) {
-        if (fieldRelative)
-            speeds = ChassisSpeeds.fromFieldRelativeSpeeds(speeds, getPose().getRotation());
-        var swerveModuleStates = DriveConstants.kDriveKinematics.toSwerveModuleStates(speeds);
-        SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, DriveConstants.kMaxSpeedMetersPerSecond);
-        setModuleStates(swerveModuleStates);
+        if (fieldRelative) {
+            driveFieldRelative(
+                    speeds.vxMetersPerSecond,
+                    speeds.vyMetersPerSecond,
+                    speeds.omegaRadiansPerSecond,
+                    getPose().getRotation().getRadians());
+        } else {
+            driveRobotRelative(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, speeds.omegaRadiansPerSecond);
+        }
     }
 
+    /**
+     * Returns the robot-relative speeds the modules measured this loop. The drive itself uses the
+     * primitive values; this is only for callers that need a {@link ChassisSpeeds}, such as PathPlanner.
+     *
+     * @return The speeds.
+     */
     public ChassisSpeeds getRobotRelativeSpeeds() {
-        return DriveConstants.kDriveKinematics.toChassisSpeeds(getModuleStates());
+        return new ChassisSpeeds(m_measuredSpeeds[0], m_measuredSpeeds[1], m_measuredSpeeds[2]);
     }
 
+    /**
+     * Returns the module states measured this loop. The array and its states are reused every call, so
+     * copy them to keep them past the next loop.
+     *
+     * @return The states, in the same order as the drive kinematics.
+     */
     public SwerveModuleState[] getModuleStates() {
-        return new SwerveModuleState[] {
-            m_frontLeft.getState(), m_frontRight.getState(), m_rearLeft.getState(), m_rearRight.getState()
-        };
+        for (int i = 0; i < m_modules.length; i++) {
+            m_moduleStates[i].speedMetersPerSecond = m_moduleInputs[i].driveVelocityMetersPerSecond;
+            if (m_moduleStates[i].angle.getRadians() != m_moduleInputs[i].angleRadians) {
+                m_moduleStates[i].angle = new Rotation2d(m_moduleInputs[i].angleRadians);
+            }
+        }
+        return m_moduleStates;
     }
 }
@@ -0,0 +1,25 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import frc.robot.util.LimelightClient;
+
+/** The interface to the Limelight, so {@link SwerveDrive} can run against a real camera or a log. */
+public interface VisionIO {
+    /** The latest camera frame, and whether it arrived since the last loop. */
+    class VisionIOInputs {
+        public boolean hasNewFrame = false;
+        public final LimelightClient.Frame frame = new LimelightClient.Frame();
+    }
+
+    /** Reads the latest frame into the inputs, if there is a new one. */
+    default void updateInputs(VisionIOInputs inputs) {
+        inputs.hasNewFrame = false;
+    }
+
+    /**
+     * Switches the camera to the given pipeline.
+     *
+     * @param pipelineIndex The index of the pipeline, from 0 to 9.
+     */
+    default void setPipelineIndex(int pipelineIndex) {}
+}
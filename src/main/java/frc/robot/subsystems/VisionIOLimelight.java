@@ -0,0 +1,31 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import frc.robot.util.LimelightClient;
+
+/** A real Limelight, read over NetworkTables. */
+public class VisionIOLimelight implements VisionIO {
+    private final LimelightClient m_limelight;
+
+    /**
+     * Creates the IO for the named Limelight.
+     *
+     * @param limelightName The NetworkTables name of the Limelight, e.g. "limelight".
+     */
+    public VisionIOLimelight(String limelightName) {
+        m_limelight = new LimelightClient(limelightName);
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+        inputs.hasNewFrame = m_limelight.update();
+        if (inputs.hasNewFrame) {
+            m_limelight.getFrame(inputs.frame);
+        }
+    }
+
+    @Override
+    public void setPipelineIndex(int pipelineIndex) {
+        m_limelight.setPipelineIndex(pipelineIndex);
+    }
+}
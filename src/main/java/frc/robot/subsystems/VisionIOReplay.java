@@ -0,0 +1,40 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import frc.robot.util.LimelightClient;
+
+/** Limelight frames played back from a log. */
+public class VisionIOReplay implements VisionIO {
+    private final DriveReplaySource m_source;
+
+    /**
+     * Creates a replayed Limelight.
+     *
+     * @param source The log being replayed.
+     */
+    public VisionIOReplay(DriveReplaySource source) {
+        m_source = source;
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+        DriveReplaySource.Loop loop = m_source.getLoop();
+        double[] values = loop.visionFrame;
+        inputs.hasNewFrame = values != null && values.length >= DriveInputsLog.kVisionFrameLength;
+        if (!inputs.hasNewFrame) {
+            return;
+        }
+
+        LimelightClient.Frame frame = inputs.frame;
+        frame.heartbeat = values[0];
+        frame.receivedTimestamp = values[1];
+        frame.hasTarget = values[2] == 1.0;
+        frame.tx = values[3];
+        frame.ty = values[4];
+        frame.ta = values[5];
+        frame.fiducialID = values[6];
+        frame.latency_pipeline = values[7];
+        frame.latency_capture = values[8];
+        frame.botpose_wpiblue = loop.visionBotpose;
+    }
+}
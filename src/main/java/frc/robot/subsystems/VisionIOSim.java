@@ -0,0 +1,176 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.util.LimelightClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A simulated Limelight that sees the field's AprilTags from the simulated robot pose. Each loop it
+ * produces a frame as the camera would have captured it a pipeline and capture latency earlier: tx, ty
+ * and ta of the tag nearest the middle of the image, and a botpose with the tag statistics newer
+ * firmware appends. The camera is taken to sit at the middle of the robot facing forwards, and its
+ * measurements are exact, so in simulation vision only corrects drift the estimator itself introduced.
+ */
+public class VisionIOSim implements VisionIO {
+    // A Limelight 3's field of view, and how far away it can still pick out a tag
+    private static final double kHorizontalFovRadians = Units.degreesToRadians(62.5);
+    private static final double kVerticalFovRadians = Units.degreesToRadians(48.9);
+    private static final double kMaxRangeMeters = 6.0;
+    private static final double kTagSizeMeters = Units.inchesToMeters(6.5);
+    private static final double kCameraHeightMeters = 0.3;
+    private static final double kPipelineLatencyMs = 20.0;
+    private static final double kCaptureLatencyMs = 10.0;
+
+    // The tags each pipeline looks for; a pipeline not listed here looks for every tag
+    private static final Map<Integer, Set<Integer>> kPipelineTags = Map.of(
+            VisionConstants.kPipelineIndices.get("Speaker"), Set.of(3, 4, 7, 8),
+            VisionConstants.kPipelineIndices.get("Amp"), Set.of(5, 6));
+
+    private final AprilTagFieldLayout m_field = AprilTagFields.k2024Crescendo.loadAprilTagLayoutField();
+    private final TimeInterpolatableBuffer<Pose2d> m_poseBuffer = TimeInterpolatableBuffer.createBuffer(0.5);
+    private final List<AprilTag> m_visibleTags = new ArrayList<>();
+    private Supplier<Pose2d> m_poseSupplier = null;
+    private int m_pipelineIndex = 0;
+    private double m_heartbeat = 0.0;
+
+    /**
+     * Sets where the camera gets the robot pose from. Until this is called the camera sees nothing.
+     *
+     * @param poseSupplier The simulated robot pose, on the blue alliance field.
+     */
+    public void setPoseSupplier(Supplier<Pose2d> poseSupplier) {
+        m_poseSupplier = poseSupplier;
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+        inputs.hasNewFrame = m_poseSupplier != null;
+        if (!inputs.hasNewFrame) {
+            return;
+        }
+
+        double now = Timer.getFPGATimestamp();
+        m_poseBuffer.addSample(now, m_poseSupplier.get());
+        double captureTime = now - (kPipelineLatencyMs + kCaptureLatencyMs) / 1000.0;
+        Pose2d pose = m_poseBuffer.getSample(captureTime).orElse(m_poseSupplier.get());
+
+        LimelightClient.Frame frame = inputs.frame;
+        frame.heartbeat = ++m_heartbeat;
+        frame.receivedTimestamp = now;
+        frame.latency_pipeline = kPipelineLatencyMs;
+        frame.latency_capture = kCaptureLatencyMs;
+
+        findVisibleTags(pose);
+        frame.hasTarget = !m_visibleTags.isEmpty();
+        if (!frame.hasTarget) {
+            frame.tx = 0.0;
+            frame.ty = 0.0;
+            frame.ta = 0.0;
+            frame.fiducialID = -1;
+            frame.botpose_wpiblue = new double[0];
+            return;
+        }
+
+        // The primary target is the tag nearest the middle of the image
+        AprilTag primary = m_visibleTags.get(0);
+        for (AprilTag tag : m_visibleTags) {
+            if (Math.abs(getBearing(pose, tag)) < Math.abs(getBearing(pose, primary))) {
+                primary = tag;
+            }
+        }
+        double primaryDistance = getDistance(pose, primary);
+        // tx is positive when the target is to the right, the opposite of the bearing
+        frame.tx = -Math.toDegrees(getBearing(pose, primary));
+        frame.ty = Math.toDegrees(Math.atan2(primary.pose.getZ() - kCameraHeightMeters, primaryDistance));
+        frame.ta = getArea(primaryDistance);
+        frame.fiducialID = primary.ID;
+
+        double totalDistance = 0.0;
+        double totalArea = 0.0;
+        double span = 0.0;
+        for (AprilTag tag : m_visibleTags) {
+            double distance = getDistance(pose, tag);
+            totalDistance += distance;
+            totalArea += getArea(distance);
+            for (AprilTag other : m_visibleTags) {
+                span = Math.max(
+                        span,
+                        tag.pose.toPose2d().getTranslation().getDistance(other.pose.toPose2d().getTranslation()));
+            }
+        }
+        int count = m_visibleTags.size();
+        frame.botpose_wpiblue = new double[] {
+            pose.getX(),
+            pose.getY(),
+            0.0,
+            0.0,
+            0.0,
+            pose.getRotation().getDegrees(),
+            kPipelineLatencyMs + kCaptureLatencyMs,
+            count,
+            span,
+            totalDistance / count,
+            totalArea / count
+        };
+    }
+
+    @Override
+    public void setPipelineIndex(int pipelineIndex) {
+        m_pipelineIndex = pipelineIndex;
+    }
+
+    /** Collects the tags the current pipeline looks for that are in range, in view and facing the camera. */
+    private void findVisibleTags(Pose2d pose) {
+        m_visibleTags.clear();
+        Set<Integer> wanted = kPipelineTags.get(m_pipelineIndex);
+        for (AprilTag tag : m_field.getTags()) {
+            if (wanted != null && !wanted.contains(tag.ID)) {
+                continue;
+            }
+            if (getDistance(pose, tag) > kMaxRangeMeters
+                    || Math.abs(getBearing(pose, tag)) > kHorizontalFovRadians / 2) {
+                continue;
+            }
+            // A tag faces along its pose's heading, so the camera has to be in front of it
+            Translation2d toCamera = pose.getTranslation().minus(tag.pose.toPose2d().getTranslation());
+            double facing = tag.pose.getRotation().getZ();
+            if (toCamera.getX() * Math.cos(facing) + toCamera.getY() * Math.sin(facing) <= 0) {
+                continue;
+            }
+            m_visibleTags.add(tag);
+        }
+    }
+
+    /** Returns the tag's bearing from the camera, counter-clockwise from straight ahead. */
+    private static double getBearing(Pose2d pose, AprilTag tag) {
+        Translation2d toTag = tag.pose.toPose2d().getTranslation().minus(pose.getTranslation());
+        double bearing = Math.atan2(toTag.getY(), toTag.getX()) - pose.getRotation().getRadians();
+        return Math.IEEEremainder(bearing, 2 * Math.PI);
+    }
+
+    /** Returns the distance along the floor from the camera to the tag. */
+    private static double getDistance(Pose2d pose, AprilTag tag) {
+        return tag.pose.toPose2d().getTranslation().getDistance(pose.getTranslation());
+    }
+
+    /** Returns how much of the image a tag this far away fills, in percent, as the Limelight reports ta. */
+    private static double getArea(double distance) {
+        double imageArea = 4 * distance * distance
+                * Math.tan(kHorizontalFovRadians / 2)
+                * Math.tan(kVerticalFovRadians / 2);
+        return 100 * kTagSizeMeters * kTagSizeMeters / imageArea;
+    }
+}
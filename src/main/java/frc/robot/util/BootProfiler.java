@@ -0,0 +1,64 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each phase of robot startup takes, such as constructing a subsystem or configuring
+ * its motor controllers over CAN, so slow boots after a brownout can be tracked down. Phases are kept
+ * in the order they were recorded and published once startup is done.
+ */
+public final class BootProfiler {
+    private static final Map<String, Double> phases = new LinkedHashMap<>();
+
+    private BootProfiler() {}
+
+    /**
+     * Runs the supplier and records how long it took.
+     *
+     * @param phase    The name of the startup phase.
+     * @param supplier The work to time, e.g. a subsystem constructor.
+     * @return The supplier's result.
+     */
+    public static <T> T time(String phase, Supplier<T> supplier) {
+        long start = System.nanoTime();
+        T result = supplier.get();
+        record(phase, (System.nanoTime() - start) * 1e-6);
+        return result;
+    }
+
+    /**
+     * Runs the runnable and records how long it took.
+     *
+     * @param phase    The name of the startup phase.
+     * @param runnable The work to time.
+     */
+    public static void time(String phase, Runnable runnable) {
+        long start = System.nanoTime();
+        runnable.run();
+        record(phase, (System.nanoTime() - start) * 1e-6);
+    }
+
+    /**
+     * Records a phase that was timed elsewhere. Recording the same phase twice adds the durations.
+     *
+     * @param phase  The name of the startup phase.
+     * @param millis How long the phase took, in milliseconds.
+     */
+    public static synchronized void record(String phase, double millis) {
+        phases.merge(phase, millis, Double::sum);
+    }
+
+    /** Publishes every recorded phase to the dashboard under Boot/ and prints a summary to the console. */
+    public static synchronized void publish() {
+        StringBuilder summary = new StringBuilder("Boot timing (ms):");
+        for (Map.Entry<String, Double> phase : phases.entrySet()) {
+            SmartDashboard.putNumber("Boot/" + phase.getKey(), phase.getValue());
+            summary.append(String.format("%n  %-40s %8.1f", phase.getKey(), phase.getValue()));
+        }
+        System.out.println(summary);
+    }
+}
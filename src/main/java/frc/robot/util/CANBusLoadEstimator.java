@@ -0,0 +1,56 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.CANConstants;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimates how busy the CAN bus will be from the status frame profile each SPARK MAX was configured
+ * with, plus the control frame the roboRIO sends each device every loop. This is a back of the
+ * envelope number for comparing profiles, not a measurement; the Driver Station shows the real bus
+ * utilization.
+ */
+public final class CANBusLoadEstimator {
+    private static final Map<String, Double> devices = new LinkedHashMap<>();
+
+    private CANBusLoadEstimator() {}
+
+    /**
+     * Records the status frame profile a device was configured with. Registering the same device again
+     * replaces its earlier profile.
+     *
+     * @param device  The name of the device, e.g. "SPARK MAX 11".
+     * @param profile The status frame profile it is running.
+     */
+    public static synchronized void register(String device, StatusFrameProfile profile) {
+        devices.put(device, profile.getFramesPerSecond() + CANConstants.kControlFramesPerSecond);
+    }
+
+    /**
+     * Returns the estimated bus load of every registered device.
+     *
+     * @return The estimated load, as a percentage of the bus bitrate.
+     */
+    public static synchronized double getEstimatedLoadPercent() {
+        double framesPerSecond = 0.0;
+        for (double deviceFrames : devices.values()) {
+            framesPerSecond += deviceFrames;
+        }
+        return 100.0 * framesPerSecond * CANConstants.kBitsPerFrame / CANConstants.kBitrate;
+    }
+
+    /** Publishes the estimated load to the dashboard under CAN/ and prints a per-device breakdown. */
+    public static synchronized void publish() {
+        double loadPercent = getEstimatedLoadPercent();
+        SmartDashboard.putNumber("CAN/Estimated Load %", loadPercent);
+
+        StringBuilder summary = new StringBuilder("Estimated CAN load (frames/s):");
+        for (Map.Entry<String, Double> device : devices.entrySet()) {
+            summary.append(String.format("%n  %-20s %8.1f", device.getKey(), device.getValue()));
+        }
+        summary.append(String.format("%n  %-20s %7.1f%%", "Total", loadPercent));
+        System.out.println(summary);
+    }
+}
@@ -0,0 +1,128 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
+import edu.wpi.first.wpilibj.DigitalSource;
+
+/**
+ * Watches a digital input with an FPGA interrupt and records exactly when it changed. The FPGA
+ * timestamps each edge in hardware, so the recorded time is when the input actually changed, not when
+ * the robot loop or even the interrupt thread got around to looking at it. Listeners run on the
+ * interrupt thread as soon as an edge arrives, so they can react mid-loop; they must be quick and
+ * thread safe.
+ *
+ * <p>Timestamps are in seconds on the same clock as {@code Timer.getFPGATimestamp()}.
+ */
+public class EdgeCapture implements AutoCloseable {
+    /** Called on the interrupt thread when an edge arrives. */
+    @FunctionalInterface
+    public interface EdgeListener {
+        /**
+         * Handles an edge.
+         *
+         * @param timestampSeconds When the edge happened, in FPGA seconds.
+         */
+        void onEdge(double timestampSeconds);
+    }
+
+    private final AsynchronousInterrupt interrupt;
+    private final EdgeListener risingListener;
+    private final EdgeListener fallingListener;
+
+    private volatile double lastRisingTimestamp = Double.NaN;
+    private volatile double lastFallingTimestamp = Double.NaN;
+    private volatile int risingCount = 0;
+    private volatile int fallingCount = 0;
+
+    /**
+     * Starts watching an input.
+     *
+     * @param source          The input to watch.
+     * @param risingListener  Called when the input goes from low to high, or null.
+     * @param fallingListener Called when the input goes from high to low, or null.
+     */
+    public EdgeCapture(DigitalSource source, EdgeListener risingListener, EdgeListener fallingListener) {
+        this.risingListener = risingListener;
+        this.fallingListener = fallingListener;
+
+        interrupt = new AsynchronousInterrupt(source, this::handleInterrupt);
+        interrupt.setInterruptEdges(true, true);
+        interrupt.enable();
+    }
+
+    private void handleInterrupt(boolean rising, boolean falling) {
+        // Both can be set if the input bounced back before the interrupt thread woke up; the order of the
+        // hardware timestamps says which came first.
+        double risingTimestamp = rising ? interrupt.getRisingTimestamp() : Double.NaN;
+        double fallingTimestamp = falling ? interrupt.getFallingTimestamp() : Double.NaN;
+        if (rising && falling && fallingTimestamp < risingTimestamp) {
+            handleFalling(fallingTimestamp);
+            handleRising(risingTimestamp);
+            return;
+        }
+        if (rising) {
+            handleRising(risingTimestamp);
+        }
+        if (falling) {
+            handleFalling(fallingTimestamp);
+        }
+    }
+
+    private void handleRising(double timestamp) {
+        lastRisingTimestamp = timestamp;
+        risingCount++;
+        if (risingListener != null) {
+            risingListener.onEdge(timestamp);
+        }
+    }
+
+    private void handleFalling(double timestamp) {
+        lastFallingTimestamp = timestamp;
+        fallingCount++;
+        if (fallingListener != null) {
+            fallingListener.onEdge(timestamp);
+        }
+    }
+
+    /**
+     * Returns when the input last went high.
+     *
+     * @return The FPGA timestamp, in seconds, or NaN if it hasn't yet.
+     */
+    public double getLastRisingTimestamp() {
+        return lastRisingTimestamp;
+    }
+
+    /**
+     * Returns when the input last went low.
+     *
+     * @return The FPGA timestamp, in seconds, or NaN if it hasn't yet.
+     */
+    public double getLastFallingTimestamp() {
+        return lastFallingTimestamp;
+    }
+
+    /**
+     * Returns how many times the input has gone high. Compare with an earlier count to see whether an edge
+     * arrived in between.
+     *
+     * @return The number of rising edges seen.
+     */
+    public int getRisingCount() {
+        return risingCount;
+    }
+
+    /**
+     * Returns how many times the input has gone low.
+     *
+     * @return The number of falling edges seen.
+     */
+    public int getFallingCount() {
+        return fallingCount;
+    }
+
+    @Override
+    public void close() {
+        interrupt.close();
+    }
+}
@@ -0,0 +1,221 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.StringSubscriber;
+import edu.wpi.first.networktables.TimestampedDouble;
+import frc.robot.util.LimelightHelpers.LimelightResults;
+
+/**
+ * A per-camera Limelight client that resolves its NetworkTables topics once, up front, instead of
+ * looking up the table and entry by name on every call like {@link LimelightHelpers} does.
+ *
+ * <p>Call {@link #update()} once per loop. It checks the Limelight's heartbeat for a new frame and, if
+ * there is one, reads every value into a {@link Frame} snapshot. The heartbeat is re-checked after the
+ * read and the read is retried if a newer frame arrived part way through, so all the values in a
+ * snapshot come from the same camera frame.
+ *
+ * <p>The client is not thread-safe: {@link #update()} and the frame getters must all be called from the
+ * same thread, which on the robot is the main loop.
+ */
+public class LimelightClient {
+
+    /** A snapshot of the values published for a single Limelight frame. */
+    public static class Frame {
+        /** The heartbeat of the frame, which increases by one every frame the Limelight processes. */
+        public double heartbeat;
+
+        /** When the frame arrived over NetworkTables, in seconds on the FPGA clock. */
+        public double receivedTimestamp;
+
+        public boolean hasTarget;
+        public double tx;
+        public double ty;
+        public double ta;
+        public double fiducialID;
+
+        public double latency_pipeline;
+        public double latency_capture;
+
+        /** The robot pose in the blue alliance field frame, plus tag statistics on newer firmware. */
+        public double[] botpose_wpiblue = new double[0];
+
+        /**
+         * Returns when the image for this frame was captured, by back-dating the arrival time with the
+         * pipeline and capture latencies.
+         *
+         * @return The capture time, in seconds on the FPGA clock.
+         */
+        public double getCaptureTimestamp() {
+            return receivedTimestamp - (latency_pipeline + latency_capture) / 1000.0;
+        }
+
+        private void copyFrom(Frame other) {
+            heartbeat = other.heartbeat;
+            receivedTimestamp = other.receivedTimestamp;
+            hasTarget = other.hasTarget;
+            tx = other.tx;
+            ty = other.ty;
+            ta = other.ta;
+            fiducialID = other.fiducialID;
+            latency_pipeline = other.latency_pipeline;
+            latency_capture = other.latency_capture;
+            botpose_wpiblue = other.botpose_wpiblue;
+        }
+    }
+
+    // How many times to re-read a frame that changed underneath us before giving up until the next loop
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    // The most AprilTags that can realistically be in view at once
+    private static final int MAX_FIDUCIALS = 16;
+
+    private final String name;
+
+    private final DoubleSubscriber heartbeat;
+    private final DoubleSubscriber tv;
+    private final DoubleSubscriber tx;
+    private final DoubleSubscriber ty;
+    private final DoubleSubscriber ta;
+    private final DoubleSubscriber tid;
+    private final DoubleSubscriber tl;
+    private final DoubleSubscriber cl;
+    private final DoubleArraySubscriber botposeWpiBlue;
+    private final StringSubscriber json;
+
+    private final DoublePublisher pipeline;
+
+    // Frames are read into the back buffer and only swapped in once the heartbeat confirms the read, so a
+    // read torn by a newer frame never replaces the last good one
+    private Frame frame = new Frame();
+    private Frame backFrame = new Frame();
+    private int droppedFrames = 0;
+
+    // Created on first use, since most callers never need the full JSON results
+    private LimelightResultsParser resultsParser;
+
+    /**
+     * Creates a client for the named Limelight.
+     *
+     * @param limelightName The NetworkTables name of the Limelight, e.g. "limelight".
+     */
+    public LimelightClient(String limelightName) {
+        name = LimelightHelpers.sanitizeName(limelightName);
+        NetworkTable table = NetworkTableInstance.getDefault().getTable(name);
+
+        // Keep a short queue of heartbeats so frames that arrive between loops can be counted
+        heartbeat = table.getDoubleTopic("hb").subscribe(0.0, PubSubOption.pollStorage(10));
+        tv = table.getDoubleTopic("tv").subscribe(0.0);
+        tx = table.getDoubleTopic("tx").subscribe(0.0);
+        ty = table.getDoubleTopic("ty").subscribe(0.0);
+        ta = table.getDoubleTopic("ta").subscribe(0.0);
+        tid = table.getDoubleTopic("tid").subscribe(0.0);
+        tl = table.getDoubleTopic("tl").subscribe(0.0);
+        cl = table.getDoubleTopic("cl").subscribe(0.0);
+        botposeWpiBlue = table.getDoubleArrayTopic("botpose_wpiblue").subscribe(new double[0]);
+        json = table.getStringTopic("json").subscribe("");
+
+        pipeline = table.getDoubleTopic("pipeline").publish();
+    }
+
+    /**
+     * Reads the latest frame, if the Limelight has published a new one since the last call.
+     *
+     * @return Whether a new frame was read.
+     */
+    public boolean update() {
+        TimestampedDouble[] beats = heartbeat.readQueue();
+        if (beats.length == 0) {
+            return false;
+        }
+        droppedFrames += beats.length - 1;
+
+        Frame next = backFrame;
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            TimestampedDouble before = heartbeat.getAtomic();
+
+            next.heartbeat = before.value;
+            next.receivedTimestamp = before.timestamp * 1e-6;
+            next.hasTarget = tv.get() == 1.0;
+            next.tx = tx.get();
+            next.ty = ty.get();
+            next.ta = ta.get();
+            next.fiducialID = tid.get();
+            next.latency_pipeline = tl.get();
+            next.latency_capture = cl.get();
+            next.botpose_wpiblue = botposeWpiBlue.get();
+
+            if (heartbeat.get() == before.value) {
+                backFrame = frame;
+                frame = next;
+                return true;
+            }
+        }
+
+        // The Limelight kept publishing while we were reading; try again next loop
+        return false;
+    }
+
+    /**
+     * Returns the most recent complete frame. The returned object is reused, so copy it with
+     * {@link #getFrame(Frame)} if it needs to outlive the next call to {@link #update()}.
+     *
+     * @return The latest frame.
+     */
+    public Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Copies the most recent complete frame into the provided frame.
+     *
+     * @param out The frame to copy into.
+     * @return The provided frame, for chaining.
+     */
+    public Frame getFrame(Frame out) {
+        out.copyFrom(frame);
+        return out;
+    }
+
+    /**
+     * Parses the Limelight's full JSON results dump with the streaming parser. Only the fiducial targets
+     * are read; see {@link LimelightResultsParser} for what is skipped.
+     *
+     * @return The parsed results. Reused by the next call.
+     */
+    public LimelightResults getLatestResults() {
+        if (resultsParser == null) {
+            resultsParser = new LimelightResultsParser(MAX_FIDUCIALS);
+        }
+        return resultsParser.parse(json.get());
+    }
+
+    /**
+     * Returns how many frames were published but never read because more than one arrived between calls
+     * to {@link #update()}.
+     *
+     * @return The number of frames skipped.
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Switches the Limelight to the given pipeline.
+     *
+     * @param pipelineIndex The index of the pipeline, from 0 to 9.
+     */
+    public void setPipelineIndex(int pipelineIndex) {
+        pipeline.set(pipelineIndex);
+    }
+
+    /** @return The NetworkTables name of this Limelight. */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,255 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import frc.robot.util.LimelightHelpers.LimelightResults;
+import frc.robot.util.LimelightHelpers.LimelightTarget_Fiducial;
+import frc.robot.util.LimelightHelpers.Results;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A streaming alternative to {@link LimelightHelpers#getLatestResults(String)} that walks the JSON
+ * dump token by token instead of data-binding it with an ObjectMapper.
+ *
+ * <p>The parser owns a single {@link LimelightResults} and a fixed pool of fiducial targets which are
+ * overwritten on every call, so steady-state parsing produces very little garbage. Only the top-level
+ * results and the fiducial targets are read; the Retro, Classifier, Detector and Barcode target
+ * arrays are skipped and always come back empty.
+ *
+ * <p>Because results are reused, anything that must outlive the next call to {@link #parse(String)}
+ * has to be copied out first. Instances are not thread safe.
+ */
+public class LimelightResultsParser {
+    private static final LimelightHelpers.LimelightTarget_Retro[] NO_RETRO =
+            new LimelightHelpers.LimelightTarget_Retro[0];
+    private static final LimelightHelpers.LimelightTarget_Classifier[] NO_CLASSIFIER =
+            new LimelightHelpers.LimelightTarget_Classifier[0];
+    private static final LimelightHelpers.LimelightTarget_Detector[] NO_DETECTOR =
+            new LimelightHelpers.LimelightTarget_Detector[0];
+    private static final LimelightHelpers.LimelightTarget_Barcode[] NO_BARCODE =
+            new LimelightHelpers.LimelightTarget_Barcode[0];
+
+    private final JsonFactory factory = new JsonFactory();
+    private final LimelightResults results = new LimelightResults();
+
+    // fiducialViews[n] is an array holding the first n pooled fiducials, so the results can expose a
+    // correctly sized array without allocating one per frame
+    private final LimelightTarget_Fiducial[][] fiducialViews;
+
+    /**
+     * Creates a parser.
+     *
+     * @param maxFiducials The most fiducial targets to keep from a single frame. Any extra are skipped.
+     */
+    public LimelightResultsParser(int maxFiducials) {
+        LimelightTarget_Fiducial[] pool = new LimelightTarget_Fiducial[maxFiducials];
+        for (int i = 0; i < maxFiducials; i++) {
+            pool[i] = new LimelightTarget_Fiducial();
+        }
+
+        fiducialViews = new LimelightTarget_Fiducial[maxFiducials + 1][];
+        for (int count = 0; count <= maxFiducials; count++) {
+            fiducialViews[count] = new LimelightTarget_Fiducial[count];
+            System.arraycopy(pool, 0, fiducialViews[count], 0, count);
+        }
+    }
+
+    /**
+     * Parses a Limelight JSON results dump into the reused results object.
+     *
+     * @param json The JSON dump published by the Limelight.
+     * @return The parsed results. Reused by the next call.
+     */
+    public LimelightResults parse(String json) {
+        long start = System.nanoTime();
+        Results targetingResults = results.targetingResults;
+        reset(targetingResults);
+
+        try (JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("Results".equals(field)) {
+                        parseResults(parser, targetingResults);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("lljson error: " + e.getMessage());
+        }
+
+        targetingResults.latency_jsonParse = (System.nanoTime() - start) * .000001;
+        return results;
+    }
+
+    private void reset(Results targetingResults) {
+        targetingResults.pipelineID = 0;
+        targetingResults.latency_pipeline = 0;
+        targetingResults.latency_capture = 0;
+        targetingResults.timestamp_LIMELIGHT_publish = 0;
+        targetingResults.timestamp_RIOFPGA_capture = 0;
+        targetingResults.valid = false;
+        Arrays.fill(targetingResults.botpose, 0);
+        Arrays.fill(targetingResults.botpose_wpired, 0);
+        Arrays.fill(targetingResults.botpose_wpiblue, 0);
+        Arrays.fill(targetingResults.camerapose_robotspace, 0);
+        targetingResults.targets_Retro = NO_RETRO;
+        targetingResults.targets_Fiducials = fiducialViews[0];
+        targetingResults.targets_Classifier = NO_CLASSIFIER;
+        targetingResults.targets_Detector = NO_DETECTOR;
+        targetingResults.targets_Barcode = NO_BARCODE;
+    }
+
+    private void parseResults(JsonParser parser, Results targetingResults) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "pID" -> targetingResults.pipelineID = parser.getValueAsDouble();
+                case "tl" -> targetingResults.latency_pipeline = parser.getValueAsDouble();
+                case "cl" -> targetingResults.latency_capture = parser.getValueAsDouble();
+                case "ts" -> targetingResults.timestamp_LIMELIGHT_publish = parser.getValueAsDouble();
+                case "ts_rio" -> targetingResults.timestamp_RIOFPGA_capture = parser.getValueAsDouble();
+                case "v" -> targetingResults.valid = parser.getValueAsInt() == 1;
+                case "botpose" -> targetingResults.botpose = readDoubleArray(parser, targetingResults.botpose);
+                case "botpose_wpired" -> targetingResults.botpose_wpired =
+                        readDoubleArray(parser, targetingResults.botpose_wpired);
+                case "botpose_wpiblue" -> targetingResults.botpose_wpiblue =
+                        readDoubleArray(parser, targetingResults.botpose_wpiblue);
+                case "t6c_rs" -> targetingResults.camerapose_robotspace =
+                        readDoubleArray(parser, targetingResults.camerapose_robotspace);
+                case "Fiducial" -> targetingResults.targets_Fiducials = parseFiducials(parser);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private LimelightTarget_Fiducial[] parseFiducials(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return fiducialViews[0];
+        }
+
+        LimelightTarget_Fiducial[] pool = fiducialViews[fiducialViews.length - 1];
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (count < pool.length && parser.currentToken() == JsonToken.START_OBJECT) {
+                parseFiducial(parser, pool[count]);
+                count++;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return fiducialViews[count];
+    }
+
+    private void parseFiducial(JsonParser parser, LimelightTarget_Fiducial fiducial) throws IOException {
+        // A pooled fiducial still holds whatever target it held last; clear it so a field missing from
+        // this target doesn't carry the old value over. The family is kept aside so it can be reused.
+        String previousFamily = fiducial.fiducialFamily;
+        reset(fiducial);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "fID" -> fiducial.fiducialID = parser.getValueAsDouble();
+                case "fam" -> fiducial.fiducialFamily = readString(parser, previousFamily);
+                case "t6c_ts" -> fiducial.cameraPose_TargetSpace =
+                        readDoubleArray(parser, fiducial.cameraPose_TargetSpace);
+                case "t6r_fs" -> fiducial.robotPose_FieldSpace = readDoubleArray(parser, fiducial.robotPose_FieldSpace);
+                case "t6r_ts" -> fiducial.robotPose_TargetSpace =
+                        readDoubleArray(parser, fiducial.robotPose_TargetSpace);
+                case "t6t_cs" -> fiducial.targetPose_CameraSpace =
+                        readDoubleArray(parser, fiducial.targetPose_CameraSpace);
+                case "t6t_rs" -> fiducial.targetPose_RobotSpace =
+                        readDoubleArray(parser, fiducial.targetPose_RobotSpace);
+                case "ta" -> fiducial.ta = parser.getValueAsDouble();
+                case "tx" -> fiducial.tx = parser.getValueAsDouble();
+                case "txp" -> fiducial.tx_pixels = parser.getValueAsDouble();
+                case "ty" -> fiducial.ty = parser.getValueAsDouble();
+                case "typ" -> fiducial.ty_pixels = parser.getValueAsDouble();
+                case "ts" -> fiducial.ts = parser.getValueAsDouble();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static void reset(LimelightTarget_Fiducial fiducial) {
+        fiducial.fiducialID = 0;
+        fiducial.fiducialFamily = null;
+        fiducial.cameraPose_TargetSpace = clearPose(fiducial.cameraPose_TargetSpace);
+        fiducial.robotPose_FieldSpace = clearPose(fiducial.robotPose_FieldSpace);
+        fiducial.robotPose_TargetSpace = clearPose(fiducial.robotPose_TargetSpace);
+        fiducial.targetPose_CameraSpace = clearPose(fiducial.targetPose_CameraSpace);
+        fiducial.targetPose_RobotSpace = clearPose(fiducial.targetPose_RobotSpace);
+        fiducial.ta = 0;
+        fiducial.tx = 0;
+        fiducial.tx_pixels = 0;
+        fiducial.ty = 0;
+        fiducial.ty_pixels = 0;
+        fiducial.ts = 0;
+    }
+
+    /** Zeroes a pose array, putting back the usual six values if a previous frame changed its length. */
+    private static double[] clearPose(double[] pose) {
+        if (pose.length != 6) {
+            return new double[6];
+        }
+        Arrays.fill(pose, 0);
+        return pose;
+    }
+
+    /**
+     * Reads a JSON number array into the given array, only allocating a new one if the length differs.
+     */
+    private static double[] readDoubleArray(JsonParser parser, double[] target) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return target;
+        }
+
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (count == target.length) {
+                double[] grown = new double[Math.max(6, target.length * 2)];
+                System.arraycopy(target, 0, grown, 0, target.length);
+                target = grown;
+            }
+            target[count++] = parser.getValueAsDouble();
+        }
+
+        if (count != target.length) {
+            double[] trimmed = new double[count];
+            System.arraycopy(target, 0, trimmed, 0, count);
+            target = trimmed;
+        }
+        return target;
+    }
+
+    /** Reads a JSON string, reusing the previous value if the text is unchanged. */
+    private static String readString(JsonParser parser, String previous) throws IOException {
+        if (previous != null && parser.getTextLength() == previous.length()) {
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            boolean matches = true;
+            for (int i = 0; i < previous.length() && matches; i++) {
+                matches = text[offset + i] == previous.charAt(i);
+            }
+            if (matches) {
+                return previous;
+            }
+        }
+        return parser.getText();
+    }
+}
@@ -0,0 +1,245 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Always-on timing of the robot loop, broken down into sections, so an overrun can be traced to
+ * whatever is eating the budget instead of a single watchdog print.
+ *
+ * <p>The scheduler's own phases are separated with marker actions on the default button loop: one
+ * bound before any button bindings (subsystem periodics have finished) and one bound after all of them
+ * (button polling has finished). Each command's time is measured from the previous mark to the
+ * scheduler's execute callback, so it also includes the previous command's end checks. Every command
+ * instance gets its own section, since commands are built once when they are bound. Code can time
+ * its own sections with {@link Section#start()} and {@link Section#stop(long)}.
+ *
+ * <p>Every section records into a preallocated histogram, so profiling doesn't allocate once the
+ * section exists. About once a second the p50, p99 and max of each section are published under
+ * LoopProfiler/, and the breakdown of the worst loop is printed if it overran.
+ */
+public final class LoopProfiler {
+    // Histogram resolution and range; anything longer lands in the overflow bucket
+    private static final double BUCKET_MS = 0.05;
+    private static final int BUCKET_COUNT = 400;
+
+    // How many loops make up one reporting window
+    private static final int LOOPS_PER_WINDOW = 50;
+
+    private static final double LOOP_BUDGET_MS = TimedRobot.kDefaultPeriod * 1000.0;
+
+    /** A named part of the loop with its own histogram. */
+    public static final class Section {
+        private final String name;
+        private final int[] buckets = new int[BUCKET_COUNT + 1];
+        private final DoublePublisher p50;
+        private final DoublePublisher p99;
+        private final DoublePublisher max;
+
+        private int count = 0;
+        private double maxMs = 0.0;
+
+        // Time spent in this section during the current loop, and during the worst loop of the window
+        private double loopMs = 0.0;
+        private double worstLoopMs = 0.0;
+
+        private Section(String name, NetworkTable table) {
+            this.name = name;
+            p50 = table.getDoubleTopic(name + "/p50 ms").publish();
+            p99 = table.getDoubleTopic(name + "/p99 ms").publish();
+            max = table.getDoubleTopic(name + "/max ms").publish();
+        }
+
+        /**
+         * Marks the start of a timed block.
+         *
+         * @return The start time, to pass to {@link #stop(long)}.
+         */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Marks the end of a timed block and records its duration.
+         *
+         * @param startNanos The value returned by {@link #start()}.
+         */
+        public void stop(long startNanos) {
+            record((System.nanoTime() - startNanos) * 1e-6);
+        }
+
+        private void record(double millis) {
+            int bucket = Math.min((int) (millis / BUCKET_MS), BUCKET_COUNT);
+            buckets[bucket]++;
+            count++;
+            maxMs = Math.max(maxMs, millis);
+            loopMs += millis;
+        }
+
+        /** Returns the upper edge of the bucket holding the given percentile of samples. */
+        private double percentile(double fraction) {
+            int target = (int) Math.ceil(fraction * count);
+            int seen = 0;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= target) {
+                    return (bucket + 1) * BUCKET_MS;
+                }
+            }
+            return maxMs;
+        }
+
+        private void publish() {
+            if (count > 0) {
+                p50.set(percentile(0.5));
+                p99.set(percentile(0.99));
+                max.set(maxMs);
+            }
+            Arrays.fill(buckets, 0);
+            count = 0;
+            maxMs = 0.0;
+        }
+    }
+
+    private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("LoopProfiler");
+    private static final List<Section> sections = new ArrayList<>();
+    private static final Map<String, Section> sectionsByName = new HashMap<>();
+    private static final Map<Command, Section> commandSections = new IdentityHashMap<>();
+
+    private static final Section loop = section("Loop");
+    private static final Section subsystems = section("Subsystem periodic");
+    private static final Section buttons = section("Button polling");
+    private static final Section scheduling = section("Scheduling");
+
+    private static long loopStart = 0;
+    private static long lastMark = 0;
+    private static int loopsInWindow = 0;
+    private static double worstLoopMs = 0.0;
+
+    private LoopProfiler() {}
+
+    /**
+     * Returns the section with the given name, creating it the first time. Look sections up once and
+     * keep them, rather than on every loop.
+     *
+     * @param name The name shown under LoopProfiler/.
+     * @return The section.
+     */
+    public static synchronized Section section(String name) {
+        Section section = sectionsByName.get(name);
+        if (section == null) {
+            section = new Section(name, table);
+            sections.add(section);
+            sectionsByName.put(name, section);
+        }
+        return section;
+    }
+
+    /**
+     * Hooks into the command scheduler. Call before any button bindings are made, and call
+     * {@link #finishInstall()} after all of them.
+     */
+    public static void install() {
+        CommandScheduler.getInstance().getDefaultButtonLoop().bind(() -> mark(subsystems));
+        CommandScheduler.getInstance().onCommandExecute(LoopProfiler::commandExecuted);
+    }
+
+    /** Adds the marker that ends button polling. Call after all button bindings are made. */
+    public static void finishInstall() {
+        CommandScheduler.getInstance().getDefaultButtonLoop().bind(() -> mark(buttons));
+    }
+
+    /** Call at the very start of the robot loop. */
+    public static void startLoop() {
+        for (int i = 0; i < sections.size(); i++) {
+            sections.get(i).loopMs = 0.0;
+        }
+        loopStart = System.nanoTime();
+        lastMark = loopStart;
+    }
+
+    /** Call at the very end of the robot loop. */
+    public static void endLoop() {
+        mark(scheduling);
+        loop.record((lastMark - loopStart) * 1e-6);
+
+        if (loop.loopMs > worstLoopMs) {
+            worstLoopMs = loop.loopMs;
+            for (int i = 0; i < sections.size(); i++) {
+                Section section = sections.get(i);
+                section.worstLoopMs = section.loopMs;
+            }
+        }
+
+        if (++loopsInWindow >= LOOPS_PER_WINDOW) {
+            publish();
+        }
+    }
+
+    private static void mark(Section section) {
+        long now = System.nanoTime();
+        section.record((now - lastMark) * 1e-6);
+        lastMark = now;
+    }
+
+    private static void commandExecuted(Command command) {
+        Section section = commandSections.get(command);
+        if (section == null) {
+            section = newCommandSection(command);
+            commandSections.put(command, section);
+        }
+        mark(section);
+    }
+
+    /**
+     * Creates a command's section, named after the command and the subsystems it requires and numbered if
+     * another command already has that name, so commands left with the default name each get their own
+     * histogram.
+     */
+    private static synchronized Section newCommandSection(Command command) {
+        String name = "Command " + command.getName();
+        if (!command.getRequirements().isEmpty()) {
+            name += command.getRequirements().stream()
+                    .map(Subsystem::getName)
+                    .sorted()
+                    .collect(Collectors.joining(", ", " [", "]"));
+        }
+        String unique = name;
+        for (int i = 2; sectionsByName.containsKey(unique); i++) {
+            unique = name + " #" + i;
+        }
+        return section(unique);
+    }
+
+    private static void publish() {
+        if (worstLoopMs > LOOP_BUDGET_MS) {
+            StringBuilder summary = new StringBuilder(
+                    String.format("Loop overrun: worst loop %.2f ms of %.0f ms", worstLoopMs, LOOP_BUDGET_MS));
+            for (Section section : sections) {
+                if (section != loop && section.worstLoopMs > 0.0) {
+                    summary.append(String.format("%n  %-40s %8.2f", section.name, section.worstLoopMs));
+                }
+            }
+            System.out.println(summary);
+        }
+
+        for (int i = 0; i < sections.size(); i++) {
+            sections.get(i).publish();
+        }
+        loopsInWindow = 0;
+        worstLoopMs = 0.0;
+    }
+}
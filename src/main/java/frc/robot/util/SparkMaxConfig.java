@@ -0,0 +1,176 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import com.revrobotics.CANSparkBase.IdleMode;
+
+/**
+ * A declarative description of how a SPARK MAX should be configured. Build one with the chained
+ * setters and hand it to {@link SparkMaxConfigurator}, which takes care of writing, verifying and
+ * retrying each setting. Anything not set is left as the controller already has it.
+ */
+public class SparkMaxConfig {
+    /** Which sensor the controller's PID loop should use. */
+    public enum FeedbackSensor {
+        kNone,
+        kPrimaryEncoder,
+        kAbsoluteEncoder
+    }
+
+    boolean restoreFactoryDefaults = false;
+    boolean burnFlash = false;
+    boolean skipWhenConfigured = true;
+
+    Boolean inverted = null;
+    IdleMode idleMode = null;
+    int smartCurrentLimit = 0;
+
+    FeedbackSensor feedbackSensor = FeedbackSensor.kNone;
+    double positionConversionFactor = 1.0;
+    double velocityConversionFactor = 1.0;
+    boolean encoderInverted = false;
+
+    boolean pidConfigured = false;
+    double p = 0.0;
+    double i = 0.0;
+    double d = 0.0;
+    double ff = 0.0;
+    double outputMin = -1.0;
+    double outputMax = 1.0;
+
+    boolean smartMotionConfigured = false;
+    int smartMotionSlot = 1;
+    double smartMotionP = 0.0;
+    double smartMotionFF = 0.0;
+    double smartMotionMaxVelocity = 0.0;
+    double smartMotionMaxAcceleration = 0.0;
+    double smartMotionAllowedError = 0.0;
+
+    StatusFrameProfile statusFrames = null;
+
+    boolean positionWrappingEnabled = false;
+    double positionWrappingMinInput = 0.0;
+    double positionWrappingMaxInput = 0.0;
+
+    /**
+     * Factory resets the controller before writing anything, so a swapped-in SPARK MAX starts from a
+     * known state. Only happens when the controller doesn't already match this config.
+     */
+    public SparkMaxConfig restoreFactoryDefaults() {
+        restoreFactoryDefaults = true;
+        return this;
+    }
+
+    /**
+     * Saves the configuration to flash once it has been written, so the controller keeps it through a
+     * brownout. Only happens when a setting actually changed.
+     */
+    public SparkMaxConfig burnFlash() {
+        burnFlash = true;
+        return this;
+    }
+
+    /**
+     * Sets whether settings that already match may be skipped. When false, the controller is always
+     * reset (if requested), fully rewritten and burned.
+     */
+    public SparkMaxConfig skipWhenConfigured(boolean skip) {
+        skipWhenConfigured = skip;
+        return this;
+    }
+
+    public SparkMaxConfig inverted(boolean inverted) {
+        this.inverted = inverted;
+        return this;
+    }
+
+    public SparkMaxConfig idleMode(IdleMode idleMode) {
+        this.idleMode = idleMode;
+        return this;
+    }
+
+    /** @param amps The smart current limit, in amps. */
+    public SparkMaxConfig smartCurrentLimit(int amps) {
+        smartCurrentLimit = amps;
+        return this;
+    }
+
+    /**
+     * Uses the built-in (or brushed quadrature) encoder as the feedback sensor.
+     *
+     * @param positionFactor Converts rotations into the desired position units.
+     * @param velocityFactor Converts RPM into the desired velocity units.
+     */
+    public SparkMaxConfig primaryEncoder(double positionFactor, double velocityFactor) {
+        feedbackSensor = FeedbackSensor.kPrimaryEncoder;
+        positionConversionFactor = positionFactor;
+        velocityConversionFactor = velocityFactor;
+        return this;
+    }
+
+    /**
+     * Uses a duty cycle absolute encoder as the feedback sensor.
+     *
+     * @param positionFactor Converts rotations into the desired position units.
+     * @param velocityFactor Converts RPM into the desired velocity units.
+     * @param inverted       Whether the encoder's direction is reversed.
+     */
+    public SparkMaxConfig absoluteEncoder(double positionFactor, double velocityFactor, boolean inverted) {
+        feedbackSensor = FeedbackSensor.kAbsoluteEncoder;
+        positionConversionFactor = positionFactor;
+        velocityConversionFactor = velocityFactor;
+        encoderInverted = inverted;
+        return this;
+    }
+
+    /** Sets the slot 0 PID gains and output range. */
+    public SparkMaxConfig pid(double p, double i, double d, double ff, double outputMin, double outputMax) {
+        pidConfigured = true;
+        this.p = p;
+        this.i = i;
+        this.d = d;
+        this.ff = ff;
+        this.outputMin = outputMin;
+        this.outputMax = outputMax;
+        return this;
+    }
+
+    /**
+     * Sets up Smart Motion in a PID slot of its own. Smart Motion profiles a move to a position and
+     * tracks the profile with a velocity loop, so the gains are in velocity units.
+     *
+     * @param slot            The PID slot to use.
+     * @param p               The velocity loop's proportional gain.
+     * @param ff              The velocity feedforward.
+     * @param maxVelocity     The profile's cruise velocity.
+     * @param maxAcceleration The profile's acceleration.
+     * @param allowedError    How close to the target counts as there.
+     */
+    public SparkMaxConfig smartMotion(
+            int slot, double p, double ff, double maxVelocity, double maxAcceleration, double allowedError) {
+        smartMotionConfigured = true;
+        smartMotionSlot = slot;
+        smartMotionP = p;
+        smartMotionFF = ff;
+        smartMotionMaxVelocity = maxVelocity;
+        smartMotionMaxAcceleration = maxAcceleration;
+        smartMotionAllowedError = allowedError;
+        return this;
+    }
+
+    /** Lets the position PID wrap around between the given inputs, e.g. for a swerve azimuth. */
+    public SparkMaxConfig positionWrapping(double minInput, double maxInput) {
+        positionWrappingEnabled = true;
+        positionWrappingMinInput = minInput;
+        positionWrappingMaxInput = maxInput;
+        return this;
+    }
+
+    /**
+     * Sets how often the controller sends each status frame. Periods aren't stored in flash, so they are
+     * written every boot.
+     */
+    public SparkMaxConfig statusFrames(StatusFrameProfile profile) {
+        statusFrames = profile;
+        return this;
+    }
+}
@@ -0,0 +1,344 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import com.revrobotics.AbsoluteEncoder;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.MotorFeedbackSensor;
+import com.revrobotics.REVLibError;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkAbsoluteEncoder.Type;
+import com.revrobotics.SparkPIDController;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Applies a {@link SparkMaxConfig} to a SPARK MAX. Every setting that can be read back is checked
+ * first and skipped if it already matches, so a controller that kept its configuration through a
+ * reboot is neither reset nor re-burned. Each write is checked for a {@link REVLibError}, read back to
+ * confirm it took, and retried a few times before being reported to the Driver Station.
+ *
+ * <p>REVLib has no way to read back the smart current limit, the status frame periods or the PID
+ * feedback device, so those are written on every boot whether or not they changed. They are only a
+ * handful of CAN writes, and they never trigger a factory reset or a flash burn on their own.
+ *
+ * <p>Several controllers can be configured at once with {@link #applyInParallel}, since most of the
+ * time spent configuring is waiting on CAN round trips rather than doing any work.
+ */
+public final class SparkMaxConfigurator {
+    // How many times to try a setting before giving up on it
+    private static final int kMaxAttempts = 3;
+
+    /** A single parameter write, and optionally a way to read it back. */
+    static class Setting {
+        final String name;
+        final Supplier<REVLibError> write;
+        final BooleanSupplier isApplied;
+
+        /**
+         * @param name      Used when reporting failures.
+         * @param write     Writes the setting and returns the result.
+         * @param isApplied Reads the setting back and checks it, or null if it can't be read back.
+         */
+        Setting(String name, Supplier<REVLibError> write, BooleanSupplier isApplied) {
+            this.name = name;
+            this.write = write;
+            this.isApplied = isApplied;
+        }
+
+        boolean isReadable() {
+            return isApplied != null;
+        }
+    }
+
+    private SparkMaxConfigurator() {}
+
+    /**
+     * Applies a configuration to a single SPARK MAX.
+     *
+     * @param spark  The controller to configure.
+     * @param config The configuration to apply.
+     * @return Whether every setting was applied and verified.
+     */
+    public static boolean apply(CANSparkMax spark, SparkMaxConfig config) {
+        String device = "SPARK MAX " + spark.getDeviceId();
+        if (config.statusFrames != null) {
+            CANBusLoadEstimator.register(device, config.statusFrames);
+        }
+        return apply(device, config, buildSettings(spark, config), spark::restoreFactoryDefaults, spark::burnFlash);
+    }
+
+    /**
+     * Applies a list of settings. Separate from the SPARK MAX itself so the retry, skip and burn logic can
+     * be tested against settings that fail on purpose.
+     *
+     * @param device       The name of the controller, used when reporting failures.
+     * @param config       The configuration the settings were built from.
+     * @param settings     The settings to apply, in order.
+     * @param factoryReset Resets the controller to its factory defaults.
+     * @param burnFlash    Saves the controller's configuration.
+     * @return Whether every setting was applied and verified.
+     */
+    static boolean apply(
+            String device,
+            SparkMaxConfig config,
+            List<Setting> settings,
+            Supplier<REVLibError> factoryReset,
+            Supplier<REVLibError> burnFlash) {
+        boolean upToDate = config.skipWhenConfigured;
+        for (int i = 0; i < settings.size() && upToDate; i++) {
+            Setting setting = settings.get(i);
+            upToDate = !setting.isReadable() || setting.isApplied.getAsBoolean();
+        }
+
+        // Only reset when something differs, otherwise the reset would undo a configuration that was
+        // already correct and force every setting to be written and burned again
+        if (config.restoreFactoryDefaults && !upToDate) {
+            applyWithRetry(device, new Setting("factory reset", factoryReset, null));
+        }
+
+        int failures = 0;
+        for (Setting setting : settings) {
+            boolean redundant = config.skipWhenConfigured
+                    && setting.isReadable()
+                    && (upToDate || setting.isApplied.getAsBoolean());
+            if (redundant) {
+                continue;
+            }
+            if (!applyWithRetry(device, setting)) {
+                failures++;
+            }
+        }
+
+        // Save the configuration so it survives a brownout. Settings that can't be read back are written
+        // every boot anyway, so they alone don't justify a burn.
+        if (config.burnFlash && !upToDate && failures == 0) {
+            String phase = device + " burn flash";
+            BootProfiler.time(phase, () -> {
+                applyWithRetry(device, new Setting("burn flash", burnFlash, null));
+            });
+        }
+
+        return failures == 0;
+    }
+
+    /**
+     * Applies configurations to several SPARK MAXes at the same time, each on its own thread.
+     *
+     * @param sparks  The controllers to configure.
+     * @param configs The configuration for each controller, in the same order.
+     * @return Whether every controller was fully configured.
+     */
+    public static boolean applyInParallel(CANSparkMax[] sparks, SparkMaxConfig[] configs) {
+        if (sparks.length != configs.length) {
+            throw new IllegalArgumentException("Need exactly one config per SPARK MAX");
+        }
+
+        List<BooleanSupplier> tasks = new ArrayList<>(sparks.length);
+        for (int i = 0; i < sparks.length; i++) {
+            CANSparkMax spark = sparks[i];
+            SparkMaxConfig config = configs[i];
+            tasks.add(() -> apply(spark, config));
+        }
+        return runInParallel(tasks);
+    }
+
+    /**
+     * Runs every task at once on a pool with one thread per task, and waits for them all. The common
+     * fork-join pool is sized to the CPU count, which on the roboRIO would leave the tasks mostly
+     * waiting on each other's CAN round trips.
+     *
+     * @param tasks The tasks to run.
+     * @return Whether every task returned true.
+     */
+    static boolean runInParallel(List<BooleanSupplier> tasks) {
+        if (tasks.isEmpty()) {
+            return true;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size(), runnable -> {
+            Thread thread = new Thread(runnable, "SparkMaxConfigurator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Boolean>> results = new ArrayList<>(tasks.size());
+            for (BooleanSupplier task : tasks) {
+                results.add(CompletableFuture.supplyAsync(task::getAsBoolean, executor));
+            }
+
+            boolean success = true;
+            for (CompletableFuture<Boolean> result : results) {
+                success &= result.join();
+            }
+            return success;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes a setting until it succeeds and, if it can be read back, until the read back value
+     * matches.
+     */
+    private static boolean applyWithRetry(String device, Setting setting) {
+        REVLibError error = REVLibError.kOk;
+        for (int attempt = 1; attempt <= kMaxAttempts; attempt++) {
+            error = setting.write.get();
+            if (error == REVLibError.kOk && (!setting.isReadable() || setting.isApplied.getAsBoolean())) {
+                return true;
+            }
+        }
+
+        String reason = error == REVLibError.kOk ? "read back did not match" : error.toString();
+        DriverStation.reportWarning(
+                device + ": failed to apply " + setting.name + " after " + kMaxAttempts + " attempts (" + reason + ")",
+                false);
+        return false;
+    }
+
+    private static List<Setting> buildSettings(CANSparkMax spark, SparkMaxConfig config) {
+        List<Setting> settings = new ArrayList<>();
+
+        if (config.inverted != null) {
+            boolean inverted = config.inverted;
+            settings.add(new Setting(
+                    "inverted",
+                    () -> {
+                        spark.setInverted(inverted);
+                        return spark.getLastError();
+                    },
+                    () -> spark.getInverted() == inverted));
+        }
+        if (config.idleMode != null) {
+            settings.add(new Setting(
+                    "idle mode",
+                    () -> spark.setIdleMode(config.idleMode),
+                    () -> spark.getIdleMode() == config.idleMode));
+        }
+        if (config.smartCurrentLimit > 0) {
+            settings.add(new Setting(
+                    "smart current limit", () -> spark.setSmartCurrentLimit(config.smartCurrentLimit), null));
+        }
+
+        if (config.statusFrames != null) {
+            for (int i = 0; i < StatusFrameProfile.kFrames.length; i++) {
+                PeriodicFrame frame = StatusFrameProfile.kFrames[i];
+                int periodMs = config.statusFrames.getPeriodMs(i);
+                settings.add(new Setting(
+                        "status frame " + i + " period", () -> spark.setPeriodicFramePeriod(frame, periodMs), null));
+            }
+        }
+
+        SparkPIDController pid = spark.getPIDController();
+        switch (config.feedbackSensor) {
+            case kPrimaryEncoder -> {
+                RelativeEncoder encoder = spark.getEncoder();
+                addFeedbackSettings(settings, pid, encoder);
+                settings.add(new Setting(
+                        "position conversion factor",
+                        () -> encoder.setPositionConversionFactor(config.positionConversionFactor),
+                        () -> matches(encoder.getPositionConversionFactor(), config.positionConversionFactor)));
+                settings.add(new Setting(
+                        "velocity conversion factor",
+                        () -> encoder.setVelocityConversionFactor(config.velocityConversionFactor),
+                        () -> matches(encoder.getVelocityConversionFactor(), config.velocityConversionFactor)));
+            }
+            case kAbsoluteEncoder -> {
+                AbsoluteEncoder encoder = spark.getAbsoluteEncoder(Type.kDutyCycle);
+                addFeedbackSettings(settings, pid, encoder);
+                settings.add(new Setting(
+                        "position conversion factor",
+                        () -> encoder.setPositionConversionFactor(config.positionConversionFactor),
+                        () -> matches(encoder.getPositionConversionFactor(), config.positionConversionFactor)));
+                settings.add(new Setting(
+                        "velocity conversion factor",
+                        () -> encoder.setVelocityConversionFactor(config.velocityConversionFactor),
+                        () -> matches(encoder.getVelocityConversionFactor(), config.velocityConversionFactor)));
+                settings.add(new Setting(
+                        "encoder inverted",
+                        () -> encoder.setInverted(config.encoderInverted),
+                        () -> encoder.getInverted() == config.encoderInverted));
+            }
+            case kNone -> {}
+        }
+
+        if (config.positionWrappingEnabled) {
+            settings.add(new Setting(
+                    "position wrapping",
+                    () -> pid.setPositionPIDWrappingEnabled(true),
+                    pid::getPositionPIDWrappingEnabled));
+            settings.add(new Setting(
+                    "position wrapping min input",
+                    () -> pid.setPositionPIDWrappingMinInput(config.positionWrappingMinInput),
+                    () -> matches(pid.getPositionPIDWrappingMinInput(), config.positionWrappingMinInput)));
+            settings.add(new Setting(
+                    "position wrapping max input",
+                    () -> pid.setPositionPIDWrappingMaxInput(config.positionWrappingMaxInput),
+                    () -> matches(pid.getPositionPIDWrappingMaxInput(), config.positionWrappingMaxInput)));
+        }
+
+        if (config.pidConfigured) {
+            settings.add(new Setting("P", () -> pid.setP(config.p), () -> matches(pid.getP(), config.p)));
+            settings.add(new Setting("I", () -> pid.setI(config.i), () -> matches(pid.getI(), config.i)));
+            settings.add(new Setting("D", () -> pid.setD(config.d), () -> matches(pid.getD(), config.d)));
+            settings.add(new Setting("FF", () -> pid.setFF(config.ff), () -> matches(pid.getFF(), config.ff)));
+            settings.add(new Setting(
+                    "output range",
+                    () -> pid.setOutputRange(config.outputMin, config.outputMax),
+                    () -> matches(pid.getOutputMin(), config.outputMin)
+                            && matches(pid.getOutputMax(), config.outputMax)));
+        }
+
+        if (config.smartMotionConfigured) {
+            int slot = config.smartMotionSlot;
+            settings.add(new Setting(
+                    "smart motion P",
+                    () -> pid.setP(config.smartMotionP, slot),
+                    () -> matches(pid.getP(slot), config.smartMotionP)));
+            settings.add(new Setting(
+                    "smart motion FF",
+                    () -> pid.setFF(config.smartMotionFF, slot),
+                    () -> matches(pid.getFF(slot), config.smartMotionFF)));
+            settings.add(new Setting(
+                    "smart motion output range",
+                    () -> pid.setOutputRange(config.outputMin, config.outputMax, slot),
+                    () -> matches(pid.getOutputMin(slot), config.outputMin)
+                            && matches(pid.getOutputMax(slot), config.outputMax)));
+            settings.add(new Setting(
+                    "smart motion max velocity",
+                    () -> pid.setSmartMotionMaxVelocity(config.smartMotionMaxVelocity, slot),
+                    () -> matches(pid.getSmartMotionMaxVelocity(slot), config.smartMotionMaxVelocity)));
+            settings.add(new Setting(
+                    "smart motion max acceleration",
+                    () -> pid.setSmartMotionMaxAccel(config.smartMotionMaxAcceleration, slot),
+                    () -> matches(pid.getSmartMotionMaxAccel(slot), config.smartMotionMaxAcceleration)));
+            settings.add(new Setting(
+                    "smart motion allowed error",
+                    () -> pid.setSmartMotionAllowedClosedLoopError(config.smartMotionAllowedError, slot),
+                    () -> matches(
+                            pid.getSmartMotionAllowedClosedLoopError(slot), config.smartMotionAllowedError)));
+        }
+
+        return settings;
+    }
+
+    /** The PID feedback device can't be read back, so it is written every time. */
+    private static void addFeedbackSettings(
+            List<Setting> settings, SparkPIDController pid, MotorFeedbackSensor sensor) {
+        settings.add(new Setting("feedback device", () -> pid.setFeedbackDevice(sensor), null));
+    }
+
+    /** SPARK MAX parameters are stored as floats, so compare with a tolerance. */
+    private static boolean matches(double actual, double expected) {
+        return Math.abs(actual - expected) <= 1e-6 * Math.max(1.0, Math.abs(expected));
+    }
+}
@@ -0,0 +1,75 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+
+/**
+ * How often a SPARK MAX should send each of its periodic status frames. Frames carrying data the code
+ * never reads can be slowed right down to free up CAN bandwidth for the ones it does.
+ *
+ * <ul>
+ *   <li>Status 0: applied output, faults, follower state (default 10 ms)
+ *   <li>Status 1: motor velocity, temperature, voltage and current (default 20 ms)
+ *   <li>Status 2: motor position (default 20 ms)
+ *   <li>Status 3: analog sensor (default 50 ms)
+ *   <li>Status 4: alternate encoder (default 20 ms)
+ *   <li>Status 5: duty cycle absolute encoder position (default 200 ms)
+ *   <li>Status 6: duty cycle absolute encoder velocity (default 200 ms)
+ * </ul>
+ */
+public class StatusFrameProfile {
+    /** The frames a profile covers, in the order their periods are given. */
+    static final PeriodicFrame[] kFrames = {
+        PeriodicFrame.kStatus0,
+        PeriodicFrame.kStatus1,
+        PeriodicFrame.kStatus2,
+        PeriodicFrame.kStatus3,
+        PeriodicFrame.kStatus4,
+        PeriodicFrame.kStatus5,
+        PeriodicFrame.kStatus6
+    };
+
+    /** The firmware's own periods, for devices that haven't been tuned. */
+    public static final StatusFrameProfile kDefault = new StatusFrameProfile(10, 20, 20, 50, 20, 200, 200);
+
+    private final int[] periodsMs;
+
+    /**
+     * Creates a profile. Each period is in milliseconds.
+     *
+     * @param status0 Applied output and faults.
+     * @param status1 Motor velocity, temperature, voltage and current.
+     * @param status2 Motor position.
+     * @param status3 Analog sensor.
+     * @param status4 Alternate encoder.
+     * @param status5 Absolute encoder position.
+     * @param status6 Absolute encoder velocity.
+     */
+    public StatusFrameProfile(
+            int status0, int status1, int status2, int status3, int status4, int status5, int status6) {
+        periodsMs = new int[] {status0, status1, status2, status3, status4, status5, status6};
+    }
+
+    /**
+     * Returns the period of one status frame.
+     *
+     * @param index The status frame number, from 0 to 6.
+     * @return The period, in milliseconds.
+     */
+    public int getPeriodMs(int index) {
+        return periodsMs[index];
+    }
+
+    /**
+     * Returns how many status frames per second a device running this profile sends.
+     *
+     * @return The frame rate, in frames per second.
+     */
+    public double getFramesPerSecond() {
+        double framesPerSecond = 0.0;
+        for (int period : periodsMs) {
+            framesPerSecond += 1000.0 / period;
+        }
+        return framesPerSecond;
+    }
+}
@@ -0,0 +1,201 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.datalog.BooleanLogEntry;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary on-robot telemetry. Values are written to a WPILib {@link DataLog} through typed entries that
+ * are registered once, up front, so recording a value is just an append. The DataLog buffers appends
+ * and writes them to disk from its own thread, so the robot loop never waits on the file system.
+ *
+ * <p>Every channel is also mirrored to the SmartDashboard table for the drivers, but only the latest
+ * value and only every few loops, in one batch from {@link #periodic()}, rather than a string-keyed
+ * lookup and NT update every time a value changes.
+ */
+public final class Telemetry {
+    // How many robot loops between NetworkTables mirror updates (5 = 10 Hz)
+    private static final int MIRROR_PERIOD_LOOPS = 5;
+
+    private static final NetworkTable mirrorTable = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+    private static final List<Channel> channels = new ArrayList<>();
+    private static DataLog log;
+    private static int loopCount = 0;
+
+    private Telemetry() {}
+
+    /** Something that can push its latest value to NetworkTables. */
+    private interface Channel {
+        void mirror();
+    }
+
+    /** A logged number. */
+    public static final class DoubleChannel implements Channel {
+        private final DoubleLogEntry entry;
+        private final DoublePublisher publisher;
+        private double value;
+        private boolean dirty = false;
+
+        private DoubleChannel(String name, String unit) {
+            entry = new DoubleLogEntry(getLog(), name, "{\"unit\":\"" + unit + "\"}");
+            publisher = mirrorTable.getDoubleTopic(name).publish();
+        }
+
+        /** Records a new value. */
+        public void set(double value) {
+            entry.append(value);
+            this.value = value;
+            dirty = true;
+        }
+
+        @Override
+        public void mirror() {
+            if (dirty) {
+                publisher.set(value);
+                dirty = false;
+            }
+        }
+    }
+
+    /** A logged fixed-length array of numbers, such as a pose or a set of module states. */
+    public static final class DoubleArrayChannel implements Channel {
+        private final DoubleArrayLogEntry entry;
+        private final DoubleArrayPublisher publisher;
+        private final double[] value;
+        private boolean dirty = false;
+
+        private DoubleArrayChannel(String name, int length) {
+            entry = new DoubleArrayLogEntry(getLog(), name);
+            publisher = mirrorTable.getDoubleArrayTopic(name).publish();
+            value = new double[length];
+        }
+
+        /**
+         * Returns the array to fill in before calling {@link #update()}. Reused on every call.
+         *
+         * @return The channel's value array.
+         */
+        public double[] values() {
+            return value;
+        }
+
+        /** Records the current contents of {@link #values()}. */
+        public void update() {
+            entry.append(value);
+            dirty = true;
+        }
+
+        @Override
+        public void mirror() {
+            if (dirty) {
+                publisher.set(value);
+                dirty = false;
+            }
+        }
+    }
+
+    /** A logged true/false flag. */
+    public static final class BooleanChannel implements Channel {
+        private final BooleanLogEntry entry;
+        private final BooleanPublisher publisher;
+        private boolean value;
+        private boolean dirty = false;
+
+        private BooleanChannel(String name) {
+            entry = new BooleanLogEntry(getLog(), name);
+            publisher = mirrorTable.getBooleanTopic(name).publish();
+        }
+
+        /** Records a new value. */
+        public void set(boolean value) {
+            entry.append(value);
+            this.value = value;
+            dirty = true;
+        }
+
+        @Override
+        public void mirror() {
+            if (dirty) {
+                publisher.set(value);
+                dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Starts the on-robot log, including Driver Station and joystick data. Call once at the start of
+     * robotInit, before any channels are registered.
+     */
+    public static synchronized void start() {
+        DataLogManager.start();
+        DriverStation.startDataLog(DataLogManager.getLog());
+        log = DataLogManager.getLog();
+    }
+
+    /**
+     * Registers a number channel.
+     *
+     * @param name The log entry name, also used as the dashboard key.
+     * @param unit The unit, recorded in the entry metadata.
+     * @return The channel.
+     */
+    public static synchronized DoubleChannel doubleChannel(String name, String unit) {
+        return register(new DoubleChannel(name, unit));
+    }
+
+    /**
+     * Registers a fixed-length number array channel.
+     *
+     * @param name   The log entry name, also used as the dashboard key.
+     * @param length The number of values in the array.
+     * @return The channel.
+     */
+    public static synchronized DoubleArrayChannel doubleArrayChannel(String name, int length) {
+        return register(new DoubleArrayChannel(name, length));
+    }
+
+    /**
+     * Registers a true/false channel.
+     *
+     * @param name The log entry name, also used as the dashboard key.
+     * @return The channel.
+     */
+    public static synchronized BooleanChannel booleanChannel(String name) {
+        return register(new BooleanChannel(name));
+    }
+
+    /** Call once per robot loop. Mirrors changed channels to the dashboard every few loops. */
+    public static void periodic() {
+        if (++loopCount < MIRROR_PERIOD_LOOPS) {
+            return;
+        }
+        loopCount = 0;
+        for (int i = 0; i < channels.size(); i++) {
+            channels.get(i).mirror();
+        }
+    }
+
+    private static <T extends Channel> T register(T channel) {
+        channels.add(channel);
+        return channel;
+    }
+
+    /** Returns the log, starting it if nothing has yet, e.g. when a subsystem is built outside the robot. */
+    private static DataLog getLog() {
+        if (log == null) {
+            log = DataLogManager.getLog();
+        }
+        return log;
+    }
+}
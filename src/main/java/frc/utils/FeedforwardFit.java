@@ -0,0 +1,114 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+/**
+ * Fits a simple motor feedforward, volts = kS * sign(velocity) + kV * velocity + kA * acceleration, to
+ * measured samples by ordinary least squares. Samples are folded into running sums as they are added, so
+ * any number of them can be fitted without storing them, and the fit is solved from the 3x3 normal
+ * equations. Like the other classes in this package it has no HAL dependencies.
+ */
+public class FeedforwardFit {
+    // Sums of the products of the regressors (sign, velocity, acceleration) with each other and the volts
+    private final double[][] m_xx = new double[3][3];
+    private final double[] m_xy = new double[3];
+    private double m_yy = 0.0;
+    private double m_ySum = 0.0;
+    private int m_count = 0;
+
+    private double m_kS = Double.NaN;
+    private double m_kV = Double.NaN;
+    private double m_kA = Double.NaN;
+    private double m_rSquared = Double.NaN;
+
+    /**
+     * Adds a sample.
+     *
+     * @param volts        The voltage applied.
+     * @param velocity     The measured velocity.
+     * @param acceleration The measured acceleration.
+     */
+    public void add(double volts, double velocity, double acceleration) {
+        double[] x = {Math.signum(velocity), velocity, acceleration};
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                m_xx[i][j] += x[i] * x[j];
+            }
+            m_xy[i] += x[i] * volts;
+        }
+        m_yy += volts * volts;
+        m_ySum += volts;
+        m_count++;
+    }
+
+    /**
+     * Solves for the gains from the samples added so far. Read them back with the getters.
+     *
+     * @return False if there are too few samples, or they don't vary enough to tell the gains apart.
+     */
+    public boolean solve() {
+        // The determinant is at most the product of the diagonal, and only reaches it when the regressors are
+        // uncorrelated; compared against that it says how close they are to dependent whatever their scale
+        double determinant = determinant(m_xx);
+        if (m_count < 3 || Math.abs(determinant) <= 1e-9 * m_xx[0][0] * m_xx[1][1] * m_xx[2][2]) {
+            return false;
+        }
+
+        // Cramer's rule; the system is only 3x3
+        double[] gains = new double[3];
+        for (int column = 0; column < 3; column++) {
+            double[][] replaced = new double[3][3];
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    replaced[i][j] = j == column ? m_xy[i] : m_xx[i][j];
+                }
+            }
+            gains[column] = determinant(replaced) / determinant;
+        }
+        m_kS = gains[0];
+        m_kV = gains[1];
+        m_kA = gains[2];
+
+        // The residual sum of squares expands to y'y - 2 b'X'y + b'X'Xb
+        double residual = m_yy;
+        for (int i = 0; i < 3; i++) {
+            residual -= 2 * gains[i] * m_xy[i];
+            for (int j = 0; j < 3; j++) {
+                residual += gains[i] * m_xx[i][j] * gains[j];
+            }
+        }
+        double total = m_yy - m_ySum * m_ySum / m_count;
+        m_rSquared = total > 0 ? 1 - residual / total : Double.NaN;
+        return true;
+    }
+
+    private static double determinant(double[][] m) {
+        return m[0][0] * (m[1][1] * m[2][2] - m[1][2] * m[2][1])
+                - m[0][1] * (m[1][0] * m[2][2] - m[1][2] * m[2][0])
+                + m[0][2] * (m[1][0] * m[2][1] - m[1][1] * m[2][0]);
+    }
+
+    /** @return The number of samples added. */
+    public int getSampleCount() {
+        return m_count;
+    }
+
+    /** @return The volts needed to overcome friction. */
+    public double getKs() {
+        return m_kS;
+    }
+
+    /** @return The volts per unit of velocity. */
+    public double getKv() {
+        return m_kV;
+    }
+
+    /** @return The volts per unit of acceleration. */
+    public double getKa() {
+        return m_kA;
+    }
+
+    /** @return How much of the variation in the voltage the fit explains, from 0 to 1. */
+    public double getRSquared() {
+        return m_rSquared;
+    }
+}
@@ -0,0 +1,224 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+/**
+ * A fixed-size history of where the robot was, for looking up its state at the moment something in the
+ * past happened, such as a camera frame being captured. Each sample holds the pose, the robot-relative
+ * chassis speeds and the raw gyro yaw at an FPGA timestamp.
+ *
+ * <p>Samples live in parallel primitive arrays used as a ring buffer, so recording a sample never
+ * allocates and the oldest sample is simply overwritten once the buffer is full. Lookups binary search
+ * the timestamps and interpolate linearly between the two samples either side, taking the short way
+ * round for angles. Results are read back through getters after {@link #sample(double)}. Like the other
+ * classes in this package it has no HAL dependencies. It is not thread safe.
+ */
+public class PoseHistory {
+    private final int m_capacity;
+    private final double[] m_timestamps;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_theta;
+    private final double[] m_vx;
+    private final double[] m_vy;
+    private final double[] m_omega;
+    private final double[] m_yaw;
+
+    // Physical index of the oldest sample, and how many samples are held
+    private int m_start = 0;
+    private int m_size = 0;
+
+    // The result of the last lookup
+    private double m_sampleX;
+    private double m_sampleY;
+    private double m_sampleTheta;
+    private double m_sampleVx;
+    private double m_sampleVy;
+    private double m_sampleOmega;
+    private double m_sampleYaw;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param capacity The most samples to hold.
+     */
+    public PoseHistory(int capacity) {
+        m_capacity = capacity;
+        m_timestamps = new double[capacity];
+        m_x = new double[capacity];
+        m_y = new double[capacity];
+        m_theta = new double[capacity];
+        m_vx = new double[capacity];
+        m_vy = new double[capacity];
+        m_omega = new double[capacity];
+        m_yaw = new double[capacity];
+    }
+
+    /**
+     * Records a sample. Samples must be added in time order; one no newer than the latest is ignored.
+     *
+     * @param timestamp The FPGA time of the sample, in seconds.
+     * @param x         The field position, in meters.
+     * @param y         The field position, in meters.
+     * @param theta     The field heading, in radians.
+     * @param vx        The robot-relative forward speed, in meters per second.
+     * @param vy        The robot-relative sideways speed, in meters per second.
+     * @param omega     The rotation rate, in radians per second.
+     * @param yaw       The raw gyro yaw, in radians.
+     */
+    public void add(
+            double timestamp, double x, double y, double theta, double vx, double vy, double omega, double yaw) {
+        if (m_size > 0 && timestamp <= m_timestamps[physical(m_size - 1)]) {
+            return;
+        }
+
+        int index;
+        if (m_size < m_capacity) {
+            index = physical(m_size);
+            m_size++;
+        } else {
+            index = m_start;
+            m_start = (m_start + 1) % m_capacity;
+        }
+        m_timestamps[index] = timestamp;
+        m_x[index] = x;
+        m_y[index] = y;
+        m_theta[index] = theta;
+        m_vx[index] = vx;
+        m_vy[index] = vy;
+        m_omega[index] = omega;
+        m_yaw[index] = yaw;
+    }
+
+    /** Removes every sample, e.g. after the pose or gyro is reset. */
+    public void clear() {
+        m_start = 0;
+        m_size = 0;
+    }
+
+    /**
+     * Returns how many samples are held.
+     *
+     * @return The number of samples.
+     */
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Returns the time of the oldest sample held.
+     *
+     * @return The FPGA timestamp, in seconds, or NaN if the history is empty.
+     */
+    public double getOldestTimestamp() {
+        return m_size == 0 ? Double.NaN : m_timestamps[m_start];
+    }
+
+    /**
+     * Returns the time of the newest sample held.
+     *
+     * @return The FPGA timestamp, in seconds, or NaN if the history is empty.
+     */
+    public double getNewestTimestamp() {
+        return m_size == 0 ? Double.NaN : m_timestamps[physical(m_size - 1)];
+    }
+
+    /**
+     * Looks up the robot's state at a past time, interpolating between the samples either side. Times
+     * outside the history use the oldest or newest sample. Read the result with the getters.
+     *
+     * @param timestamp The FPGA time to look up, in seconds.
+     * @return False if the history is empty, in which case the getters are unchanged.
+     */
+    public boolean sample(double timestamp) {
+        if (m_size == 0) {
+            return false;
+        }
+
+        // Find the first sample at or after the timestamp
+        int low = 0;
+        int high = m_size - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (m_timestamps[physical(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        int after = physical(low);
+        if (low == 0 || m_timestamps[after] <= timestamp) {
+            copy(after);
+            return true;
+        }
+
+        int before = physical(low - 1);
+        double t = (timestamp - m_timestamps[before]) / (m_timestamps[after] - m_timestamps[before]);
+        m_sampleX = lerp(m_x[before], m_x[after], t);
+        m_sampleY = lerp(m_y[before], m_y[after], t);
+        m_sampleTheta = lerpAngle(m_theta[before], m_theta[after], t);
+        m_sampleVx = lerp(m_vx[before], m_vx[after], t);
+        m_sampleVy = lerp(m_vy[before], m_vy[after], t);
+        m_sampleOmega = lerp(m_omega[before], m_omega[after], t);
+        m_sampleYaw = lerpAngle(m_yaw[before], m_yaw[after], t);
+        return true;
+    }
+
+    private void copy(int index) {
+        m_sampleX = m_x[index];
+        m_sampleY = m_y[index];
+        m_sampleTheta = m_theta[index];
+        m_sampleVx = m_vx[index];
+        m_sampleVy = m_vy[index];
+        m_sampleOmega = m_omega[index];
+        m_sampleYaw = m_yaw[index];
+    }
+
+    private int physical(int logical) {
+        return (m_start + logical) % m_capacity;
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    /** Interpolates between two angles the short way round, returning a result from -pi to pi. */
+    private static double lerpAngle(double a, double b, double t) {
+        return Math.IEEEremainder(a + Math.IEEEremainder(b - a, 2 * Math.PI) * t, 2 * Math.PI);
+    }
+
+    /** @return The looked up field position, in meters. */
+    public double getX() {
+        return m_sampleX;
+    }
+
+    /** @return The looked up field position, in meters. */
+    public double getY() {
+        return m_sampleY;
+    }
+
+    /** @return The looked up field heading, in radians. */
+    public double getTheta() {
+        return m_sampleTheta;
+    }
+
+    /** @return The looked up robot-relative forward speed, in meters per second. */
+    public double getVx() {
+        return m_sampleVx;
+    }
+
+    /** @return The looked up robot-relative sideways speed, in meters per second. */
+    public double getVy() {
+        return m_sampleVy;
+    }
+
+    /** @return The looked up rotation rate, in radians per second. */
+    public double getOmega() {
+        return m_sampleOmega;
+    }
+
+    /** @return The looked up raw gyro yaw, in radians. */
+    public double getYaw() {
+        return m_sampleYaw;
+    }
+}
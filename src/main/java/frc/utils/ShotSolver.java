@@ -0,0 +1,103 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+/**
+ * Works out where to point the robot so a note fired while moving still lands in the target. A note
+ * leaves the robot carrying the robot's own velocity, so instead of aiming at the target the robot
+ * aims at a virtual target offset against its velocity by the note's time of flight. The time of
+ * flight depends on the distance to that virtual target, so the two are solved together by fixed-point
+ * iteration, which converges in a few steps at any speed the robot can drive.
+ *
+ * <p>Results are read back through getters so solving every loop doesn't allocate. Like the other
+ * classes in this package it has no HAL dependencies.
+ */
+public class ShotSolver {
+    // Each iteration shrinks the time of flight error by roughly robot speed / note speed
+    private static final int kIterations = 4;
+
+    private final double m_noteSpeed;
+    private final double m_shotLatency;
+    private final double m_headingOffset;
+
+    private double m_heading = 0.0;
+    private double m_headingRate = 0.0;
+    private double m_distance = 0.0;
+    private double m_timeOfFlight = 0.0;
+
+    /**
+     * Creates a solver.
+     *
+     * @param noteSpeedMetersPerSecond The average speed of the note over its flight.
+     * @param shotLatencySeconds       The time from deciding to shoot to the note leaving the robot.
+     * @param headingOffsetRadians     The direction the shooter points, relative to the robot's front.
+     */
+    public ShotSolver(double noteSpeedMetersPerSecond, double shotLatencySeconds, double headingOffsetRadians) {
+        m_noteSpeed = noteSpeedMetersPerSecond;
+        m_shotLatency = shotLatencySeconds;
+        m_headingOffset = headingOffsetRadians;
+    }
+
+    /**
+     * Solves for the robot heading. All positions and velocities are on the field.
+     *
+     * @param robotX  The robot's position, in meters.
+     * @param robotY  The robot's position, in meters.
+     * @param robotVx The robot's velocity, in meters per second.
+     * @param robotVy The robot's velocity, in meters per second.
+     * @param targetX The target's position, in meters.
+     * @param targetY The target's position, in meters.
+     */
+    public void solve(double robotX, double robotY, double robotVx, double robotVy, double targetX, double targetY) {
+        double dx = targetX - robotX;
+        double dy = targetY - robotY;
+        double timeOfFlight = 0.0;
+        for (int i = 0; i < kIterations; i++) {
+            dx = targetX - robotVx * timeOfFlight - robotX;
+            dy = targetY - robotVy * timeOfFlight - robotY;
+            timeOfFlight = m_shotLatency + Math.hypot(dx, dy) / m_noteSpeed;
+        }
+
+        double distanceSquared = dx * dx + dy * dy;
+        m_distance = Math.sqrt(distanceSquared);
+        m_timeOfFlight = timeOfFlight;
+        m_heading = Math.IEEEremainder(Math.atan2(dy, dx) + m_headingOffset, 2 * Math.PI);
+        // The line of sight turns at (r x v) / |r|^2, with v the target's velocity relative to the robot
+        m_headingRate = distanceSquared > 1e-6 ? (dy * robotVx - dx * robotVy) / distanceSquared : 0.0;
+    }
+
+    /**
+     * Returns the heading to hold, from -pi to pi.
+     *
+     * @return The heading, in radians.
+     */
+    public double getHeading() {
+        return m_heading;
+    }
+
+    /**
+     * Returns how fast the heading to hold is changing, for use as a feedforward.
+     *
+     * @return The rate, in radians per second.
+     */
+    public double getHeadingRate() {
+        return m_headingRate;
+    }
+
+    /**
+     * Returns the distance to the virtual target.
+     *
+     * @return The distance, in meters.
+     */
+    public double getDistance() {
+        return m_distance;
+    }
+
+    /**
+     * Returns the time from shooting until the note reaches the target.
+     *
+     * @return The time, in seconds.
+     */
+    public double getTimeOfFlight() {
+        return m_timeOfFlight;
+    }
+}
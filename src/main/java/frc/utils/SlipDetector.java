@@ -0,0 +1,302 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import java.util.Arrays;
+
+/**
+ * Checks every odometry sample for wheels that don't agree with the rest of the robot. A rigid chassis
+ * moves each wheel at the chassis velocity plus the rotation rate crossed with the wheel's offset, and
+ * the gyro measures that rotation rate far better than the wheels do. So the chassis velocity is fitted
+ * from the wheels with the gyro's rotation rate taken out, and any wheel whose velocity is too far from
+ * that fit is slipping. The worst wheel is dropped and the fit repeated until the rest agree or only two
+ * are left.
+ *
+ * <p>A slipping wheel's distance is replaced by how far the fit says it should have rolled, so feeding
+ * the corrected distances to the odometry drops the slipping wheel's contribution. If fewer than two
+ * wheels agree the sample is unreliable and passed through unchanged. Separately, the accelerometer is
+ * compared against the fitted chassis acceleration once per loop; a big difference means the robot was
+ * hit or was pushed into something, and the odometry around it should be trusted less.
+ *
+ * <p>Results are read back through getters so nothing allocates. Like the other classes in this package
+ * it has no HAL dependencies. It is not thread safe.
+ */
+public class SlipDetector {
+    private final double[] m_moduleX;
+    private final double[] m_moduleY;
+    private final double m_slipThreshold;
+    private final double m_collisionThreshold;
+
+    private boolean m_initialized = false;
+    private double m_lastTimestamp;
+    private double m_lastYaw;
+    private final double[] m_lastDistances;
+    private final double[] m_correctedDistances;
+
+    // The latest sample: each wheel's velocity, which wheels slipped, and the fitted chassis velocity
+    private final double[] m_wheelVx;
+    private final double[] m_wheelVy;
+    private final boolean[] m_slipping;
+    private boolean m_unreliable = false;
+    private double m_vx = 0.0;
+    private double m_vy = 0.0;
+    private double m_omega = 0.0;
+    private boolean m_hasVelocity = false;
+
+    // The fitted chassis velocity at the last collision check
+    private double m_collisionCheckTimestamp = Double.NaN;
+    private double m_collisionCheckVx = 0.0;
+    private double m_collisionCheckVy = 0.0;
+    private boolean m_collision = false;
+
+    /**
+     * Creates a detector.
+     *
+     * @param moduleX            The forward offset of each module from the center of the robot, in meters.
+     * @param moduleY            The leftward offset of each module from the center of the robot, in meters.
+     * @param slipThreshold      How far a wheel's velocity may be from the fit before it counts as slipping,
+     *                           in meters per second.
+     * @param collisionThreshold How far the measured acceleration may be from the fitted acceleration
+     *                           before it counts as a collision, in meters per second squared.
+     */
+    public SlipDetector(double[] moduleX, double[] moduleY, double slipThreshold, double collisionThreshold) {
+        m_moduleX = moduleX.clone();
+        m_moduleY = moduleY.clone();
+        m_slipThreshold = slipThreshold;
+        m_collisionThreshold = collisionThreshold;
+        m_lastDistances = new double[moduleX.length];
+        m_correctedDistances = new double[moduleX.length];
+        m_wheelVx = new double[moduleX.length];
+        m_wheelVy = new double[moduleX.length];
+        m_slipping = new boolean[moduleX.length];
+    }
+
+    /**
+     * Starts again from the given wheel distances, e.g. after the odometry is reset. The corrected
+     * distances restart from the raw ones.
+     *
+     * @param distances The distance each wheel has rolled, in meters.
+     */
+    public void reset(double[] distances) {
+        System.arraycopy(distances, 0, m_lastDistances, 0, m_lastDistances.length);
+        System.arraycopy(distances, 0, m_correctedDistances, 0, m_correctedDistances.length);
+        m_initialized = false;
+        m_hasVelocity = false;
+        m_unreliable = false;
+        m_collision = false;
+        m_collisionCheckTimestamp = Double.NaN;
+        Arrays.fill(m_slipping, false);
+    }
+
+    /**
+     * Stops comparing the next sample against the previous one, e.g. after the gyro is zeroed. The
+     * corrected distances carry on from where they were.
+     */
+    public void restart() {
+        m_initialized = false;
+        m_hasVelocity = false;
+        m_collisionCheckTimestamp = Double.NaN;
+    }
+
+    /**
+     * Checks one odometry sample. Per-module values are read from flat arrays starting at an offset, the
+     * way the odometry thread stores them.
+     *
+     * @param timestamp The time of the sample, in seconds.
+     * @param distances The distance each wheel has rolled, in meters.
+     * @param angles    The angle of each module, in radians.
+     * @param offset    The index of the first module's values.
+     * @param yaw       The gyro heading, in radians, or NaN if the gyro can't be trusted, in which case
+     *                  nothing is flagged.
+     */
+    public void update(double timestamp, double[] distances, double[] angles, int offset, double yaw) {
+        int count = m_moduleX.length;
+        if (!m_initialized) {
+            // Nothing to compare against yet, so take the distances as they are
+            for (int i = 0; i < count; i++) {
+                m_correctedDistances[i] += distances[offset + i] - m_lastDistances[i];
+                m_lastDistances[i] = distances[offset + i];
+            }
+            m_lastTimestamp = timestamp;
+            m_lastYaw = yaw;
+            m_initialized = true;
+            m_hasVelocity = false;
+            return;
+        }
+
+        double dt = timestamp - m_lastTimestamp;
+        boolean check = dt > 1e-6 && !Double.isNaN(yaw) && !Double.isNaN(m_lastYaw);
+        double omega = check ? Math.IEEEremainder(yaw - m_lastYaw, 2 * Math.PI) / dt : 0.0;
+        m_hasVelocity = check;
+        m_omega = omega;
+        for (int i = 0; i < count; i++) {
+            double speed = check ? (distances[offset + i] - m_lastDistances[i]) / dt : 0.0;
+            m_wheelVx[i] = speed * Math.cos(angles[offset + i]);
+            m_wheelVy[i] = speed * Math.sin(angles[offset + i]);
+            m_slipping[i] = false;
+        }
+
+        m_unreliable = false;
+        if (check) {
+            // Drop the wheel furthest from the fit until the rest agree, keeping at least two
+            int agreeing = count;
+            while (true) {
+                fit(omega);
+                int worst = -1;
+                double worstResidual = m_slipThreshold;
+                for (int i = 0; i < count; i++) {
+                    double residual = m_slipping[i] ? 0.0 : residual(i, omega);
+                    if (residual > worstResidual) {
+                        worst = i;
+                        worstResidual = residual;
+                    }
+                }
+                if (worst < 0) {
+                    break;
+                }
+                if (agreeing <= 2) {
+                    m_unreliable = true;
+                    break;
+                }
+                m_slipping[worst] = true;
+                agreeing--;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            double distance = distances[offset + i];
+            if (m_slipping[i] && !m_unreliable) {
+                // Roll the wheel as far as the fit says it went along its own direction
+                double angle = angles[offset + i];
+                double vx = m_vx - omega * m_moduleY[i];
+                double vy = m_vy + omega * m_moduleX[i];
+                m_correctedDistances[i] += (vx * Math.cos(angle) + vy * Math.sin(angle)) * dt;
+            } else {
+                m_correctedDistances[i] += distance - m_lastDistances[i];
+            }
+            m_lastDistances[i] = distance;
+        }
+        if (m_unreliable) {
+            Arrays.fill(m_slipping, false);
+        }
+        m_lastTimestamp = timestamp;
+        m_lastYaw = yaw;
+    }
+
+    /** Fits the chassis velocity to the wheels not flagged as slipping, with the rotation taken out. */
+    private void fit(double omega) {
+        double vx = 0.0;
+        double vy = 0.0;
+        int used = 0;
+        for (int i = 0; i < m_moduleX.length; i++) {
+            if (!m_slipping[i]) {
+                vx += m_wheelVx[i] + omega * m_moduleY[i];
+                vy += m_wheelVy[i] - omega * m_moduleX[i];
+                used++;
+            }
+        }
+        m_vx = vx / used;
+        m_vy = vy / used;
+    }
+
+    private double residual(int module, double omega) {
+        return Math.hypot(
+                m_wheelVx[module] - (m_vx - omega * m_moduleY[module]),
+                m_wheelVy[module] - (m_vy + omega * m_moduleX[module]));
+    }
+
+    /**
+     * Compares the measured acceleration against the acceleration the fitted chassis velocity implies: its
+     * change since the last check, plus the centripetal acceleration of turning. Call once per loop, after
+     * the loop's samples.
+     *
+     * @param accelX The robot's measured forward acceleration, in meters per second squared.
+     * @param accelY The robot's measured leftward acceleration, in meters per second squared.
+     * @return Whether the robot collided since the last check.
+     */
+    public boolean checkCollision(double accelX, double accelY) {
+        m_collision = false;
+        if (!m_initialized) {
+            return false;
+        }
+
+        double dt = m_lastTimestamp - m_collisionCheckTimestamp;
+        if (dt > 1e-6) {
+            // The fitted velocity is in the robot's frame, which turns, so the accelerometer also feels the
+            // rotation carrying that velocity round: omega cross v, the centripetal acceleration in a turn
+            double wheelAccelX = (m_vx - m_collisionCheckVx) / dt - m_omega * m_vy;
+            double wheelAccelY = (m_vy - m_collisionCheckVy) / dt + m_omega * m_vx;
+            m_collision = Math.hypot(accelX - wheelAccelX, accelY - wheelAccelY) > m_collisionThreshold;
+        }
+        if (Double.isNaN(dt) || dt > 1e-6) {
+            m_collisionCheckTimestamp = m_lastTimestamp;
+            m_collisionCheckVx = m_vx;
+            m_collisionCheckVy = m_vy;
+        }
+        return m_collision;
+    }
+
+    /**
+     * Returns how far a wheel has rolled, with the distance it slipped replaced by the distance the rest of
+     * the robot says it should have rolled.
+     *
+     * @param module The module index, in the order the module offsets were given.
+     * @return The distance, in meters.
+     */
+    public double getCorrectedDistance(int module) {
+        return m_correctedDistances[module];
+    }
+
+    /**
+     * Returns whether a wheel slipped in the latest sample.
+     *
+     * @param module The module index, in the order the module offsets were given.
+     * @return Whether it slipped.
+     */
+    public boolean isSlipping(int module) {
+        return m_slipping[module];
+    }
+
+    /**
+     * Returns whether the wheels disagreed so much in the latest sample that no fit could be trusted.
+     *
+     * @return Whether the sample was unreliable.
+     */
+    public boolean isUnreliable() {
+        return m_unreliable;
+    }
+
+    /**
+     * Returns whether the last collision check found a collision.
+     *
+     * @return Whether the robot collided.
+     */
+    public boolean isCollision() {
+        return m_collision;
+    }
+
+    /** @return The fitted forward speed of the latest sample, in meters per second. */
+    public double getVx() {
+        return m_vx;
+    }
+
+    /** @return The fitted leftward speed of the latest sample, in meters per second. */
+    public double getVy() {
+        return m_vy;
+    }
+
+    /** @return The rotation rate over the latest sample, from the gyro, in radians per second. */
+    public double getOmega() {
+        return m_omega;
+    }
+
+    /**
+     * Returns whether the latest sample had a previous one and a gyro reading to difference against, so
+     * {@link #getVx()}, {@link #getVy()} and {@link #getOmega()} describe it. They don't for the first
+     * sample after a reset or restart, or while the gyro is out.
+     *
+     * @return Whether the velocity of the latest sample is known.
+     */
+    public boolean hasVelocity() {
+        return m_hasVelocity;
+    }
+}
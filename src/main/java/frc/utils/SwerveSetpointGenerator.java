@@ -0,0 +1,206 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+/**
+ * Turns a requested chassis speed into module setpoints the modules can actually follow from where they
+ * were last commanded. Each loop it moves the chassis speed from the previous setpoint towards the
+ * request only as far as every module allows: no wheel may change speed faster than the wheel
+ * acceleration limit, and no module may steer faster than the steering rate limit. Because the whole
+ * chassis speed is scaled back together, the modules never fight each other, and a reversal becomes a
+ * wheel deceleration through zero with the modules flipping direction instead of steering round.
+ *
+ * <p>The largest feasible step is found by bisection along the line between the previous and requested
+ * chassis speeds. Results are written into preallocated arrays and read back through getters, so
+ * generating a setpoint doesn't allocate. Like the other classes in this package it has no HAL
+ * dependencies; the caller supplies the elapsed time.
+ */
+public class SwerveSetpointGenerator {
+    // Bisection steps; the step found is within 1 / 2^n of the largest feasible one
+    private static final int kSearchIterations = 10;
+    // Below this wheel speed a module's angle hardly matters, so it may steer freely
+    private static final double kSteerFreeSpeed = 0.05;
+
+    private final double[] m_moduleX;
+    private final double[] m_moduleY;
+    private final double m_maxWheelSpeed;
+    private final double m_maxWheelAcceleration;
+    private final double m_maxSteerRate;
+
+    // The previous setpoint: chassis speed and each module's signed speed and angle
+    private double m_vx = 0.0;
+    private double m_vy = 0.0;
+    private double m_omega = 0.0;
+    private final double[] m_speeds;
+    private final double[] m_angles;
+
+    // Scratch space for trying candidate setpoints
+    private final double[] m_candidateSpeeds;
+    private final double[] m_candidateAngles;
+
+    /**
+     * Creates a generator.
+     *
+     * @param moduleX              The forward offset of each module from the center of the robot, in meters.
+     * @param moduleY              The leftward offset of each module from the center of the robot, in meters.
+     * @param maxWheelSpeed        The fastest any wheel may be commanded, in meters per second.
+     * @param maxWheelAcceleration How fast a wheel may change speed, in meters per second squared.
+     * @param maxSteerRate         How fast a module may steer, in radians per second.
+     */
+    public SwerveSetpointGenerator(
+            double[] moduleX,
+            double[] moduleY,
+            double maxWheelSpeed,
+            double maxWheelAcceleration,
+            double maxSteerRate) {
+        m_moduleX = moduleX.clone();
+        m_moduleY = moduleY.clone();
+        m_maxWheelSpeed = maxWheelSpeed;
+        m_maxWheelAcceleration = maxWheelAcceleration;
+        m_maxSteerRate = maxSteerRate;
+        m_speeds = new double[moduleX.length];
+        m_angles = new double[moduleX.length];
+        m_candidateSpeeds = new double[moduleX.length];
+        m_candidateAngles = new double[moduleX.length];
+    }
+
+    /**
+     * Starts from the given state, e.g. what the modules measure after something else has been driving.
+     *
+     * @param vx     The robot-relative forward speed, in meters per second.
+     * @param vy     The robot-relative leftward speed, in meters per second.
+     * @param omega  The counter-clockwise rotation rate, in radians per second.
+     * @param speeds The speed of each module, in meters per second.
+     * @param angles The angle of each module, in radians.
+     */
+    public void reset(double vx, double vy, double omega, double[] speeds, double[] angles) {
+        m_vx = vx;
+        m_vy = vy;
+        m_omega = omega;
+        System.arraycopy(speeds, 0, m_speeds, 0, m_speeds.length);
+        System.arraycopy(angles, 0, m_angles, 0, m_angles.length);
+    }
+
+    /**
+     * Steps the setpoint towards the requested robot-relative chassis speed. Read the result with the
+     * getters.
+     *
+     * @param vx        The requested forward speed, in meters per second.
+     * @param vy        The requested leftward speed, in meters per second.
+     * @param omega     The requested counter-clockwise rotation rate, in radians per second.
+     * @param dtSeconds The time since the previous setpoint, in seconds.
+     */
+    public void generate(double vx, double vy, double omega, double dtSeconds) {
+        // Scale the request down, keeping its direction, until no wheel would need to exceed the max speed
+        double maxModuleSpeed = 0.0;
+        for (int i = 0; i < m_moduleX.length; i++) {
+            maxModuleSpeed = Math.max(
+                    maxModuleSpeed, Math.hypot(vx - omega * m_moduleY[i], vy + omega * m_moduleX[i]));
+        }
+        if (maxModuleSpeed > m_maxWheelSpeed) {
+            double scale = m_maxWheelSpeed / maxModuleSpeed;
+            vx *= scale;
+            vy *= scale;
+            omega *= scale;
+        }
+
+        double maxSpeedStep = m_maxWheelAcceleration * dtSeconds;
+        double maxSteerStep = m_maxSteerRate * dtSeconds;
+        double fraction = 1.0;
+        if (!isFeasible(vx, vy, omega, 1.0, maxSpeedStep, maxSteerStep)) {
+            double low = 0.0;
+            double high = 1.0;
+            for (int iteration = 0; iteration < kSearchIterations; iteration++) {
+                double mid = 0.5 * (low + high);
+                if (isFeasible(vx, vy, omega, mid, maxSpeedStep, maxSteerStep)) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+            fraction = low;
+        }
+
+        m_vx += (vx - m_vx) * fraction;
+        m_vy += (vy - m_vy) * fraction;
+        m_omega += (omega - m_omega) * fraction;
+        computeModuleStates(m_vx, m_vy, m_omega);
+        System.arraycopy(m_candidateSpeeds, 0, m_speeds, 0, m_speeds.length);
+        System.arraycopy(m_candidateAngles, 0, m_angles, 0, m_angles.length);
+    }
+
+    /** Checks whether every module can reach the setpoint a fraction of the way to the request. */
+    private boolean isFeasible(
+            double vx, double vy, double omega, double fraction, double maxSpeedStep, double maxSteerStep) {
+        computeModuleStates(
+                m_vx + (vx - m_vx) * fraction, m_vy + (vy - m_vy) * fraction, m_omega + (omega - m_omega) * fraction);
+        for (int i = 0; i < m_speeds.length; i++) {
+            if (Math.abs(m_candidateSpeeds[i] - m_speeds[i]) > maxSpeedStep + 1e-9) {
+                return false;
+            }
+            boolean slow = Math.abs(m_candidateSpeeds[i]) < kSteerFreeSpeed && Math.abs(m_speeds[i]) < kSteerFreeSpeed;
+            if (!slow && Math.abs(angleDifference(m_candidateAngles[i], m_angles[i])) > maxSteerStep + 1e-9) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes module states into the candidate arrays. Each module takes whichever of the two equivalent
+     * directions is closer to its previous angle, flipping the wheel speed if needed, and keeps its
+     * previous angle when it has no speed.
+     */
+    private void computeModuleStates(double vx, double vy, double omega) {
+        for (int i = 0; i < m_speeds.length; i++) {
+            double moduleVx = vx - omega * m_moduleY[i];
+            double moduleVy = vy + omega * m_moduleX[i];
+            double speed = Math.hypot(moduleVx, moduleVy);
+            double angle = speed > 1e-6 ? Math.atan2(moduleVy, moduleVx) : m_angles[i];
+            if (Math.abs(angleDifference(angle, m_angles[i])) > Math.PI / 2) {
+                speed = -speed;
+                angle = Math.IEEEremainder(angle + Math.PI, 2 * Math.PI);
+            }
+            m_candidateSpeeds[i] = speed;
+            m_candidateAngles[i] = angle;
+        }
+    }
+
+    private static double angleDifference(double a, double b) {
+        return Math.IEEEremainder(a - b, 2 * Math.PI);
+    }
+
+    /** @return The forward speed of the setpoint, in meters per second. */
+    public double getVx() {
+        return m_vx;
+    }
+
+    /** @return The leftward speed of the setpoint, in meters per second. */
+    public double getVy() {
+        return m_vy;
+    }
+
+    /** @return The rotation rate of the setpoint, in radians per second. */
+    public double getOmega() {
+        return m_omega;
+    }
+
+    /**
+     * Returns each module's speed. A negative speed means the wheel drives backwards at the module angle.
+     *
+     * @param module The module index, in the order the module offsets were given.
+     * @return The speed, in meters per second.
+     */
+    public double getModuleSpeed(int module) {
+        return m_speeds[module];
+    }
+
+    /**
+     * Returns each module's angle, chosen to be the nearer of the two equivalent angles to the previous one.
+     *
+     * @param module The module index, in the order the module offsets were given.
+     * @return The angle, in radians.
+     */
+    public double getModuleAngle(int module) {
+        return m_angles[module];
+    }
+}
@@ -80,4 +80,104 @@ public class SwerveUtils {
             return _angle;
         }
     }
+
+    /**
+     * Converts robot-relative chassis speeds into module speeds and angles, writing the results into the
+     * provided arrays instead of allocating {@code SwerveModuleState}s. Matches WPILib's
+     * {@code SwerveDriveKinematics.toSwerveModuleStates}, including keeping the previous module angles
+     * when the robot is commanded to stop.
+     * @param _vx The forward speed of the robot (in meters per second).
+     * @param _vy The leftward speed of the robot (in meters per second).
+     * @param _omega The counter-clockwise rotation rate of the robot (in radians per second).
+     * @param _moduleX The forward offset of each module from the center of the robot (in meters).
+     * @param _moduleY The leftward offset of each module from the center of the robot (in meters).
+     * @param _speeds Receives the speed of each module (in meters per second).
+     * @param _angles Receives the angle of each module (in radians). Left untouched when the robot is stopped.
+     */
+    public static void toModuleStates(
+            double _vx,
+            double _vy,
+            double _omega,
+            double[] _moduleX,
+            double[] _moduleY,
+            double[] _speeds,
+            double[] _angles) {
+        if (_vx == 0.0 && _vy == 0.0 && _omega == 0.0) {
+            for (int i = 0; i < _speeds.length; i++) {
+                _speeds[i] = 0.0;
+            }
+            return;
+        }
+
+        for (int i = 0; i < _speeds.length; i++) {
+            double moduleVx = _vx - _omega * _moduleY[i];
+            double moduleVy = _vy + _omega * _moduleX[i];
+            _speeds[i] = Math.hypot(moduleVx, moduleVy);
+            if (_speeds[i] > 1e-6) {
+                _angles[i] = Math.atan2(moduleVy, moduleVx);
+            }
+        }
+    }
+
+    /**
+     * Converts module speeds and angles into robot-relative chassis speeds, writing the result into the
+     * provided array instead of allocating a {@code ChassisSpeeds}. Like WPILib's
+     * {@code SwerveDriveKinematics.toChassisSpeeds} this is the least squares fit over all modules: the
+     * rotation rate comes from each module's velocity about the modules' centroid, and the translation is
+     * the mean module velocity corrected for that rotation.
+     * @param _speeds The speed of each module (in meters per second).
+     * @param _angles The angle of each module (in radians).
+     * @param _moduleX The forward offset of each module from the center of the robot (in meters).
+     * @param _moduleY The leftward offset of each module from the center of the robot (in meters).
+     * @param _result Receives the forward speed, leftward speed (in meters per second) and counter-clockwise
+     * rotation rate (in radians per second) of the robot, in that order.
+     */
+    public static void toChassisSpeeds(
+            double[] _speeds, double[] _angles, double[] _moduleX, double[] _moduleY, double[] _result) {
+        int count = _speeds.length;
+        double centerX = 0.0;
+        double centerY = 0.0;
+        double meanVx = 0.0;
+        double meanVy = 0.0;
+        for (int i = 0; i < count; i++) {
+            centerX += _moduleX[i] / count;
+            centerY += _moduleY[i] / count;
+            meanVx += _speeds[i] * Math.cos(_angles[i]) / count;
+            meanVy += _speeds[i] * Math.sin(_angles[i]) / count;
+        }
+
+        double numerator = 0.0;
+        double denominator = 0.0;
+        for (int i = 0; i < count; i++) {
+            double dx = _moduleX[i] - centerX;
+            double dy = _moduleY[i] - centerY;
+            double vx = _speeds[i] * Math.cos(_angles[i]);
+            double vy = _speeds[i] * Math.sin(_angles[i]);
+            numerator += dx * vy - dy * vx;
+            denominator += dx * dx + dy * dy;
+        }
+        double omega = denominator > 0.0 ? numerator / denominator : 0.0;
+
+        _result[0] = meanVx + omega * centerY;
+        _result[1] = meanVy - omega * centerX;
+        _result[2] = omega;
+    }
+
+    /**
+     * Scales module speeds down in place so that none of them exceed the attainable maximum, keeping the
+     * ratio between the modules the same. Matches WPILib's {@code SwerveDriveKinematics.desaturateWheelSpeeds}.
+     * @param _speeds The speed of each module (in meters per second). Modified in place.
+     * @param _maxSpeed The maximum attainable module speed (in meters per second).
+     */
+    public static void desaturateWheelSpeeds(double[] _speeds, double _maxSpeed) {
+        double realMaxSpeed = 0.0;
+        for (double speed : _speeds) {
+            realMaxSpeed = Math.max(realMaxSpeed, Math.abs(speed));
+        }
+        if (realMaxSpeed > _maxSpeed) {
+            for (int i = 0; i < _speeds.length; i++) {
+                _speeds[i] = _speeds[i] / realMaxSpeed * _maxSpeed;
+            }
+        }
+    }
 }
@@ -0,0 +1,327 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.auto.NamedCommands;
+import com.pathplanner.lib.commands.PathPlannerAuto;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.util.PathPlannerLogging;
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.WrapperCommand;
+import frc.robot.commands.CommandBuilder;
+import frc.robot.subsystems.SwerveDrive;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs PathPlanner autos against the simulated robot, on simulated time, and reports how long each one
+ * takes. Each auto runs as the same {@link PathPlannerAuto} the robot schedules. The report gives the total
+ * duration; when every path and every named command started and how long it took, including named
+ * commands run from event markers; how closely the robot tracked the paths; how far the final pose ended
+ * up from the end of the last path; and how much of the auto was spent outside of paths, in waits and
+ * named commands. The tracking error makes it the place to compare changes to the module control, such as
+ * the options in {@code ModuleConstants}.
+ *
+ * <p>Paths are timed from PathPlanner's active path logging, and named commands by registering each one
+ * wrapped in a command that times it.
+ */
+final class AutoRegression {
+    private static final double kLoopSeconds = 0.02;
+    private static final double kAutoPeriodSeconds = 15.0;
+    // How long to keep stepping an auto that hasn't finished before giving up on it
+    private static final double kGiveUpSeconds = 30.0;
+    // How long to sit disabled between autos, so the simulated modules come to rest
+    private static final double kSettleSeconds = 1.0;
+
+    /** A path or named command in an auto, and when it ran. */
+    private static final class Segment {
+        final String type;
+        final String name;
+        final double start;
+        double end = Double.NaN;
+
+        Segment(String type, String name) {
+            this.type = type;
+            this.name = name;
+            start = Timer.getFPGATimestamp();
+        }
+
+        double getSeconds() {
+            return Double.isNaN(end) ? 0.0 : end - start;
+        }
+    }
+
+    /** A registered named command, wrapped so every run of it is recorded as a segment. */
+    private static final class TimedCommand extends WrapperCommand {
+        private Segment segment;
+
+        TimedCommand(Command command) {
+            super(command);
+        }
+
+        @Override
+        public void initialize() {
+            segment = new Segment("named", getName());
+            s_segments.add(segment);
+            super.initialize();
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            super.end(interrupted);
+            segment.end = Timer.getFPGATimestamp();
+        }
+    }
+
+    /** How far the robot was from where the path follower wanted it, over one auto. */
+    private static final class TrackingError {
+        double sumSquared = 0.0;
+        double max = 0.0;
+        int count = 0;
+
+        void add(double error) {
+            sumSquared += error * error;
+            max = Math.max(max, error);
+            count++;
+        }
+
+        double getRms() {
+            return count == 0 ? 0.0 : Math.sqrt(sumSquared / count);
+        }
+    }
+
+    /** How one auto went. */
+    static final class Result {
+        private final boolean finished;
+        private final double durationSeconds;
+        private final String report;
+
+        private Result(boolean finished, double durationSeconds, String report) {
+            this.finished = finished;
+            this.durationSeconds = durationSeconds;
+            this.report = report;
+        }
+
+        /** Returns whether the auto finished inside the autonomous period. */
+        boolean isWithinAutoPeriod() {
+            return finished && durationSeconds <= kAutoPeriodSeconds;
+        }
+
+        double getDurationSeconds() {
+            return durationSeconds;
+        }
+
+        /** Returns the auto's report: its segments and their durations, the tracking error and final pose. */
+        String getReport() {
+            return report;
+        }
+    }
+
+    // What the auto that is running has done so far, filled in by the logging callbacks and timed commands
+    private static TrackingError s_trackingError = new TrackingError();
+    private static List<Segment> s_segments = new ArrayList<>();
+    private static List<String> s_pathNames = new ArrayList<>();
+    private static int s_pathIndex = 0;
+    private static Segment s_activePath;
+    private static SwerveDrive s_drive;
+
+    private AutoRegression() {}
+
+    /**
+     * Sets up the simulated robot the autos run on: the HAL, simulated time, the driver station, and the
+     * same subsystems and named commands the robot builds, without the cameras and controllers. Only the
+     * first call does anything.
+     */
+    static synchronized void initialize() {
+        if (s_drive != null) {
+            return;
+        }
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+        SimHooks.pauseTiming();
+        DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setAutonomous(true);
+        setEnabled(false);
+
+        CommandBuilder commands = new CommandBuilder();
+        for (Map.Entry<String, Command> entry : commands.namedCommands().getCommands().entrySet()) {
+            NamedCommands.registerCommand(entry.getKey(), new TimedCommand(entry.getValue()));
+        }
+        SwerveDrive drive = commands.getSwerveDrive();
+        // The path follower reports its target pose each loop, compared here against the pose it steers from.
+        // It also reports the path it is following when it starts one, and an empty path when it finishes.
+        PathPlannerLogging.setLogTargetPoseCallback(target ->
+                s_trackingError.add(drive.getPose().getTranslation().getDistance(target.getTranslation())));
+        PathPlannerLogging.setLogActivePathCallback(AutoRegression::activePathChanged);
+        s_drive = drive;
+    }
+
+    /** Returns the names of the autos in the deploy directory, in order. */
+    static List<String> getAutoNames() {
+        File[] autoFiles = getAutosDirectory().listFiles((dir, name) -> name.endsWith(".auto"));
+        List<String> names = new ArrayList<>();
+        if (autoFiles != null) {
+            for (File autoFile : autoFiles) {
+                names.add(autoFile.getName().replaceFirst("\\.auto$", ""));
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Runs one auto, then leaves the robot disabled long enough for the simulated modules to come to rest.
+     *
+     * @param name The auto's name, without the extension.
+     * @return How it went.
+     * @throws IOException If the auto file can't be read.
+     */
+    static Result runAuto(String name) throws IOException {
+        initialize();
+        JsonNode command = new ObjectMapper()
+                .readTree(new File(getAutosDirectory(), name + ".auto"))
+                .get("command");
+        // PathPlanner resets the pose to the auto's starting pose itself, as it does on the robot
+        Command autoCommand = new PathPlannerAuto(name);
+
+        s_trackingError = new TrackingError();
+        s_segments = new ArrayList<>();
+        s_pathNames = new ArrayList<>();
+        collectPathNames(command, s_pathNames);
+        s_pathIndex = 0;
+        s_activePath = null;
+
+        setEnabled(true);
+        double start = Timer.getFPGATimestamp();
+        autoCommand.schedule();
+        while (autoCommand.isScheduled() && Timer.getFPGATimestamp() - start < kGiveUpSeconds) {
+            step();
+        }
+        double duration = Timer.getFPGATimestamp() - start;
+        boolean finished = !autoCommand.isScheduled();
+        autoCommand.cancel();
+        Pose2d finalPose = s_drive.getPose();
+
+        setEnabled(false);
+        for (double t = 0; t < kSettleSeconds; t += kLoopSeconds) {
+            step();
+        }
+
+        String report =
+                report(name, start, duration, finished, finalPose, getExpectedEndPose(s_pathNames), s_trackingError);
+        return new Result(finished, duration, report);
+    }
+
+    private static File getAutosDirectory() {
+        return new File(Filesystem.getDeployDirectory(), "pathplanner/autos");
+    }
+
+    /** Starts a path segment when the follower starts a path, and ends it when the follower finishes. */
+    private static void activePathChanged(List<Pose2d> poses) {
+        if (s_activePath != null) {
+            s_activePath.end = Timer.getFPGATimestamp();
+            s_activePath = null;
+        }
+        if (poses != null && !poses.isEmpty()) {
+            // The follower doesn't say which path it is on, so take them in the order the auto lists them
+            String name = s_pathIndex < s_pathNames.size() ? s_pathNames.get(s_pathIndex) : "unknown";
+            s_pathIndex++;
+            s_activePath = new Segment("path", name);
+            s_segments.add(s_activePath);
+        }
+    }
+
+    private static String report(
+            String name,
+            double start,
+            double duration,
+            boolean finished,
+            Pose2d finalPose,
+            Pose2d expected,
+            TrackingError tracking) {
+        double pathSeconds = 0.0;
+        StringBuilder summary = new StringBuilder(String.format("%s%n", name));
+        for (Segment segment : s_segments) {
+            summary.append(String.format(
+                    "  %6.2f s  %-6s %-40s %6.2f s%n",
+                    segment.start - start,
+                    segment.type,
+                    segment.name,
+                    segment.getSeconds()));
+            if ("path".equals(segment.type)) {
+                pathSeconds += segment.getSeconds();
+            }
+        }
+
+        String status;
+        if (!finished) {
+            status = String.format("DID NOT FINISH within %.0f s", kGiveUpSeconds);
+        } else if (duration > kAutoPeriodSeconds) {
+            status = String.format("OVER the %.0f s autonomous period", kAutoPeriodSeconds);
+        } else {
+            status = String.format("%.2f s to spare", kAutoPeriodSeconds - duration);
+        }
+        summary.append(String.format("  Total %.2f s, %s%n", duration, status));
+        summary.append(String.format("  Outside paths %.2f s (waits and named commands)%n", duration - pathSeconds));
+        if (tracking.count > 0) {
+            summary.append(String.format(
+                    "  Path tracking error %.3f m RMS, %.3f m max%n", tracking.getRms(), tracking.max));
+        }
+        if (expected != null) {
+            summary.append(String.format(
+                    "  Final pose error %.3f m, %.1f deg%n",
+                    finalPose.getTranslation().getDistance(expected.getTranslation()),
+                    finalPose.getRotation().minus(expected.getRotation()).getDegrees()));
+        }
+        return summary.toString();
+    }
+
+    /** Collects the names of the paths in an auto, in the order they appear in it. */
+    private static void collectPathNames(JsonNode command, List<String> names) {
+        if ("path".equals(command.path("type").asText())) {
+            names.add(command.path("data").path("pathName").asText());
+        }
+        for (JsonNode child : command.path("data").path("commands")) {
+            collectPathNames(child, names);
+        }
+    }
+
+    /** Returns where the last path in the auto ends, or null if it has no paths. */
+    private static Pose2d getExpectedEndPose(List<String> pathNames) {
+        if (pathNames.isEmpty()) {
+            return null;
+        }
+        PathPlannerPath path = PathPlannerPath.fromPathFile(pathNames.get(pathNames.size() - 1));
+        Translation2d end = path.getPoint(path.numPoints() - 1).position;
+        return new Pose2d(end, path.getGoalEndState().getRotation());
+    }
+
+    private static void setEnabled(boolean enabled) {
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+    }
+
+    /** Runs one robot loop and advances simulated time to the next. */
+    private static void step() {
+        DriverStation.refreshData();
+        CommandScheduler.getInstance().run();
+        SimHooks.stepTiming(kLoopSeconds);
+    }
+}
@@ -0,0 +1,38 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Runs every PathPlanner auto on the simulated robot through {@link AutoRegression}, one test per auto, and
+ * fails any that doesn't finish inside the autonomous period. Each auto's report is printed; run just this
+ * class with {@code ./gradlew test --tests frc.robot.AutoRegressionTest -i} to see them.
+ */
+class AutoRegressionTest {
+    @AfterAll
+    static void resumeTiming() {
+        // The regression runs on paused simulated time, which the rest of the tests in this JVM don't expect
+        CommandScheduler.getInstance().cancelAll();
+        SimHooks.resumeTiming();
+    }
+
+    @TestFactory
+    Stream<DynamicTest> autosFinishInsideTheAutonomousPeriod() {
+        List<String> names = AutoRegression.getAutoNames();
+        assertFalse(names.isEmpty(), "no autos in the deploy directory");
+        return names.stream().map(name -> DynamicTest.dynamicTest(name, () -> {
+            AutoRegression.Result result = AutoRegression.runAuto(name);
+            System.out.println(result.getReport());
+            assertTrue(result.isWithinAutoPeriod(), result.getReport());
+        }));
+    }
+}
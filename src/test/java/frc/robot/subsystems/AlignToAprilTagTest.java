@@ -0,0 +1,144 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.AimingConstants;
+import frc.robot.Constants.VisionConstants;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Turns the simulated robot to face the blue speaker's centre tag with {@link SwerveDrive#alignToAprilTag}
+ * and compares it with a proportional loop on the camera's tx at the same gain, the usual Limelight
+ * alignment. Both see the tag through the simulated camera, with its latency.
+ */
+class AlignToAprilTagTest {
+    private static final double LOOP_PERIOD = 0.02;
+    private static final double RUN_SECONDS = 2.0;
+    private static final int SPEAKER_CENTER_TAG = 7;
+    // The robot starts straight out from the tag, turned this far to the left of it
+    private static final double START_DISTANCE = 3.0;
+    private static final double START_OFFSET = Math.toRadians(20);
+
+    /** How the heading error to the tag went over one run. */
+    private record Response(double settleSeconds, double overshootRadians, double finalErrorRadians) {}
+
+    @BeforeAll
+    static void enable() {
+        assertTrue(HAL.initialize(500, 0));
+        SimHooks.pauseTiming();
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+    }
+
+    @AfterEach
+    void removeDrive() {
+        CommandScheduler.getInstance().cancelAll();
+        CommandScheduler.getInstance().unregisterAllSubsystems();
+    }
+
+    @AfterAll
+    static void disable() {
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+        SimHooks.resumeTiming();
+    }
+
+    /** Creates a simulated drive in front of the speaker, facing to the left of its centre tag. */
+    private static SwerveDrive createDrive() {
+        Pose2d tag = AprilTagFields.k2024Crescendo
+                .loadAprilTagLayoutField()
+                .getTagPose(SPEAKER_CENTER_TAG)
+                .orElseThrow()
+                .toPose2d();
+        SwerveDrive drive = SwerveDrive.createSim();
+        drive.resetOdometry(
+                new Pose2d(tag.getX() + START_DISTANCE, tag.getY(), new Rotation2d(Math.PI - START_OFFSET)));
+        return drive;
+    }
+
+    /**
+     * Runs the robot loop, calling the controller after the scheduler each loop, and measures the heading
+     * error to the tag: where it ends up, how far past the tag it swings, and when it last comes within
+     * the alignment tolerance.
+     */
+    private static Response run(SwerveDrive drive, Consumer<SwerveDrive> controller) {
+        double overshoot = 0.0;
+        double settleTime = Double.POSITIVE_INFINITY;
+        double error = 0.0;
+        int loops = (int) Math.round(RUN_SECONDS / LOOP_PERIOD);
+        for (int loop = 0; loop < loops; loop++) {
+            DriverStation.refreshData();
+            CommandScheduler.getInstance().run();
+            controller.accept(drive);
+            SimHooks.stepTiming(LOOP_PERIOD);
+
+            // Facing the tag is facing -x; the robot starts on the negative side of that
+            error = MathUtil.angleModulus(drive.getPose().getRotation().getRadians() - Math.PI);
+            overshoot = Math.max(overshoot, error);
+            if (Math.abs(error) > VisionConstants.kAlignToleranceRadians) {
+                settleTime = Double.POSITIVE_INFINITY;
+            } else if (Double.isInfinite(settleTime)) {
+                settleTime = (loop + 1) * LOOP_PERIOD;
+            }
+        }
+        return new Response(settleTime, overshoot, error);
+    }
+
+    /** Aligns with the drive's own command. */
+    private static Response runAlignCommand() {
+        SwerveDrive drive = createDrive();
+        Command align = drive.alignToAprilTag("Speaker");
+        align.schedule();
+        return run(drive, d -> {});
+    }
+
+    /** Aligns by turning at a rate proportional to the latest tx, with no latency compensation or profile. */
+    private static Response runProportionalOnTx() {
+        SwerveDrive drive = createDrive();
+        VisionIOSim camera = new VisionIOSim();
+        camera.setPoseSupplier(drive::getPose);
+        camera.setPipelineIndex(VisionConstants.kPipelineIndices.get("Speaker"));
+        VisionIO.VisionIOInputs inputs = new VisionIO.VisionIOInputs();
+        return run(drive, d -> {
+            camera.updateInputs(inputs);
+            // tx is positive when the target is to the right, so turn clockwise towards it
+            double omega = inputs.frame.hasTarget ? -AimingConstants.kHeadingP * Math.toRadians(inputs.frame.tx) : 0;
+            d.driveRobotRelative(new ChassisSpeeds(0.0, 0.0, omega));
+        });
+    }
+
+    @Test
+    void alignsWithoutOvershoot() {
+        Response align = runAlignCommand();
+
+        assertTrue(Math.abs(align.finalErrorRadians()) <= VisionConstants.kAlignToleranceRadians, align.toString());
+        assertTrue(align.overshootRadians() <= VisionConstants.kAlignToleranceRadians, align.toString());
+        assertTrue(align.settleSeconds() < 1.0, align.toString());
+    }
+
+    @Test
+    void settlesNoLaterThanProportionalOnTx() {
+        Response align = runAlignCommand();
+        Response baseline = runProportionalOnTx();
+
+        assertTrue(align.settleSeconds() <= baseline.settleSeconds(), align + " vs " + baseline);
+    }
+}
@@ -0,0 +1,246 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.util.datalog.BooleanLogEntry;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes drive input logs in the format {@link DriveInputsLog} records, replays them through the pose
+ * estimator, and checks the odometry, pose resets, the latency-compensated vision fusion, its outlier
+ * rejection and recovery from a pose that is far off.
+ */
+class DriveReplayTest {
+    private static final double LOOP_PERIOD = 0.02;
+    private static final double START_TIME = 10.0;
+    private static final int LOOPS = 100;
+    // Vision frames start arriving this many loops in
+    private static final int FIRST_FRAME_LOOP = 10;
+    private static final double PIPELINE_LATENCY_MS = 20.0;
+    private static final double CAPTURE_LATENCY_MS = 10.0;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    /** What the camera reports, given when the frame was captured. */
+    private interface Camera {
+        double[] botpose(double captureTime);
+    }
+
+    /**
+     * Writes a log of the robot driving straight forward at a constant speed, sampled twice a loop. The
+     * first loop has no samples, so the estimator starts from the first loop's module positions.
+     *
+     * @param speed  The forward speed, in meters per second.
+     * @param camera What every vision frame reports, or null for no camera.
+     */
+    private String writeLog(String name, double speed, Camera camera) {
+        return writeLog(name, speed, camera, -1, null);
+    }
+
+    /**
+     * Writes a log like {@link #writeLog(String, double, Camera)}, with the pose reset part way through.
+     *
+     * @param resetLoop The loop after which the pose is reset, as a command would between two loops.
+     * @param resetPose The pose it is reset to.
+     */
+    private String writeLog(String name, double speed, Camera camera, int resetLoop, Pose2d resetPose) {
+        DataLog log = new DataLog(tempDir.toString(), name);
+        DoubleLogEntry loopEntry = new DoubleLogEntry(log, DriveInputsLog.kLoop);
+        DoubleArrayLogEntry timestamps = new DoubleArrayLogEntry(log, DriveInputsLog.kOdometryTimestamps);
+        DoubleArrayLogEntry distances = new DoubleArrayLogEntry(log, DriveInputsLog.kOdometryDistances);
+        DoubleArrayLogEntry angles = new DoubleArrayLogEntry(log, DriveInputsLog.kOdometryAngles);
+        DoubleArrayLogEntry yaws = new DoubleArrayLogEntry(log, DriveInputsLog.kOdometryYaws);
+        DoubleArrayLogEntry positions = new DoubleArrayLogEntry(log, DriveInputsLog.kModulePositions);
+        DoubleArrayLogEntry velocities = new DoubleArrayLogEntry(log, DriveInputsLog.kModuleVelocities);
+        DoubleArrayLogEntry moduleAngles = new DoubleArrayLogEntry(log, DriveInputsLog.kModuleAngles);
+        BooleanLogEntry connected = new BooleanLogEntry(log, DriveInputsLog.kGyroConnected);
+        DoubleLogEntry yaw = new DoubleLogEntry(log, DriveInputsLog.kGyroYaw);
+        DoubleLogEntry yawRate = new DoubleLogEntry(log, DriveInputsLog.kGyroYawRate);
+        DoubleArrayLogEntry frame = new DoubleArrayLogEntry(log, DriveInputsLog.kVisionFrame);
+        DoubleArrayLogEntry frameBotpose = new DoubleArrayLogEntry(log, DriveInputsLog.kVisionBotpose);
+        DoubleArrayLogEntry reset = new DoubleArrayLogEntry(log, DriveInputsLog.kResetPose);
+
+        for (int loop = 0; loop < LOOPS; loop++) {
+            double time = START_TIME + loop * LOOP_PERIOD;
+            loopEntry.append(time);
+
+            int sampleCount = loop == 0 ? 0 : 2;
+            double[] sampleTimes = new double[sampleCount];
+            double[] sampleDistances = new double[sampleCount * 4];
+            for (int i = 0; i < sampleCount; i++) {
+                sampleTimes[i] = time - (sampleCount - 1 - i) * LOOP_PERIOD / sampleCount;
+                for (int module = 0; module < 4; module++) {
+                    sampleDistances[i * 4 + module] = speed * (sampleTimes[i] - START_TIME);
+                }
+            }
+            timestamps.append(sampleTimes);
+            distances.append(sampleDistances);
+            angles.append(new double[sampleCount * 4]);
+            yaws.append(new double[sampleCount]);
+
+            double distance = speed * (time - START_TIME);
+            positions.append(new double[] {distance, distance, distance, distance});
+            velocities.append(new double[] {speed, speed, speed, speed});
+            moduleAngles.append(new double[4]);
+            connected.append(true);
+            yaw.append(0.0);
+            yawRate.append(0.0);
+
+            if (camera != null && loop >= FIRST_FRAME_LOOP) {
+                // heartbeat, received time, has target, tx, ty, ta, tag id, pipeline and capture latency
+                frame.append(
+                        new double[] {loop, time, 1.0, 0.0, 0.0, 1.0, 7, PIPELINE_LATENCY_MS, CAPTURE_LATENCY_MS});
+                frameBotpose.append(camera.botpose(time - (PIPELINE_LATENCY_MS + CAPTURE_LATENCY_MS) / 1000.0));
+            }
+            if (loop == resetLoop) {
+                reset.append(new double[] {
+                    time + LOOP_PERIOD / 4, resetPose.getX(), resetPose.getY(), resetPose.getRotation().getRadians()
+                });
+            }
+        }
+        log.close();
+        return tempDir.resolve(name).toString();
+    }
+
+    /** Replays a log through a fresh drive and returns where it ends up. */
+    private static Pose2d replay(String path) throws IOException {
+        DriveReplaySource source = new DriveReplaySource(path);
+        SwerveDrive drive = SwerveDrive.createReplay(source);
+        do {
+            source.applyEvents(drive);
+            drive.periodic();
+        } while (source.advance());
+        return drive.getPose();
+    }
+
+    /** A two tag botpose in the Limelight's format: pose, latency, tag count, span, distance and area. */
+    private static double[] botpose(double x, double y) {
+        return new double[] {x, y, 0.0, 0.0, 0.0, 0.0, CAPTURE_LATENCY_MS, 2, 1.0, 1.0, 1.0};
+    }
+
+    /** A single tag botpose, one meter from the tag. */
+    private static double[] singleTagBotpose(double x, double y) {
+        return new double[] {x, y, 0.0, 0.0, 0.0, 0.0, CAPTURE_LATENCY_MS, 1, 0.0, 1.0, 1.0};
+    }
+
+    @Test
+    void odometryFollowsTheRecordedWheels() throws IOException {
+        Pose2d pose = replay(writeLog("odometry.wpilog", 1.5, null));
+
+        assertEquals(1.5 * (LOOPS - 1) * LOOP_PERIOD, pose.getX(), 1e-6);
+        assertEquals(0.0, pose.getY(), 1e-6);
+        assertEquals(0.0, pose.getRotation().getRadians(), 1e-9);
+    }
+
+    @Test
+    void visionPullsTheEstimateTowardsTheTags() throws IOException {
+        Pose2d pose = replay(writeLog("vision.wpilog", 0.0, captureTime -> botpose(3.0, 2.0)));
+
+        assertEquals(3.0, pose.getX(), 0.05);
+        assertEquals(2.0, pose.getY(), 0.05);
+        // Heading is left to the gyro
+        assertEquals(0.0, pose.getRotation().getRadians(), 1e-3);
+    }
+
+    @Test
+    void visionIsAppliedAtTheCaptureTime() throws IOException {
+        // The camera reports where the robot really was when each frame was captured, offset from where
+        // the odometry started. Applied at the capture time the estimate settles on the true pose; applied
+        // when the frame arrived it would trail by the latency times the speed, 6 cm here.
+        double speed = 2.0;
+        double startX = 2.0;
+        double startY = 1.0;
+        Pose2d pose = replay(writeLog(
+                "latency.wpilog",
+                speed,
+                captureTime -> botpose(startX + speed * (captureTime - START_TIME), startY)));
+
+        double finalTime = START_TIME + (LOOPS - 1) * LOOP_PERIOD;
+        assertEquals(startX + speed * (finalTime - START_TIME), pose.getX(), 0.02);
+        assertEquals(startY, pose.getY(), 0.02);
+    }
+
+    @Test
+    void resetsAreReplayedBetweenTheSameLoops() throws IOException {
+        int resetLoop = LOOPS / 2;
+        Pose2d resetPose = new Pose2d(5.0, 3.0, new Rotation2d());
+        Pose2d pose = replay(writeLog("reset.wpilog", 1.0, null, resetLoop, resetPose));
+
+        // The reset takes the module positions of the loop before it, and odometry carries on from there
+        assertEquals(5.0 + (LOOPS - 1 - resetLoop) * LOOP_PERIOD, pose.getX(), 1e-6);
+        assertEquals(3.0, pose.getY(), 1e-6);
+    }
+
+    @Test
+    void offFieldVisionIsRejected() throws IOException {
+        Pose2d pose = replay(writeLog("off-field.wpilog", 0.0, captureTime -> botpose(-3.0, 2.0)));
+
+        assertEquals(0.0, pose.getX(), 1e-9);
+        assertEquals(0.0, pose.getY(), 1e-9);
+    }
+
+    @Test
+    void singleTagOutliersAreRejectedAfterAReset() throws IOException {
+        // A single tag two meters from a freshly reset pose, seen only while the reset is still trusted
+        double resetTime = START_TIME + 5 * LOOP_PERIOD;
+        Pose2d pose = replay(writeLog(
+                "single-tag-outlier.wpilog",
+                0.0,
+                captureTime -> captureTime < resetTime + 0.9 ? singleTagBotpose(2.0, 0.0) : new double[0],
+                5,
+                new Pose2d()));
+
+        assertEquals(0.0, pose.getX(), 1e-9);
+        assertEquals(0.0, pose.getY(), 1e-9);
+    }
+
+    @Test
+    void singleTagRecoversAPoseThatIsFarOff() throws IOException {
+        // With nothing confirming the odometry, a single tag far from it is still used
+        Pose2d pose = replay(writeLog("single-tag-recovery.wpilog", 0.0, captureTime -> singleTagBotpose(3.0, 2.0)));
+
+        assertEquals(3.0, pose.getX(), 0.05);
+        assertEquals(2.0, pose.getY(), 0.05);
+    }
+
+    @Test
+    void singleTagRecoversOnceAResetIsNoLongerTrusted() throws IOException {
+        // A reset to the wrong pose: the tag is ignored at first, then pulls the pose back once the reset
+        // is old enough that the odometry may have drifted
+        Pose2d pose = replay(writeLog(
+                "single-tag-stale-reset.wpilog", 0.0, captureTime -> singleTagBotpose(2.0, 0.0), 5, new Pose2d()));
+
+        assertEquals(2.0, pose.getX(), 0.05);
+        assertEquals(0.0, pose.getY(), 0.05);
+    }
+
+    @Test
+    void replayIsDeterministic() throws IOException {
+        String path = writeLog("deterministic.wpilog", 0.8, captureTime -> botpose(1.0, 1.0));
+
+        Pose2d first = replay(path);
+        Pose2d second = replay(path);
+
+        assertEquals(first.getX(), second.getX(), 0.0);
+        assertEquals(first.getY(), second.getY(), 0.0);
+        assertEquals(first.getRotation().getRadians(), second.getRotation().getRadians(), 0.0);
+    }
+}
@@ -0,0 +1,135 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.Constants.ModuleConstants;
+import java.util.function.DoubleUnaryOperator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the module control options on a single simulated module following a commanded angle: the
+ * steering feedforward, with and without its rate limit, and cosine scaling of the drive speed. A ramp
+ * stands in for the robot turning while it drives, which the feedforward is for; a series of steps stands
+ * in for the driver flicking the stick, where the commanded rate is meaningless and a wheel driving while
+ * it turns scrubs sideways. Their effect on following whole paths is measured by the auto regression.
+ */
+class ModuleTrackingTest {
+    private static final double LOOP_PERIOD = 0.02;
+    private static final double RUN_SECONDS = 2.0;
+    private static final double RAMP_RATE = 6.0; // radians per second
+    private static final double[] STEPS = {Math.PI / 2, 0.0, -Math.PI / 3, Math.PI / 4};
+    private static final double STEP_SECONDS = 0.5;
+
+    /**
+     * How closely a module followed a command over one run: the RMS steering error, the largest steering
+     * feedforward asked for, and how far the wheel drove across the commanded direction.
+     */
+    private record Tracking(double rmsError, double peakFeedforwardVolts, double scrubMeters) {}
+
+    @BeforeAll
+    static void enable() {
+        assertTrue(HAL.initialize(500, 0));
+        SimHooks.pauseTiming();
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+    }
+
+    @AfterAll
+    static void disable() {
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+        DriverStation.refreshData();
+        SimHooks.resumeTiming();
+    }
+
+    private static ModuleIOSim positionOnly() {
+        return new ModuleIOSim(true, false, false, ModuleConstants.kTurningFreeSpeedRadiansPerSecond);
+    }
+
+    private static ModuleIOSim unlimitedFeedforward() {
+        return new ModuleIOSim(true, true, false, Double.POSITIVE_INFINITY);
+    }
+
+    private static ModuleIOSim limitedFeedforward() {
+        return new ModuleIOSim(true, true, false, ModuleConstants.kTurningFreeSpeedRadiansPerSecond);
+    }
+
+    private static ModuleIOSim limitedFeedforwardWithoutCosineScaling() {
+        return new ModuleIOSim(false, true, false, ModuleConstants.kTurningFreeSpeedRadiansPerSecond);
+    }
+
+    /** Commands the module's angle every loop as the robot would, and measures how well it follows. */
+    private static Tracking run(ModuleIOSim module, DoubleUnaryOperator angleAt) {
+        ModuleIO.ModuleIOInputs inputs = new ModuleIO.ModuleIOInputs();
+        module.updateInputs(inputs);
+        double sumSquared = 0.0;
+        double peakFeedforward = 0.0;
+        double scrub = 0.0;
+        int loops = (int) Math.round(RUN_SECONDS / LOOP_PERIOD);
+        for (int loop = 0; loop < loops; loop++) {
+            double command = MathUtil.angleModulus(angleAt.applyAsDouble(loop * LOOP_PERIOD));
+            module.setDesiredState(1.0, command);
+            peakFeedforward = Math.max(peakFeedforward, Math.abs(module.getTurnFeedforwardVolts()));
+            SimHooks.stepTiming(LOOP_PERIOD);
+            module.updateInputs(inputs);
+            // The module may point either way round, so the error is modulo half a turn
+            double error = Math.IEEEremainder(command - inputs.angleRadians, Math.PI);
+            sumSquared += error * error;
+            scrub += Math.abs(inputs.driveVelocityMetersPerSecond * Math.sin(error)) * LOOP_PERIOD;
+        }
+        return new Tracking(Math.sqrt(sumSquared / loops), peakFeedforward, scrub);
+    }
+
+    private static double ramp(double t) {
+        return RAMP_RATE * t;
+    }
+
+    private static double steps(double t) {
+        return STEPS[(int) (t / STEP_SECONDS) % STEPS.length];
+    }
+
+    @Test
+    void feedforwardFollowsATurningCommand() {
+        Tracking positionOnly = run(positionOnly(), ModuleTrackingTest::ramp);
+        Tracking unlimited = run(unlimitedFeedforward(), ModuleTrackingTest::ramp);
+        Tracking limited = run(limitedFeedforward(), ModuleTrackingTest::ramp);
+
+        // Without a feedforward the position loop has to lag to make the voltage to keep turning
+        assertTrue(limited.rmsError() < 0.5 * positionOnly.rmsError(), limited + " vs " + positionOnly);
+        // A rate the module can follow is below the limit, so limiting it changes nothing
+        assertEquals(unlimited.rmsError(), limited.rmsError(), 1e-9);
+    }
+
+    @Test
+    void stepCommandsDontSpikeTheFeedforward() {
+        Tracking unlimited = run(unlimitedFeedforward(), ModuleTrackingTest::steps);
+        Tracking limited = run(limitedFeedforward(), ModuleTrackingTest::steps);
+
+        // A step divided by one loop asks for several times the battery voltage
+        assertTrue(unlimited.peakFeedforwardVolts() > 12.0, unlimited.toString());
+        assertTrue(limited.peakFeedforwardVolts() <= 12.0 + 1e-9, limited.toString());
+        // The output saturates either way, so limiting it doesn't slow the module down
+        assertTrue(limited.rmsError() <= unlimited.rmsError() + 1e-3, limited + " vs " + unlimited);
+    }
+
+    @Test
+    void cosineScalingCutsScrubWhileTurning() {
+        Tracking scaled = run(limitedFeedforward(), ModuleTrackingTest::steps);
+        Tracking unscaled = run(limitedFeedforwardWithoutCosineScaling(), ModuleTrackingTest::steps);
+
+        // The wheel holds back until it points the right way, instead of driving across the command
+        assertTrue(scaled.scrubMeters() < unscaled.scrubMeters(), scaled + " vs " + unscaled);
+        // Steering is unaffected by what the drive motor does
+        assertEquals(unscaled.rmsError(), scaled.rmsError(), 1e-9);
+    }
+}
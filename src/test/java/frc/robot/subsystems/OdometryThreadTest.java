@@ -0,0 +1,131 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.Constants.DriveConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the odometry thread against fake modules on simulated time, draining it every robot loop the way
+ * {@link SwerveDrive#periodic()} does, and checks it keeps the configured rate without dropping samples.
+ * Simulated time keeps the checks independent of how loaded the machine running them is; the thread's
+ * timing on the roboRIO is what its published rate and jitter statistics are for.
+ */
+class OdometryThreadTest {
+    private static final double LOOP_PERIOD_SECONDS = 0.02;
+    private static final int LOOPS = 50;
+
+    /** A module that counts how often it is read, so the test can see every sample was taken. */
+    private static class FakeModule implements ModuleIO {
+        volatile int reads = 0;
+
+        @Override
+        public double getDrivePositionMeters() {
+            return ++reads * 0.01;
+        }
+
+        @Override
+        public double getDriveVelocityMetersPerSecond() {
+            return 0.0;
+        }
+
+        @Override
+        public double getAngleRadians() {
+            return 0.0;
+        }
+    }
+
+    private OdometryThread thread;
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    @BeforeEach
+    void pauseTiming() {
+        SimHooks.pauseTiming();
+    }
+
+    @AfterEach
+    void stopThread() {
+        if (thread != null) {
+            thread.stop();
+        }
+        SimHooks.resumeTiming();
+    }
+
+    /** Advances simulated time one odometry period at a time, letting the notifier run after each step. */
+    private static void advance(double seconds) {
+        double period = 1.0 / DriveConstants.kOdometryFrequencyHz;
+        int steps = (int) Math.round(seconds / period);
+        for (int i = 0; i < steps; i++) {
+            SimHooks.stepTiming(period);
+        }
+    }
+
+    @Test
+    void samplesAtTheConfiguredRate() {
+        ModuleIO[] modules = {new FakeModule(), new FakeModule(), new FakeModule(), new FakeModule()};
+        thread = new OdometryThread(
+                modules,
+                new GyroIO() {},
+                DriveConstants.kOdometryFrequencyHz,
+                DriveConstants.kOdometryBufferSize);
+        OdometryIO.OdometryIOInputs inputs = new OdometryIO.OdometryIOInputs();
+
+        thread.start();
+        // Let the notifier settle, then start the statistics afresh
+        advance(0.1);
+        thread.updateInputs(inputs);
+        thread.publishStatistics();
+
+        int samples = 0;
+        double lastTimestamp = Double.NaN;
+        for (int loop = 0; loop < LOOPS; loop++) {
+            advance(LOOP_PERIOD_SECONDS);
+            thread.updateInputs(inputs);
+            for (int i = 0; i < inputs.sampleCount; i++) {
+                assertTrue(Double.isNaN(lastTimestamp) || inputs.timestamps[i] > lastTimestamp);
+                lastTimestamp = inputs.timestamps[i];
+            }
+            samples += inputs.sampleCount;
+        }
+        thread.publishStatistics();
+
+        double frequency = DriveConstants.kOdometryFrequencyHz;
+        double expectedSamples = LOOPS * LOOP_PERIOD_SECONDS * frequency;
+        assertEquals(frequency, thread.getRateHz(), 0.1 * frequency);
+        assertEquals(expectedSamples, samples, 0.2 * expectedSamples);
+        assertEquals(0, thread.getDroppedSamples());
+    }
+
+    @Test
+    void countsSamplesOverwrittenWhenNotDrained() {
+        ModuleIO[] modules = {new FakeModule(), new FakeModule(), new FakeModule(), new FakeModule()};
+        thread = new OdometryThread(modules, new GyroIO() {}, DriveConstants.kOdometryFrequencyHz, 4);
+        OdometryIO.OdometryIOInputs inputs = new OdometryIO.OdometryIOInputs();
+
+        thread.start();
+        // Ten periods without draining overflows a four sample buffer
+        advance(10 / DriveConstants.kOdometryFrequencyHz);
+        thread.stop();
+        thread.publishStatistics();
+        thread.updateInputs(inputs);
+
+        assertEquals(4, inputs.sampleCount);
+        assertTrue(thread.getDroppedSamples() > 0);
+        // The buffer keeps the newest samples, oldest first
+        for (int i = 1; i < inputs.sampleCount; i++) {
+            assertTrue(inputs.timestamps[i] > inputs.timestamps[i - 1]);
+            assertTrue(inputs.distances[i * 4] > inputs.distances[(i - 1) * 4]);
+        }
+    }
+}
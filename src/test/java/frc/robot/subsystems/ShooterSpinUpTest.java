@@ -0,0 +1,79 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.LinearFilter;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.Constants.ShooterConstants;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Spins up a simulated flywheel with the shooter's speed control, filter and at-speed check, and checks
+ * the speaker shot is ready before the shoot sequence gives up waiting and feeds anyway.
+ *
+ * <p>The flywheel is a CIM driving about 1e-3 kg m² at the motor, which reaches 95% of its loaded free
+ * speed in roughly the second the open loop shot used to wait. Friction costs it 0.2 V and the battery is
+ * taken to sag to 11.5 V while driving, so it can't reach the motor's free speed.
+ */
+class ShooterSpinUpTest {
+    private static final double LOOP_PERIOD = TimedRobot.kDefaultPeriod;
+    private static final int SUBSTEPS = 20;
+    private static final double MOMENT_OF_INERTIA = 1e-3; // kg m², at the motor
+    private static final double FRICTION_VOLTS = 0.2;
+    private static final double BATTERY_VOLTS = 11.5;
+    // How long CommandBuilder.shootSpeakerSequence waits for the shooter before feeding anyway
+    private static final double SPIN_UP_TIMEOUT = 1.0;
+
+    private static final DCMotor MOTOR = DCMotor.getCIM(1);
+
+    /**
+     * Runs the speed control from rest and returns how long the shooter took to report it was at speed.
+     *
+     * @param targetRpm The target motor speed, in RPM.
+     * @param seconds   How long to run for.
+     * @return The time it first reported being at speed, or infinity if it never did.
+     */
+    private static double timeToAtSpeed(double targetRpm, double seconds) {
+        LinearFilter filter = LinearFilter.singlePoleIIR(ShooterConstants.kVelocityFilterSeconds, LOOP_PERIOD);
+        int loopsToDebounce = (int) Math.ceil(ShooterConstants.kAtSpeedDebounceSeconds / LOOP_PERIOD);
+        double speed = 0.0; // radians per second
+        int loopsWithinTolerance = 0;
+
+        for (int loop = 0; loop * LOOP_PERIOD < seconds; loop++) {
+            double velocityRpm = filter.calculate(Units.radiansPerSecondToRotationsPerMinute(speed));
+            if (Math.abs(targetRpm - velocityRpm) <= ShooterConstants.kAtSpeedToleranceRpm) {
+                if (++loopsWithinTolerance > loopsToDebounce) {
+                    return loop * LOOP_PERIOD;
+                }
+            } else {
+                loopsWithinTolerance = 0;
+            }
+
+            // The controller assumes a full battery; the motor controller can only apply what is left of it
+            double volts = MathUtil.clamp(Shooter.calculateVolts(targetRpm, velocityRpm), 0.0, BATTERY_VOLTS);
+            for (int i = 0; i < SUBSTEPS; i++) {
+                double drivingVolts = volts - speed / MOTOR.KvRadPerSecPerVolt - (speed > 0 ? FRICTION_VOLTS : 0);
+                double torque = MOTOR.KtNMPerAmp * drivingVolts / MOTOR.rOhms;
+                speed += torque / MOMENT_OF_INERTIA * LOOP_PERIOD / SUBSTEPS;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Test
+    void speakerShotIsReadyBeforeTheSpinUpTimeout() {
+        double time = timeToAtSpeed(ShooterConstants.kShootSpeakerRpm, SPIN_UP_TIMEOUT);
+
+        assertTrue(time < SPIN_UP_TIMEOUT, "took " + time + " s");
+    }
+
+    @Test
+    void freeSpeedIsNeverReached() {
+        // Why the target isn't the free speed: the shooter would never report it was ready
+        assertTrue(Double.isInfinite(timeToAtSpeed(ShooterConstants.kFreeSpeedRpm, 5.0)));
+    }
+}
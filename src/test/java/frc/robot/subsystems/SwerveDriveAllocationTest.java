@@ -0,0 +1,99 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Counts the bytes the drive allocates on its per-loop paths once the JIT has warmed them up. Driving and
+ * a loop with no new odometry samples should allocate nothing; integrating samples goes through WPILib's
+ * pose estimator, which allocates internally, so that part isn't covered.
+ */
+class SwerveDriveAllocationTest {
+    private static final int WARMUP_CALLS = 20_000;
+    private static final int MEASURED_CALLS = 1_000;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** A module that holds whatever it was last commanded, so the measured speeds follow the commands. */
+    private static class FakeModule implements ModuleIO {
+        double speed = 0.0;
+        double angle = 0.0;
+
+        @Override
+        public double getDrivePositionMeters() {
+            return 0.0;
+        }
+
+        @Override
+        public double getDriveVelocityMetersPerSecond() {
+            return speed;
+        }
+
+        @Override
+        public double getAngleRadians() {
+            return angle;
+        }
+
+        @Override
+        public void setDesiredState(double speedMetersPerSecond, double angleRadians) {
+            speed = speedMetersPerSecond;
+            angle = angleRadians;
+        }
+    }
+
+    private static SwerveDrive drive;
+
+    @BeforeAll
+    static void createDrive() {
+        assertTrue(HAL.initialize(500, 0));
+        assertTrue(threads.isThreadAllocatedMemorySupported());
+        ModuleIO[] modules = {new FakeModule(), new FakeModule(), new FakeModule(), new FakeModule()};
+        drive = new SwerveDrive(modules, new GyroIO() {}, inputs -> inputs.sampleCount = 0, new VisionIO() {});
+    }
+
+    /** Runs the action enough times to be compiled, then returns the bytes a batch of calls allocated. */
+    private static long allocatedBytes(Runnable action) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            action.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            action.run();
+        }
+        long after = threads.getCurrentThreadAllocatedBytes();
+        // Reading the counter can itself allocate, so take off what an empty interval costs
+        long overhead = threads.getCurrentThreadAllocatedBytes();
+        overhead = threads.getCurrentThreadAllocatedBytes() - overhead;
+        return Math.max(after - before - overhead, 0);
+    }
+
+    @Test
+    void fieldRelativeDrivingDoesNotAllocate() {
+        int[] call = {0};
+        assertEquals(0, allocatedBytes(() -> {
+            double phase = 0.01 * call[0]++;
+            drive.drive(Math.cos(phase), Math.sin(phase), 0.3, true, false);
+        }));
+    }
+
+    @Test
+    void rateLimitedDrivingDoesNotAllocate() {
+        int[] call = {0};
+        assertEquals(0, allocatedBytes(() -> {
+            double phase = 0.01 * call[0]++;
+            drive.drive(Math.cos(phase), Math.sin(2 * phase), 0.5 * Math.sin(phase), true, true);
+        }));
+    }
+
+    @Test
+    void periodicWithoutSamplesDoesNotAllocate() {
+        assertEquals(0, allocatedBytes(drive::periodic));
+    }
+}
@@ -0,0 +1,122 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Injects edges on a simulated input and checks they are counted, timestamped and passed to the listeners. */
+class EdgeCaptureTest {
+    // Clear of the loader's switch, in case another test has built the robot in this JVM
+    private static final int CHANNEL = 9;
+    private static final long TIMEOUT_SECONDS = 2;
+
+    /** An edge as a listener saw it. */
+    private record Edge(boolean rising, double timestamp, Thread thread) {}
+
+    private final BlockingQueue<Edge> edges = new LinkedBlockingQueue<>();
+    private DigitalInput input;
+    private DIOSim sim;
+    private EdgeCapture capture;
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    @BeforeEach
+    void startCapture() {
+        input = new DigitalInput(CHANNEL);
+        sim = new DIOSim(input);
+        sim.setValue(false);
+        capture = new EdgeCapture(
+                input,
+                timestamp -> edges.add(new Edge(true, timestamp, Thread.currentThread())),
+                timestamp -> edges.add(new Edge(false, timestamp, Thread.currentThread())));
+    }
+
+    @AfterEach
+    void stopCapture() {
+        if (capture != null) {
+            capture.close();
+        }
+        input.close();
+    }
+
+    /** Sets the input and waits for the listener to see the edge it makes. */
+    private Edge inject(boolean value) throws InterruptedException {
+        sim.setValue(value);
+        Edge edge = edges.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(edge, "no edge after setting the input " + (value ? "high" : "low"));
+        return edge;
+    }
+
+    @Test
+    void edgesAreCountedAndTimestamped() throws InterruptedException {
+        assertTrue(Double.isNaN(capture.getLastRisingTimestamp()));
+        assertTrue(Double.isNaN(capture.getLastFallingTimestamp()));
+
+        double before = Timer.getFPGATimestamp();
+        Edge rising = inject(true);
+        double afterRising = Timer.getFPGATimestamp();
+        Edge falling = inject(false);
+        double afterFalling = Timer.getFPGATimestamp();
+
+        assertTrue(rising.rising());
+        assertEquals(1, capture.getRisingCount());
+        assertEquals(rising.timestamp(), capture.getLastRisingTimestamp());
+        assertTrue(before <= rising.timestamp() && rising.timestamp() <= afterRising);
+
+        assertFalse(falling.rising());
+        assertEquals(1, capture.getFallingCount());
+        assertEquals(falling.timestamp(), capture.getLastFallingTimestamp());
+        assertTrue(rising.timestamp() <= falling.timestamp() && falling.timestamp() <= afterFalling);
+    }
+
+    @Test
+    void everyEdgeIsSeenInOrder() throws InterruptedException {
+        int presses = 5;
+        for (int i = 0; i < presses; i++) {
+            assertTrue(inject(true).rising());
+            assertFalse(inject(false).rising());
+        }
+
+        assertEquals(presses, capture.getRisingCount());
+        assertEquals(presses, capture.getFallingCount());
+        assertTrue(capture.getLastRisingTimestamp() <= capture.getLastFallingTimestamp());
+        assertTrue(edges.isEmpty());
+    }
+
+    @Test
+    void listenersRunOnTheInterruptThread() throws InterruptedException {
+        Edge edge = inject(true);
+
+        assertNotEquals(Thread.currentThread(), edge.thread());
+    }
+
+    @Test
+    void closedCaptureSeesNoEdges() throws InterruptedException {
+        EdgeCapture closed = capture;
+        closed.close();
+        capture = null;
+        sim.setValue(true);
+
+        assertNull(edges.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, closed.getRisingCount());
+    }
+}
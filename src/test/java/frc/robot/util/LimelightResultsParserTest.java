@@ -0,0 +1,60 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import frc.robot.util.LimelightHelpers.LimelightTarget_Fiducial;
+import org.junit.jupiter.api.Test;
+
+/** Checks that the pooled fiducials the streaming parser reuses don't leak values between frames. */
+class LimelightResultsParserTest {
+    private static final String FULL_FIDUCIAL =
+            """
+            {"Results":{"Fiducial":[{"fID":4,"fam":"36H11C","t6c_ts":[1,2,3,4,5,6],"t6r_fs":[1,2,3,4,5,6],\
+            "t6r_ts":[1,2,3,4,5,6],"t6t_cs":[1,2,3,4,5,6],"t6t_rs":[1,2,3,4,5,6],\
+            "ta":0.5,"tx":-4.0,"txp":139.0,"ty":3.0,"typ":101.0,"ts":7.0}],"v":1}}
+            """;
+    private static final String BARE_FIDUCIAL =
+            """
+            {"Results":{"Fiducial":[{"fID":3}],"v":1}}
+            """;
+
+    @Test
+    void fieldsMissingFromAFrameAreCleared() {
+        LimelightResultsParser parser = new LimelightResultsParser(4);
+        parser.parse(FULL_FIDUCIAL);
+        LimelightTarget_Fiducial[] fiducials = parser.parse(BARE_FIDUCIAL).targetingResults.targets_Fiducials;
+
+        assertEquals(1, fiducials.length);
+        LimelightTarget_Fiducial fiducial = fiducials[0];
+        assertEquals(3, fiducial.fiducialID);
+        assertNull(fiducial.fiducialFamily);
+        assertEquals(0, fiducial.ta);
+        assertEquals(0, fiducial.tx);
+        assertEquals(0, fiducial.tx_pixels);
+        assertEquals(0, fiducial.ty);
+        assertEquals(0, fiducial.ty_pixels);
+        assertEquals(0, fiducial.ts);
+        double[] zero = new double[6];
+        assertArrayEquals(zero, fiducial.cameraPose_TargetSpace);
+        assertArrayEquals(zero, fiducial.robotPose_FieldSpace);
+        assertArrayEquals(zero, fiducial.robotPose_TargetSpace);
+        assertArrayEquals(zero, fiducial.targetPose_CameraSpace);
+        assertArrayEquals(zero, fiducial.targetPose_RobotSpace);
+    }
+
+    @Test
+    void repeatedFramesReuseTheFamily() {
+        LimelightResultsParser parser = new LimelightResultsParser(4);
+        String family = parser.parse(FULL_FIDUCIAL).targetingResults.targets_Fiducials[0].fiducialFamily;
+        LimelightTarget_Fiducial fiducial = parser.parse(FULL_FIDUCIAL).targetingResults.targets_Fiducials[0];
+
+        assertEquals("36H11C", fiducial.fiducialFamily);
+        // The same string, not just an equal one, so an unchanged family doesn't allocate
+        assertSame(family, fiducial.fiducialFamily);
+        assertEquals(-4.0, fiducial.tx);
+    }
+}
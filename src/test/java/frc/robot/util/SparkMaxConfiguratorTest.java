@@ -0,0 +1,165 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.revrobotics.REVLibError;
+import edu.wpi.first.hal.HAL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/** Injects CAN failures into the configurator's settings and checks how it retries, skips and burns. */
+class SparkMaxConfiguratorTest {
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** A controller parameter that can be told to fail its next writes, or to ignore them. */
+    private static class FakeParameter {
+        final double target;
+        double stored;
+        int writes = 0;
+        int failuresLeft = 0;
+        boolean ignoresWrites = false;
+
+        FakeParameter(double target, double stored) {
+            this.target = target;
+            this.stored = stored;
+        }
+
+        REVLibError write() {
+            writes++;
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                return REVLibError.kTimeout;
+            }
+            if (!ignoresWrites) {
+                stored = target;
+            }
+            return REVLibError.kOk;
+        }
+
+        SparkMaxConfigurator.Setting readable(String name) {
+            return new SparkMaxConfigurator.Setting(name, this::write, () -> stored == target);
+        }
+
+        SparkMaxConfigurator.Setting writeOnly(String name) {
+            return new SparkMaxConfigurator.Setting(name, this::write, null);
+        }
+    }
+
+    /** Counts calls to a controller-wide operation such as a factory reset. */
+    private static class Counter implements Supplier<REVLibError> {
+        int calls = 0;
+
+        @Override
+        public REVLibError get() {
+            calls++;
+            return REVLibError.kOk;
+        }
+    }
+
+    private final Counter factoryReset = new Counter();
+    private final Counter burnFlash = new Counter();
+    private final SparkMaxConfig config = new SparkMaxConfig().restoreFactoryDefaults().burnFlash();
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    private boolean apply(SparkMaxConfigurator.Setting... settings) {
+        return SparkMaxConfigurator.apply("test", config, List.of(settings), factoryReset, burnFlash);
+    }
+
+    @Test
+    void upToDateControllerIsNeitherResetNorBurned() {
+        FakeParameter p = new FakeParameter(0.1, 0.1);
+        FakeParameter currentLimit = new FakeParameter(40, 40);
+
+        assertTrue(apply(p.readable("P"), currentLimit.writeOnly("smart current limit")));
+        assertEquals(0, p.writes);
+        // Settings that can't be read back are written every time, but don't cause a burn on their own
+        assertEquals(1, currentLimit.writes);
+        assertEquals(0, factoryReset.calls);
+        assertEquals(0, burnFlash.calls);
+    }
+
+    @Test
+    void changedSettingIsResetWrittenAndBurned() {
+        FakeParameter p = new FakeParameter(0.1, 0.0);
+        FakeParameter d = new FakeParameter(0.0, 0.0);
+
+        assertTrue(apply(p.readable("P"), d.readable("D")));
+        assertEquals(1, p.writes);
+        assertEquals(0, d.writes);
+        assertEquals(1, factoryReset.calls);
+        assertEquals(1, burnFlash.calls);
+    }
+
+    @Test
+    void transientErrorsAreRetried() {
+        FakeParameter p = new FakeParameter(0.1, 0.0);
+        p.failuresLeft = MAX_ATTEMPTS - 1;
+
+        assertTrue(apply(p.readable("P")));
+        assertEquals(MAX_ATTEMPTS, p.writes);
+        assertEquals(0.1, p.stored);
+        assertEquals(1, burnFlash.calls);
+    }
+
+    @Test
+    void persistentErrorFailsWithoutBurning() {
+        FakeParameter p = new FakeParameter(0.1, 0.0);
+        FakeParameter d = new FakeParameter(0.2, 0.0);
+        p.failuresLeft = Integer.MAX_VALUE;
+
+        assertFalse(apply(p.readable("P"), d.readable("D")));
+        assertEquals(MAX_ATTEMPTS, p.writes);
+        // The rest of the settings are still applied
+        assertEquals(0.2, d.stored);
+        // Burning a partial configuration would make it stick through the next reboot
+        assertEquals(0, burnFlash.calls);
+    }
+
+    @Test
+    void readBackMismatchFails() {
+        FakeParameter p = new FakeParameter(0.1, 0.0);
+        p.ignoresWrites = true;
+
+        assertFalse(apply(p.readable("P")));
+        assertEquals(MAX_ATTEMPTS, p.writes);
+        assertEquals(0, burnFlash.calls);
+    }
+
+    @Test
+    void parallelTasksEachGetAThread() {
+        // Every task waits for all of the others, so this only finishes if they all run at once
+        int count = 6;
+        CyclicBarrier barrier = new CyclicBarrier(count);
+        List<BooleanSupplier> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean result = i != 2;
+            tasks.add(() -> {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new AssertionError("tasks did not run in parallel", e);
+                }
+                return result;
+            });
+        }
+
+        // One device failing fails the whole set, but only after the rest have finished
+        assertFalse(SparkMaxConfigurator.runInParallel(tasks));
+        assertEquals(0, barrier.getNumberWaiting());
+    }
+}
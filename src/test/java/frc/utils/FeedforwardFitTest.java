@@ -0,0 +1,109 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Checks the feedforward fit recovers known gains, and refuses data that can't tell them apart. */
+class FeedforwardFitTest {
+    private static final double KS = 0.15;
+    private static final double KV = 2.4;
+    private static final double KA = 0.35;
+
+    private static double volts(double velocity, double acceleration) {
+        return KS * Math.signum(velocity) + KV * velocity + KA * acceleration;
+    }
+
+    /** Adds a quasistatic ramp and a dynamic step each way, as the characterization routine runs them. */
+    private static void addRoutine(FeedforwardFit fit, double noiseVolts) {
+        Random random = new Random(5590);
+        for (int direction = -1; direction <= 1; direction += 2) {
+            for (int i = 1; i <= 200; i++) {
+                double velocity = direction * 0.01 * i;
+                double acceleration = direction * 0.05;
+                fit.add(volts(velocity, acceleration) + noiseVolts * random.nextGaussian(), velocity, acceleration);
+            }
+            for (int i = 1; i <= 100; i++) {
+                double velocity = direction * 3.0 * (1 - Math.exp(-i * 0.02 / 0.3));
+                double acceleration = direction * 10.0 * Math.exp(-i * 0.02 / 0.3);
+                fit.add(volts(velocity, acceleration) + noiseVolts * random.nextGaussian(), velocity, acceleration);
+            }
+        }
+    }
+
+    @Test
+    void recoversExactGains() {
+        FeedforwardFit fit = new FeedforwardFit();
+        addRoutine(fit, 0.0);
+
+        assertTrue(fit.solve());
+        assertEquals(KS, fit.getKs(), 1e-9);
+        assertEquals(KV, fit.getKv(), 1e-9);
+        assertEquals(KA, fit.getKa(), 1e-9);
+        assertEquals(1.0, fit.getRSquared(), 1e-9);
+        assertEquals(600, fit.getSampleCount());
+    }
+
+    @Test
+    void recoversGainsFromNoisyData() {
+        FeedforwardFit fit = new FeedforwardFit();
+        addRoutine(fit, 0.05);
+
+        assertTrue(fit.solve());
+        assertEquals(KS, fit.getKs(), 0.01);
+        assertEquals(KV, fit.getKv(), 0.01);
+        assertEquals(KA, fit.getKa(), 0.01);
+        assertTrue(fit.getRSquared() > 0.99);
+    }
+
+    @Test
+    void rejectsTooFewSamples() {
+        FeedforwardFit fit = new FeedforwardFit();
+        fit.add(volts(1.0, 0.5), 1.0, 0.5);
+        fit.add(volts(-2.0, 0.1), -2.0, 0.1);
+
+        assertFalse(fit.solve());
+        assertTrue(Double.isNaN(fit.getKs()));
+    }
+
+    @Test
+    void rejectsDataWithoutAcceleration() {
+        // A quasistatic test alone can't separate kA from anything
+        FeedforwardFit fit = new FeedforwardFit();
+        for (int i = 1; i <= 100; i++) {
+            double velocity = (i % 2 == 0 ? 1 : -1) * 0.03 * i;
+            fit.add(volts(velocity, 0.0), velocity, 0.0);
+        }
+
+        assertFalse(fit.solve());
+    }
+
+    @Test
+    void rejectsAccelerationThatTracksVelocity() {
+        // If acceleration is always proportional to velocity, kV and kA trade off against each other
+        FeedforwardFit fit = new FeedforwardFit();
+        for (int i = 1; i <= 500; i++) {
+            double velocity = (i % 2 == 0 ? 1 : -1) * 7.3 * i;
+            fit.add(volts(velocity, 3.1 * velocity), velocity, 3.1 * velocity);
+        }
+
+        assertFalse(fit.solve());
+    }
+
+    @Test
+    void rejectsDataAtASingleSpeed() {
+        // With every sample at the same speed, kS and kV can't be told apart
+        FeedforwardFit fit = new FeedforwardFit();
+        for (int i = 0; i < 100; i++) {
+            double velocity = 1.0;
+            double acceleration = 0.1 * (i % 7);
+            fit.add(volts(velocity, acceleration), velocity, acceleration);
+        }
+
+        assertFalse(fit.solve());
+    }
+}
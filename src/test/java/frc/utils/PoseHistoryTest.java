@@ -0,0 +1,130 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks the pose history's ring buffer, lookups and interpolation. */
+class PoseHistoryTest {
+    private static final double EPSILON = 1e-9;
+    private static final int CAPACITY = 5;
+    private static final double PERIOD = 0.01;
+
+    /** Adds a sample whose every value is a simple function of its timestamp, so lookups are easy to check. */
+    private static void add(PoseHistory history, double timestamp) {
+        history.add(timestamp, timestamp, 2 * timestamp, 0.0, 3 * timestamp, -timestamp, 0.5, 0.0);
+    }
+
+    @Test
+    void emptyHistoryHasNoSamples() {
+        PoseHistory history = new PoseHistory(CAPACITY);
+
+        assertFalse(history.sample(1.0));
+        assertEquals(0, history.size());
+        assertTrue(Double.isNaN(history.getOldestTimestamp()));
+        assertTrue(Double.isNaN(history.getNewestTimestamp()));
+    }
+
+    @Test
+    void oldestSamplesAreOverwrittenOnceFull() {
+        PoseHistory history = new PoseHistory(CAPACITY);
+        for (int i = 0; i < CAPACITY + 3; i++) {
+            add(history, i * PERIOD);
+        }
+
+        assertEquals(CAPACITY, history.size());
+        assertEquals(3 * PERIOD, history.getOldestTimestamp(), EPSILON);
+        assertEquals((CAPACITY + 2) * PERIOD, history.getNewestTimestamp(), EPSILON);
+
+        // Lookups still interpolate across the point where the buffer wraps
+        for (int i = 3; i < CAPACITY + 2; i++) {
+            double timestamp = (i + 0.25) * PERIOD;
+            assertTrue(history.sample(timestamp));
+            assertEquals(timestamp, history.getX(), EPSILON);
+            assertEquals(2 * timestamp, history.getY(), EPSILON);
+            assertEquals(3 * timestamp, history.getVx(), EPSILON);
+            assertEquals(-timestamp, history.getVy(), EPSILON);
+            assertEquals(0.5, history.getOmega(), EPSILON);
+        }
+    }
+
+    @Test
+    void lookupsAtAndBeyondTheEdgesUseTheEdgeSamples() {
+        PoseHistory history = new PoseHistory(CAPACITY);
+        for (int i = 1; i <= 3; i++) {
+            add(history, i * PERIOD);
+        }
+
+        history.sample(0.0);
+        assertEquals(PERIOD, history.getX(), EPSILON);
+        history.sample(PERIOD);
+        assertEquals(PERIOD, history.getX(), EPSILON);
+        history.sample(3 * PERIOD);
+        assertEquals(3 * PERIOD, history.getX(), EPSILON);
+        history.sample(1.0);
+        assertEquals(3 * PERIOD, history.getX(), EPSILON);
+    }
+
+    @Test
+    void lookupsBetweenSamplesInterpolate() {
+        PoseHistory history = new PoseHistory(CAPACITY);
+        for (int i = 1; i <= CAPACITY; i++) {
+            add(history, i * PERIOD);
+        }
+
+        // Just inside each edge, and exactly on a sample in the middle
+        double[] timestamps = {PERIOD + 1e-4, (CAPACITY - 0.01) * PERIOD, 3 * PERIOD, 2.5 * PERIOD};
+        for (double timestamp : timestamps) {
+            assertTrue(history.sample(timestamp));
+            assertEquals(timestamp, history.getX(), EPSILON);
+            assertEquals(2 * timestamp, history.getY(), EPSILON);
+        }
+    }
+
+    @Test
+    void samplesNoNewerThanTheLatestAreIgnored() {
+        PoseHistory history = new PoseHistory(CAPACITY);
+        add(history, 2 * PERIOD);
+        add(history, PERIOD);
+        add(history, 2 * PERIOD);
+
+        assertEquals(1, history.size());
+        assertEquals(2 * PERIOD, history.getOldestTimestamp(), EPSILON);
+        history.sample(2 * PERIOD);
+        assertEquals(2 * PERIOD, history.getX(), EPSILON);
+    }
+
+    @Test
+    void anglesInterpolateTheShortWayAcrossPi() {
+        PoseHistory history = new PoseHistory(CAPACITY);
+        history.add(0.0, 0.0, 0.0, Math.PI - 0.1, 0.0, 0.0, 0.0, -Math.PI + 0.2);
+        history.add(PERIOD, 0.0, 0.0, -Math.PI + 0.1, 0.0, 0.0, 0.0, Math.PI - 0.2);
+
+        history.sample(PERIOD / 2);
+        // Halfway between the two, the heading is pointing straight backwards, not forwards
+        assertEquals(Math.PI, Math.abs(history.getTheta()), EPSILON);
+        assertEquals(Math.PI, Math.abs(history.getYaw()), EPSILON);
+
+        history.sample(PERIOD / 4);
+        assertEquals(Math.PI - 0.05, history.getTheta(), EPSILON);
+        assertEquals(-Math.PI + 0.1, history.getYaw(), EPSILON);
+    }
+
+    @Test
+    void clearEmptiesTheHistory() {
+        PoseHistory history = new PoseHistory(CAPACITY);
+        for (int i = 0; i < CAPACITY + 2; i++) {
+            add(history, i * PERIOD);
+        }
+        history.clear();
+
+        assertEquals(0, history.size());
+        assertFalse(history.sample(0.0));
+        // Samples older than the cleared ones are accepted again
+        add(history, 0.0);
+        assertEquals(1, history.size());
+    }
+}
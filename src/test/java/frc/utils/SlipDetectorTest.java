@@ -0,0 +1,182 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.Constants.DriveConstants;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the per-sample chassis velocity the detector fits from the wheel and gyro deltas, that slipping
+ * wheels are dropped from it and their distance replaced, and the collision check against the
+ * accelerometer.
+ */
+class SlipDetectorTest {
+    private static final double EPSILON = 1e-9;
+    private static final double SAMPLE_PERIOD = 0.01;
+    private static final double SLIP_THRESHOLD = 0.5;
+    private static final double COLLISION_THRESHOLD = 5.0;
+
+    private final double[] moduleX = new double[4];
+    private final double[] moduleY = new double[4];
+    private final SlipDetector detector;
+
+    private final double[] distances = new double[4];
+    private final double[] angles = new double[4];
+    private final double[] speeds = new double[4];
+    // How far each wheel really rolled along the ground, without any slip
+    private final double[] groundDistances = new double[4];
+    private double time = 0.0;
+    private double yaw = 0.0;
+
+    SlipDetectorTest() {
+        for (int i = 0; i < 4; i++) {
+            moduleX[i] = DriveConstants.kModuleLocations[i].getX();
+            moduleY[i] = DriveConstants.kModuleLocations[i].getY();
+        }
+        detector = new SlipDetector(moduleX, moduleY, SLIP_THRESHOLD, COLLISION_THRESHOLD);
+    }
+
+    /** Moves the robot at the given robot-relative speeds for one sample period and feeds the sample. */
+    private void step(double vx, double vy, double omega) {
+        step(vx, vy, omega, new double[4]);
+    }
+
+    /**
+     * Moves the robot for one sample period with some wheels spinning faster than the ground under them.
+     *
+     * @param slipSpeeds How much faster each wheel spins than it rolls, in meters per second.
+     */
+    private void step(double vx, double vy, double omega, double[] slipSpeeds) {
+        SwerveUtils.toModuleStates(vx, vy, omega, moduleX, moduleY, speeds, angles);
+        time += SAMPLE_PERIOD;
+        yaw += omega * SAMPLE_PERIOD;
+        for (int i = 0; i < 4; i++) {
+            groundDistances[i] += speeds[i] * SAMPLE_PERIOD;
+            distances[i] += (speeds[i] + slipSpeeds[i]) * SAMPLE_PERIOD;
+        }
+        detector.update(time, distances, angles, 0, yaw);
+    }
+
+    @Test
+    void firstSampleHasNoVelocity() {
+        step(1.0, 0.0, 0.0);
+
+        assertFalse(detector.hasVelocity());
+    }
+
+    @Test
+    void everySampleGetsItsOwnVelocity() {
+        step(0.0, 0.0, 0.0);
+        // Speeds that change from one sample to the next, as they would within a single robot loop
+        double[][] commanded = {{1.0, 0.5, 0.0}, {1.5, -0.2, 1.0}, {2.0, 0.0, -2.5}};
+        for (double[] speed : commanded) {
+            step(speed[0], speed[1], speed[2]);
+
+            assertTrue(detector.hasVelocity());
+            assertEquals(speed[0], detector.getVx(), EPSILON);
+            assertEquals(speed[1], detector.getVy(), EPSILON);
+            assertEquals(speed[2], detector.getOmega(), EPSILON);
+        }
+    }
+
+    @Test
+    void velocityIsUnknownAfterARestartOrWithoutTheGyro() {
+        step(1.0, 0.0, 0.0);
+        step(1.0, 0.0, 0.0);
+        assertTrue(detector.hasVelocity());
+
+        detector.restart();
+        step(1.0, 0.0, 0.0);
+        assertFalse(detector.hasVelocity());
+
+        step(1.0, 0.0, 0.0);
+        assertTrue(detector.hasVelocity());
+        detector.update(time + SAMPLE_PERIOD, distances, angles, 0, Double.NaN);
+        assertFalse(detector.hasVelocity());
+    }
+
+    @Test
+    void slippingWheelIsDroppedAndItsDistanceReplaced() {
+        step(1.0, 0.5, 1.0);
+        step(1.0, 0.5, 1.0);
+        step(1.0, 0.5, 1.0, new double[] {2.0, 0.0, 0.0, 0.0});
+
+        assertTrue(detector.isSlipping(0));
+        for (int i = 1; i < 4; i++) {
+            assertFalse(detector.isSlipping(i));
+        }
+        assertFalse(detector.isUnreliable());
+        // The fit ignores the spinning wheel, and its distance follows the ground instead
+        assertEquals(1.0, detector.getVx(), EPSILON);
+        assertEquals(0.5, detector.getVy(), EPSILON);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(groundDistances[i], detector.getCorrectedDistance(i), EPSILON);
+        }
+
+        // Once it grips again it counts again
+        step(1.0, 0.5, 1.0);
+        assertFalse(detector.isSlipping(0));
+        assertEquals(groundDistances[0], detector.getCorrectedDistance(0), EPSILON);
+    }
+
+    @Test
+    void sampleIsUnreliableWhenTooFewWheelsAgree() {
+        step(1.0, 0.0, 0.0);
+        step(1.0, 0.0, 0.0);
+        double[] before = distances.clone();
+        double[] correctedBefore = new double[4];
+        for (int i = 0; i < 4; i++) {
+            correctedBefore[i] = detector.getCorrectedDistance(i);
+        }
+        step(1.0, 0.0, 0.0, new double[] {2.0, -1.5, 1.0, 0.0});
+
+        assertTrue(detector.isUnreliable());
+        // Nothing is flagged, and every wheel's distance is passed through as measured
+        for (int i = 0; i < 4; i++) {
+            assertFalse(detector.isSlipping(i));
+            assertEquals(
+                    correctedBefore[i] + distances[i] - before[i], detector.getCorrectedDistance(i), EPSILON);
+        }
+
+        step(1.0, 0.0, 0.0);
+        assertFalse(detector.isUnreliable());
+    }
+
+    @Test
+    void collisionIsAnAccelerationTheWheelsDontExplain() {
+        step(2.0, 0.0, 0.0);
+        step(2.0, 0.0, 0.0);
+        assertFalse(detector.checkCollision(0.0, 0.0));
+        step(2.0, 0.0, 0.0);
+        step(2.0, 0.0, 0.0);
+        assertFalse(detector.checkCollision(0.0, 0.0));
+
+        // A sharp stop the wheels didn't report
+        step(2.0, 0.0, 0.0);
+        step(2.0, 0.0, 0.0);
+        assertTrue(detector.checkCollision(-20.0, 0.0));
+        assertTrue(detector.isCollision());
+    }
+
+    @Test
+    void turningAccelerationIsNotACollision() {
+        // Driving forwards round a circle, the wheels' robot-relative velocity never changes, but the
+        // robot accelerates towards the centre at omega times the speed
+        double speed = 3.0;
+        double omega = 2.0;
+        step(speed, 0.0, omega);
+        step(speed, 0.0, omega);
+        detector.checkCollision(0.0, omega * speed);
+        step(speed, 0.0, omega);
+        step(speed, 0.0, omega);
+
+        assertFalse(detector.checkCollision(0.0, omega * speed));
+        step(speed, 0.0, omega);
+        step(speed, 0.0, omega);
+        // An accelerometer that felt nothing means something held the robot back
+        assertTrue(detector.checkCollision(0.0, 0.0));
+    }
+}
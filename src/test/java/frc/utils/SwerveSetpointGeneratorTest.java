@@ -0,0 +1,174 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.DriveConstants;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives the setpoint generator on the robot's four module layout and checks its output against the
+ * acceleration and steering limits and against WPILib's kinematics.
+ */
+class SwerveSetpointGeneratorTest {
+    private static final double EPSILON = 1e-9;
+    private static final double DT = 0.02;
+    private static final double MAX_SPEED = DriveConstants.kMaxSpeedMetersPerSecond;
+    private static final double MAX_SPEED_STEP = DriveConstants.kMaxWheelAcceleration * DT;
+    private static final double MAX_STEER_STEP = DriveConstants.kMaxSteerRate * DT;
+    // Matches the generator's threshold below which a module may steer freely
+    private static final double STEER_FREE_SPEED = 0.05;
+
+    private final double[] moduleX = new double[4];
+    private final double[] moduleY = new double[4];
+    private final SwerveSetpointGenerator generator;
+
+    private final double[] previousSpeeds = new double[4];
+    private final double[] previousAngles = new double[4];
+
+    SwerveSetpointGeneratorTest() {
+        for (int i = 0; i < 4; i++) {
+            moduleX[i] = DriveConstants.kModuleLocations[i].getX();
+            moduleY[i] = DriveConstants.kModuleLocations[i].getY();
+        }
+        generator = new SwerveSetpointGenerator(
+                moduleX, moduleY, MAX_SPEED, DriveConstants.kMaxWheelAcceleration, DriveConstants.kMaxSteerRate);
+    }
+
+    /** Starts the generator driving steadily at the given speeds. */
+    private void resetTo(double vx, double vy, double omega) {
+        double[] speeds = new double[4];
+        double[] angles = new double[4];
+        SwerveUtils.toModuleStates(vx, vy, omega, moduleX, moduleY, speeds, angles);
+        generator.reset(vx, vy, omega, speeds, angles);
+    }
+
+    /** Generates one setpoint and checks no module changed speed or steered faster than the limits. */
+    private void stepWithinLimits(double vx, double vy, double omega) {
+        for (int i = 0; i < 4; i++) {
+            previousSpeeds[i] = generator.getModuleSpeed(i);
+            previousAngles[i] = generator.getModuleAngle(i);
+        }
+        generator.generate(vx, vy, omega, DT);
+        for (int i = 0; i < 4; i++) {
+            double speed = generator.getModuleSpeed(i);
+            double angle = generator.getModuleAngle(i);
+            assertTrue(
+                    Math.abs(speed - previousSpeeds[i]) <= MAX_SPEED_STEP + EPSILON,
+                    "module " + i + " accelerated too fast");
+            boolean slow = Math.abs(speed) < STEER_FREE_SPEED && Math.abs(previousSpeeds[i]) < STEER_FREE_SPEED;
+            double steer = Math.IEEEremainder(angle - previousAngles[i], 2 * Math.PI);
+            assertTrue(slow || Math.abs(steer) <= MAX_STEER_STEP + EPSILON, "module " + i + " steered too fast");
+        }
+    }
+
+    /** Checks the module setpoints give the same wheel velocities as WPILib's kinematics for the speeds. */
+    private void assertMatchesKinematics(double vx, double vy, double omega, double tolerance) {
+        SwerveModuleState[] expected =
+                DriveConstants.kDriveKinematics.toSwerveModuleStates(new ChassisSpeeds(vx, vy, omega));
+        for (int i = 0; i < 4; i++) {
+            // A module may point either way round, with its speed negated, so compare wheel velocities
+            double speed = generator.getModuleSpeed(i);
+            double angle = generator.getModuleAngle(i);
+            double expectedSpeed = expected[i].speedMetersPerSecond;
+            double expectedAngle = expected[i].angle.getRadians();
+            assertEquals(expectedSpeed * Math.cos(expectedAngle), speed * Math.cos(angle), tolerance);
+            assertEquals(expectedSpeed * Math.sin(expectedAngle), speed * Math.sin(angle), tolerance);
+        }
+    }
+
+    @Test
+    void requestWithinOneStepIsReachedAtOnce() {
+        // The modules already point forwards, so only the wheel speed has to change
+        generator.generate(MAX_SPEED_STEP, 0.0, 0.0, DT);
+
+        assertEquals(MAX_SPEED_STEP, generator.getVx(), EPSILON);
+        assertEquals(0.0, generator.getVy(), EPSILON);
+        assertEquals(0.0, generator.getOmega(), EPSILON);
+        assertMatchesKinematics(MAX_SPEED_STEP, 0.0, 0.0, EPSILON);
+    }
+
+    @Test
+    void steeringFromRestIsRateLimited() {
+        // Sideways from rest needs every module to turn a quarter turn, which takes several steps
+        stepWithinLimits(0.0, 1.0, 0.0);
+
+        assertTrue(generator.getVy() < 1.0);
+        for (int step = 0; step < 100; step++) {
+            stepWithinLimits(0.0, 1.0, 0.0);
+        }
+        assertMatchesKinematics(0.0, 1.0, 0.0, 1e-6);
+    }
+
+    @Test
+    void modulesMatchTheKinematicsOnceSettled() {
+        double[][] requests = {{2.0, 0.0, 0.0}, {0.0, 2.5, 0.0}, {0.0, 0.0, 3.0}, {1.5, -1.0, 2.0}, {-2.0, 1.0, -1.5}};
+        for (double[] request : requests) {
+            for (int step = 0; step < 200; step++) {
+                stepWithinLimits(request[0], request[1], request[2]);
+            }
+
+            assertEquals(request[0], generator.getVx(), 1e-6);
+            assertEquals(request[1], generator.getVy(), 1e-6);
+            assertEquals(request[2], generator.getOmega(), 1e-6);
+            assertMatchesKinematics(request[0], request[1], request[2], 1e-6);
+        }
+    }
+
+    @Test
+    void limitsHoldThroughAbruptChanges() {
+        resetTo(3.0, 0.0, 0.0);
+        // Full speed sideways, then spinning, then a reversal, each requested without any ramp
+        double[][] requests = {{0.0, 3.0, 0.0}, {0.0, 0.0, -6.0}, {-3.0, 1.0, 2.0}, {3.0, -1.0, -2.0}};
+        for (double[] request : requests) {
+            for (int step = 0; step < 50; step++) {
+                stepWithinLimits(request[0], request[1], request[2]);
+            }
+        }
+    }
+
+    @Test
+    void reversalDeceleratesThroughZeroWithoutSteering() {
+        resetTo(2.0, 0.0, 0.0);
+
+        double previousSpeed = generator.getModuleSpeed(0);
+        for (int step = 0; step < 50; step++) {
+            stepWithinLimits(-2.0, 0.0, 0.0);
+            for (int i = 0; i < 4; i++) {
+                assertEquals(0.0, generator.getModuleAngle(i), EPSILON);
+            }
+            assertTrue(generator.getModuleSpeed(0) <= previousSpeed + EPSILON);
+            previousSpeed = generator.getModuleSpeed(0);
+        }
+
+        assertEquals(-2.0, generator.getVx(), 1e-6);
+        assertMatchesKinematics(-2.0, 0.0, 0.0, 1e-6);
+    }
+
+    @Test
+    void requestBeyondTheWheelSpeedIsScaledLikeWpilib() {
+        double vx = 4.0;
+        double vy = 2.0;
+        double omega = 5.0;
+        for (int step = 0; step < 300; step++) {
+            stepWithinLimits(vx, vy, omega);
+        }
+
+        SwerveModuleState[] expected =
+                DriveConstants.kDriveKinematics.toSwerveModuleStates(new ChassisSpeeds(vx, vy, omega));
+        SwerveDriveKinematics.desaturateWheelSpeeds(expected, MAX_SPEED);
+        ChassisSpeeds scaled = DriveConstants.kDriveKinematics.toChassisSpeeds(expected);
+        assertEquals(scaled.vxMetersPerSecond, generator.getVx(), 1e-6);
+        assertEquals(scaled.vyMetersPerSecond, generator.getVy(), 1e-6);
+        assertEquals(scaled.omegaRadiansPerSecond, generator.getOmega(), 1e-6);
+        double fastest = 0.0;
+        for (int i = 0; i < 4; i++) {
+            fastest = Math.max(fastest, Math.abs(generator.getModuleSpeed(i)));
+        }
+        assertEquals(MAX_SPEED, fastest, 1e-6);
+    }
+}
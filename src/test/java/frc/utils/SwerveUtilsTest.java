@@ -0,0 +1,57 @@
+/* 2024 Written by Alumiboti FRC 5590 */
+package frc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.DriveConstants;
+import org.junit.jupiter.api.Test;
+
+/** Checks the allocation-free kinematics helpers against WPILib's. */
+class SwerveUtilsTest {
+    private static final double EPSILON = 1e-9;
+
+    private final double[] moduleX = new double[4];
+    private final double[] moduleY = new double[4];
+
+    SwerveUtilsTest() {
+        for (int i = 0; i < 4; i++) {
+            moduleX[i] = DriveConstants.kModuleLocations[i].getX();
+            moduleY[i] = DriveConstants.kModuleLocations[i].getY();
+        }
+    }
+
+    @Test
+    void toChassisSpeedsMatchesWpilib() {
+        double[] speeds = {1.2, -0.4, 2.9, 0.1};
+        double[] angles = {0.3, -2.0, 1.1, 3.0};
+        SwerveModuleState[] states = new SwerveModuleState[4];
+        for (int i = 0; i < 4; i++) {
+            states[i] = new SwerveModuleState(speeds[i], new Rotation2d(angles[i]));
+        }
+
+        double[] result = new double[3];
+        SwerveUtils.toChassisSpeeds(speeds, angles, moduleX, moduleY, result);
+        ChassisSpeeds expected = DriveConstants.kDriveKinematics.toChassisSpeeds(states);
+
+        assertEquals(expected.vxMetersPerSecond, result[0], EPSILON);
+        assertEquals(expected.vyMetersPerSecond, result[1], EPSILON);
+        assertEquals(expected.omegaRadiansPerSecond, result[2], EPSILON);
+    }
+
+    @Test
+    void toChassisSpeedsInvertsToModuleStates() {
+        double[] speeds = new double[4];
+        double[] angles = new double[4];
+        SwerveUtils.toModuleStates(1.5, -0.7, 2.0, moduleX, moduleY, speeds, angles);
+
+        double[] result = new double[3];
+        SwerveUtils.toChassisSpeeds(speeds, angles, moduleX, moduleY, result);
+
+        assertEquals(1.5, result[0], EPSILON);
+        assertEquals(-0.7, result[1], EPSILON);
+        assertEquals(2.0, result[2], EPSILON);
+    }
+}